@@ -0,0 +1,22 @@
+package com.libreriaSanSebastian.loanService.benchmark;
+
+import com.libreriaSanSebastian.loanService.LoanServiceApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// Levanta la aplicación sin servidor web sobre la base H2 del perfil "benchmark" (src/test/resources)
+final class ContextoBenchmark {
+
+    private ContextoBenchmark() {
+    }
+
+    static ConfigurableApplicationContext iniciar(String... propiedades) {
+        return new SpringApplicationBuilder(LoanServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("benchmark")
+                .properties("spring.devtools.restart.enabled=false", "logging.level.root=WARN")
+                .properties(propiedades)
+                .run();
+    }
+}
@@ -0,0 +1,122 @@
+package com.libreriaSanSebastian.loanService.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.libreriaSanSebastian.loanService.assemblers.PrestamoModelAssembler;
+import com.libreriaSanSebastian.loanService.controller.PrestamoController;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.EvoInflectorLinkRelationProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+// Compara, para una colección de préstamos, los enlaces con linkTo(methodOn(...)) por elemento (implementación
+// anterior del assembler), las plantillas de PrestamoModelAssembler y la representación simple sin enlaces
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrestamoModelAssemblerBenchmark {
+
+    @Param({"10000"})
+    private int cantidad;
+
+    private final PrestamoModelAssembler assembler = new PrestamoModelAssembler();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    // Mismo mapeo HAL que usa Spring HATEOAS para application/hal+json
+    private final ObjectMapper halMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .registerModule(new Jackson2HalModule())
+            .setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                    new EvoInflectorLinkRelationProvider(), CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY))
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private List<Prestamo> prestamos;
+    private int siguiente;
+
+    @Setup
+    public void setUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/prestamos");
+        request.setServerName("localhost");
+        request.setServerPort(8082);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        prestamos = new ArrayList<>(cantidad);
+        Instant ahora = Instant.now();
+        for (long id = 1; id <= cantidad; id++) {
+            EstadoPrestamo estado = id % 3 == 0 ? EstadoPrestamo.DEVUELTO : EstadoPrestamo.ACTIVO;
+            prestamos.add(new Prestamo(id, id % 500, id % 2000, ahora, estado == EstadoPrestamo.DEVUELTO ? ahora : null, estado));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public List<EntityModel<Prestamo>> enlacesMethodOn() {
+        List<EntityModel<Prestamo>> modelos = new ArrayList<>(prestamos.size());
+        for (Prestamo prestamo : prestamos) {
+            EntityModel<Prestamo> modelo = EntityModel.of(prestamo,
+                    linkTo(methodOn(PrestamoController.class).obtenerPorId(prestamo.getId())).withSelfRel(),
+                    linkTo(methodOn(PrestamoController.class).listarTodos(null, null, null)).withRel("prestamos"));
+            if (prestamo.getEstado() == EstadoPrestamo.ACTIVO) {
+                modelo.add(linkTo(methodOn(PrestamoController.class).devolverLibro(prestamo.getId())).withRel("devolver"));
+            }
+            modelo.add(linkTo(methodOn(PrestamoController.class).obtenerPorUsuario(prestamo.getUsuarioId())).withRel("prestamos-usuario"));
+            modelo.add(linkTo(methodOn(PrestamoController.class).eliminar(prestamo.getId())).withRel("delete"));
+            modelos.add(modelo);
+        }
+        return modelos;
+    }
+
+    @Benchmark
+    public EntityModel<Prestamo> toModel() {
+        siguiente = (siguiente + 1) % prestamos.size();
+        return assembler.toModel(prestamos.get(siguiente));
+    }
+
+    @Benchmark
+    public CollectionModel<EntityModel<Prestamo>> toCollectionModel() {
+        return assembler.toCollectionModel(prestamos);
+    }
+
+    @Benchmark
+    public byte[] toCollectionModelHalSerializado() throws Exception {
+        return halMapper.writeValueAsBytes(assembler.toCollectionModel(prestamos));
+    }
+
+    @Benchmark
+    public List<EntityModel<Prestamo>> enlacesPlantilla() {
+        return assembler.toModels(prestamos);
+    }
+
+    @Benchmark
+    public byte[] enlacesPlantillaSerializados() throws Exception {
+        return objectMapper.writeValueAsBytes(assembler.toModels(prestamos));
+    }
+
+    @Benchmark
+    public byte[] simpleSerializado() throws Exception {
+        return objectMapper.writeValueAsBytes(prestamos);
+    }
+}
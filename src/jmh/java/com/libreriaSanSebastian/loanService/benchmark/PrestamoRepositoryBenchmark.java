@@ -0,0 +1,103 @@
+package com.libreriaSanSebastian.loanService.benchmark;
+
+import com.libreriaSanSebastian.loanService.dto.PrestamoResumen;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import net.datafaker.Faker;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Consultas de PrestamoRepository sobre H2 en modo MySQL, sembrada con datafaker
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrestamoRepositoryBenchmark {
+
+    private static final int USUARIOS = 20_000;
+    private static final int LIBROS = 5_000;
+
+    @Param({"200000"})
+    private int filas;
+
+    private ConfigurableApplicationContext contexto;
+    private PrestamoRepository prestamoRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = ContextoBenchmark.iniciar();
+        prestamoRepository = contexto.getBean(PrestamoRepository.class);
+        sembrar(contexto.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<PrestamoResumen> activosPorUsuario() {
+        return prestamoRepository.findByUsuarioIdAndEstado(
+                (long) ThreadLocalRandom.current().nextInt(1, USUARIOS + 1), EstadoPrestamo.ACTIVO);
+    }
+
+    @Benchmark
+    public long activosPorLibro() {
+        return prestamoRepository.countByLibroIdAndEstado(
+                (long) ThreadLocalRandom.current().nextInt(1, LIBROS + 1), EstadoPrestamo.ACTIVO);
+    }
+
+    @Benchmark
+    public List<Prestamo> porUsuario() {
+        return prestamoRepository.findByUsuarioId((long) ThreadLocalRandom.current().nextInt(1, USUARIOS + 1));
+    }
+
+    @Benchmark
+    public List<Prestamo> paginaKeyset() {
+        return prestamoRepository.findByIdGreaterThanOrderByIdAsc(
+                (long) ThreadLocalRandom.current().nextInt(0, filas), Limit.of(50));
+    }
+
+    private void sembrar(JdbcTemplate jdbcTemplate) {
+        Faker faker = new Faker(new Locale("es"), new Random(7));
+        Instant ahora = Instant.now();
+        List<Object[]> lote = new ArrayList<>(10_000);
+        for (long id = 1; id <= filas; id++) {
+            boolean activo = faker.number().numberBetween(0, 10) < 2;
+            Instant fechaPrestamo = ahora.minus(faker.number().numberBetween(0, 365), ChronoUnit.DAYS);
+            lote.add(new Object[]{
+                    id,
+                    (long) faker.number().numberBetween(1, USUARIOS + 1),
+                    (long) faker.number().numberBetween(1, LIBROS + 1),
+                    Timestamp.from(fechaPrestamo),
+                    activo ? null : Timestamp.from(fechaPrestamo.plus(faker.number().numberBetween(1, 30), ChronoUnit.DAYS)),
+                    activo ? "A" : "D"
+            });
+            if (lote.size() == 10_000) {
+                insertar(jdbcTemplate, lote);
+                lote.clear();
+            }
+        }
+        insertar(jdbcTemplate, lote);
+    }
+
+    private void insertar(JdbcTemplate jdbcTemplate, List<Object[]> lote) {
+        jdbcTemplate.batchUpdate("INSERT INTO prestamos (id, usuario_id, libro_id, fecha_prestamo, fecha_devolucion, estado) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", lote);
+    }
+}
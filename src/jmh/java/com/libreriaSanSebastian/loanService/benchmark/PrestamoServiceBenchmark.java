@@ -0,0 +1,97 @@
+package com.libreriaSanSebastian.loanService.benchmark;
+
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.service.PrestamoService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// crearPrestamo de punta a punta (validación en paralelo, decremento de stock y persistencia en H2)
+// contra servidores locales que simulan los servicios de usuarios y libros
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PrestamoServiceBenchmark {
+
+    private static final byte[] CUERPO = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    // Con más usuarios/libros distintos que entradas en caché cada creación consulta ambos servicios
+    @Param({"100", "100000"})
+    private int idsDistintos;
+
+    @Param({"0"})
+    private long latenciaServidorMs;
+
+    private ExecutorService hilosServidor;
+    private HttpServer servicioUsuarios;
+    private HttpServer servicioLibros;
+    private ConfigurableApplicationContext contexto;
+    private PrestamoService prestamoService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        hilosServidor = Executors.newFixedThreadPool(64);
+        servicioUsuarios = iniciarServidor("/api/v1/usuarios/");
+        servicioLibros = iniciarServidor("/api/v1/libros/");
+        contexto = ContextoBenchmark.iniciar(
+                "servicios.usuarios.url=http://127.0.0.1:" + servicioUsuarios.getAddress().getPort(),
+                "servicios.libros.url=http://127.0.0.1:" + servicioLibros.getAddress().getPort(),
+                "prestamos.cache.usuarios.max-entradas=1000",
+                "prestamos.cache.libros.max-entradas=1000");
+        prestamoService = contexto.getBean(PrestamoService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+        servicioUsuarios.stop(0);
+        servicioLibros.stop(0);
+        hilosServidor.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Prestamo crearPrestamo() {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        Prestamo prestamo = new Prestamo();
+        prestamo.setUsuarioId((long) aleatorio.nextInt(1, idsDistintos + 1));
+        prestamo.setLibroId((long) aleatorio.nextInt(1, idsDistintos + 1));
+        return prestamoService.crearPrestamo(prestamo);
+    }
+
+    private HttpServer iniciarServidor(String ruta) throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext(ruta, this::responder);
+        servidor.start();
+        return servidor;
+    }
+
+    private void responder(HttpExchange exchange) throws IOException {
+        if (latenciaServidorMs > 0) {
+            try {
+                Thread.sleep(latenciaServidorMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, CUERPO.length);
+        try (OutputStream salida = exchange.getResponseBody()) {
+            salida.write(CUERPO);
+        }
+    }
+}
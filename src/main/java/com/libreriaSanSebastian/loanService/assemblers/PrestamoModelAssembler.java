@@ -1,33 +1,77 @@
 package com.libreriaSanSebastian.loanService.assemblers;
 
 import com.libreriaSanSebastian.loanService.controller.PrestamoController;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
 import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
 import org.springframework.hateoas.server.RepresentationModelAssembler;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class PrestamoModelAssembler implements RepresentationModelAssembler<Prestamo, EntityModel<Prestamo>> {
 
     @Override
     public EntityModel<Prestamo> toModel(Prestamo prestamo) {
+        return toModel(prestamo, baseUri());
+    }
+
+    @Override
+    public CollectionModel<EntityModel<Prestamo>> toCollectionModel(Iterable<? extends Prestamo> prestamos) {
+        return CollectionModel.of(toModels(prestamos));
+    }
+
+    // Resuelve la URI base una sola vez por colección en lugar de un linkTo(methodOn(...)) por enlace
+    public List<EntityModel<Prestamo>> toModels(Iterable<? extends Prestamo> prestamos) {
+        String base = baseUri();
+        List<EntityModel<Prestamo>> modelos = new ArrayList<>();
+        for (Prestamo prestamo : prestamos) {
+            modelos.add(toModel(prestamo, base));
+        }
+        return modelos;
+    }
+
+    // Filas con selección de campos (?fields=): solo el enlace self, con la misma URI base resuelta una vez
+    public List<EntityModel<Map<String, Object>>> toModelsCampos(List<Map<String, Object>> filas) {
+        String base = baseUri();
+        List<EntityModel<Map<String, Object>>> modelos = new ArrayList<>(filas.size());
+        for (Map<String, Object> fila : filas) {
+            modelos.add(EntityModel.of(fila, Link.of(base + "/" + fila.get("id")).withSelfRel()));
+        }
+        return modelos;
+    }
+
+    // Los enlaces siguen las rutas de PrestamoController: /{id}, /devolver/{id} y /usuario/{usuarioId}
+    private EntityModel<Prestamo> toModel(Prestamo prestamo, String base) {
+        String self = base + "/" + prestamo.getId();
         EntityModel<Prestamo> prestamoModel = EntityModel.of(prestamo,
-                linkTo(methodOn(PrestamoController.class).obtenerPorId(prestamo.getId())).withSelfRel(),
-                linkTo(methodOn(PrestamoController.class).listarTodos()).withRel("prestamos"));
+                Link.of(self).withSelfRel(),
+                Link.of(base, "prestamos"));
 
-        // Agregar enlace de devolución solo si el préstamo está activo
-        if ("ACTIVO".equals(prestamo.getEstado())) {
-            prestamoModel.add(linkTo(methodOn(PrestamoController.class).devolverLibro(prestamo.getId())).withRel("devolver"));
+        // Agregar enlace de devolución solo si el libro no ha sido devuelto (activo o vencido)
+        if (prestamo.getEstado() != EstadoPrestamo.DEVUELTO) {
+            prestamoModel.add(Link.of(base + "/devolver/" + prestamo.getId(), "devolver"));
         }
 
         // Agregar enlace para obtener préstamos del usuario
-        prestamoModel.add(linkTo(methodOn(PrestamoController.class).obtenerPorUsuario(prestamo.getUsuarioId())).withRel("prestamos-usuario"));
+        prestamoModel.add(Link.of(base + "/usuario/" + prestamo.getUsuarioId(), "prestamos-usuario"));
 
         // Agregar enlace para eliminar
-        prestamoModel.add(linkTo(methodOn(PrestamoController.class).eliminar(prestamo.getId())).withRel("delete"));
+        prestamoModel.add(Link.of(self, "delete"));
 
         return prestamoModel;
     }
-}
\ No newline at end of file
+
+    private String baseUri() {
+        return linkTo(PrestamoController.class).toUri().toString();
+    }
+}
@@ -0,0 +1,241 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Junta las consultas de existencia concurrentes a un servicio remoto y las resuelve con una sola llamada por lote
+ * (GET /api/v1/{recurso}?ids=1,2,3). Un lote sale cuando reúne el máximo de IDs o cuando pasa la ventana desde la
+ * primera consulta pendiente; las consultas simultáneas de un mismo ID comparten la misma respuesta.
+ * Si el servicio no ofrece la consulta por lote se vuelve a la consulta individual por ID y se reintenta el lote
+ * pasado reintentoLote; esas consultas individuales corren en el executor recibido, no en los hilos que envían los
+ * lotes. Quien consulta espera a lo sumo prestamos.lotes.espera. Las respuestas siguen el contrato de
+ * CacheExistencia: true/false, null si no se pudo determinar, o la excepción de la llamada.
+ * Métricas: prestamos.remoto.lotes (IDs por lote), prestamos.remoto.consultas.compartidas y
+ * prestamos.remoto.lotes.no-soportados (etiqueta servicio).
+ */
+public class AgrupadorConsultas {
+
+    private final Function<List<Long>, Set<Long>> consultaLote;
+    private final Function<Long, Boolean> consultaIndividual;
+    private final Executor individuales;
+    private final String nombre;
+    private final long esperaNanos;
+    private final long ventanaNanos;
+    private final int maximo;
+    private final long reintentoLoteNanos;
+    private final ScheduledExecutorService hilos;
+    private final Map<Long, CompletableFuture<Boolean>> enCurso = new ConcurrentHashMap<>();
+    private final DistributionSummary tamanoLotes;
+    private final Counter compartidas;
+    private final Counter noSoportados;
+
+    private Map<Long, CompletableFuture<Boolean>> pendientes = new LinkedHashMap<>();
+    private ScheduledFuture<?> envioProgramado;
+    private volatile long loteNoSoportadoHasta;
+
+    /**
+     * @param consultaLote       IDs existentes entre los pedidos, null si no se pudo determinar; lanza
+     *                           LoteNoSoportadoException si el servicio no tiene la consulta por lote
+     * @param consultaIndividual consulta de un solo ID, usada cuando no hay consulta por lote
+     * @param individuales       executor de las consultas individuales (validacionRemotaExecutor)
+     */
+    public AgrupadorConsultas(String nombre, Function<List<Long>, Set<Long>> consultaLote,
+                              Function<Long, Boolean> consultaIndividual, Executor individuales,
+                              ConfiguracionAgrupacion configuracion, MeterRegistry meterRegistry) {
+        this.consultaLote = consultaLote;
+        this.consultaIndividual = consultaIndividual;
+        this.individuales = individuales;
+        this.nombre = nombre;
+        this.esperaNanos = configuracion.getEspera().toNanos();
+        this.ventanaNanos = configuracion.getVentana().toNanos();
+        this.maximo = Math.max(1, configuracion.getMaximo());
+        this.reintentoLoteNanos = configuracion.getReintentoLote().toNanos();
+        this.loteNoSoportadoHasta = System.nanoTime();
+        AtomicInteger numero = new AtomicInteger();
+        this.hilos = Executors.newScheduledThreadPool(Math.max(1, configuracion.getHilos()), tarea -> {
+            Thread hilo = new Thread(tarea, "lotes-" + nombre + "-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.tamanoLotes = DistributionSummary.builder("prestamos.remoto.lotes")
+                .description("IDs resueltos por cada consulta agrupada a un servicio remoto")
+                .tag("servicio", nombre)
+                .register(meterRegistry);
+        this.compartidas = Counter.builder("prestamos.remoto.consultas.compartidas")
+                .description("Consultas de existencia resueltas con la respuesta de otra consulta en curso del mismo ID")
+                .tag("servicio", nombre)
+                .register(meterRegistry);
+        this.noSoportados = Counter.builder("prestamos.remoto.lotes.no-soportados")
+                .description("Lotes rechazados por un servicio sin consulta por lote")
+                .tag("servicio", nombre)
+                .register(meterRegistry);
+    }
+
+    public Boolean consultar(Long id) {
+        CompletableFuture<Boolean> propia = new CompletableFuture<>();
+        CompletableFuture<Boolean> existente = enCurso.putIfAbsent(id, propia);
+        if (existente != null) {
+            compartidas.increment();
+            return esperar(existente);
+        }
+        if (System.nanoTime() - loteNoSoportadoHasta < 0) {
+            resolverIndividual(id, propia);
+            return esperar(propia);
+        }
+        Map<Long, CompletableFuture<Boolean>> completo = encolar(id, propia);
+        if (completo != null) {
+            // Quien completa el lote lo envía desde su propio hilo, que de todos modos tendría que esperar
+            enviar(completo);
+        }
+        return esperar(propia);
+    }
+
+    public void cerrar() {
+        hilos.shutdownNow();
+    }
+
+    // Devuelve el lote si con este ID llegó al máximo; si es el primero pendiente programa el envío por ventana
+    private synchronized Map<Long, CompletableFuture<Boolean>> encolar(Long id, CompletableFuture<Boolean> futuro) {
+        pendientes.put(id, futuro);
+        if (pendientes.size() >= maximo) {
+            if (envioProgramado != null) {
+                envioProgramado.cancel(false);
+            }
+            return tomarPendientes();
+        }
+        if (pendientes.size() == 1) {
+            envioProgramado = hilos.schedule(this::enviarPendientes, ventanaNanos, TimeUnit.NANOSECONDS);
+        }
+        return null;
+    }
+
+    private synchronized Map<Long, CompletableFuture<Boolean>> tomarPendientes() {
+        Map<Long, CompletableFuture<Boolean>> lote = pendientes;
+        pendientes = new LinkedHashMap<>();
+        envioProgramado = null;
+        return lote;
+    }
+
+    private void enviarPendientes() {
+        Map<Long, CompletableFuture<Boolean>> lote = tomarPendientes();
+        if (!lote.isEmpty()) {
+            enviar(lote);
+        }
+    }
+
+    private void enviar(Map<Long, CompletableFuture<Boolean>> lote) {
+        tamanoLotes.record(lote.size());
+        Set<Long> existentes;
+        try {
+            existentes = consultaLote.apply(new ArrayList<>(lote.keySet()));
+        } catch (LoteNoSoportadoException e) {
+            noSoportados.increment();
+            loteNoSoportadoHasta = System.nanoTime() + reintentoLoteNanos;
+            // Los IDs de este lote se consultan uno por uno en paralelo, sin ocupar los hilos que envían los lotes
+            lote.forEach(this::resolverEnParalelo);
+            return;
+        } catch (RuntimeException e) {
+            lote.forEach((id, futuro) -> {
+                enCurso.remove(id, futuro);
+                futuro.completeExceptionally(e);
+            });
+            return;
+        }
+        lote.forEach((id, futuro) -> {
+            enCurso.remove(id, futuro);
+            futuro.complete(existentes == null ? null : existentes.contains(id));
+        });
+    }
+
+    private void resolverEnParalelo(Long id, CompletableFuture<Boolean> futuro) {
+        try {
+            individuales.execute(() -> resolverIndividual(id, futuro));
+        } catch (RejectedExecutionException e) {
+            enCurso.remove(id, futuro);
+            futuro.completeExceptionally(new ServicioNoDisponibleException("Servicio de " + nombre +
+                    " saturado, intente nuevamente", e));
+        }
+    }
+
+    private void resolverIndividual(Long id, CompletableFuture<Boolean> futuro) {
+        try {
+            Boolean existe = consultaIndividual.apply(id);
+            enCurso.remove(id, futuro);
+            futuro.complete(existe);
+        } catch (RuntimeException e) {
+            enCurso.remove(id, futuro);
+            futuro.completeExceptionally(e);
+        }
+    }
+
+    // La respuesta sigue llegando a las demás consultas del mismo ID aunque esta deje de esperarla
+    private Boolean esperar(CompletableFuture<Boolean> futuro) {
+        try {
+            return futuro.get(esperaNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ServicioNoDisponibleException("Servicio de " + nombre + " sin respuesta a la consulta agrupada", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServicioNoDisponibleException("Consulta agrupada a " + nombre + " interrumpida", e);
+        }
+    }
+
+    /**
+     * IDs de los elementos de la respuesta de una consulta por lote (arreglo JSON de objetos con id). Si la respuesta
+     * trae IDs que no se pidieron el servicio ignoró el parámetro ids, así que se la trata como sin consulta por lote.
+     */
+    public static Set<Long> idsEncontrados(Collection<? extends Map<String, ?>> respuesta, Collection<Long> pedidos) {
+        if (respuesta == null) {
+            throw new LoteNoSoportadoException("Respuesta vacía a la consulta por lote");
+        }
+        Set<Long> encontrados = new HashSet<>();
+        for (Map<String, ?> elemento : respuesta) {
+            Object id = elemento == null ? null : elemento.get("id");
+            if (!(id instanceof Number numero) || !pedidos.contains(numero.longValue())) {
+                throw new LoteNoSoportadoException("La respuesta a la consulta por lote no corresponde a los IDs pedidos");
+            }
+            encontrados.add(numero.longValue());
+        }
+        return encontrados;
+    }
+
+    // El servicio no ofrece la consulta por lote (4xx o respuesta con otro formato)
+    public static class LoteNoSoportadoException extends RuntimeException {
+
+        public LoteNoSoportadoException(String mensaje) {
+            super(mensaje);
+        }
+
+        public LoteNoSoportadoException(String mensaje, Throwable causa) {
+            super(mensaje, causa);
+        }
+    }
+}
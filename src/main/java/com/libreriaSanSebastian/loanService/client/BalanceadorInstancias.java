@@ -0,0 +1,206 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Reparte las llamadas a un servicio remoto entre sus instancias (round-robin o la instancia con menos llamadas en
+ * curso) y expulsa por un tiempo a la que acumula fallos consecutivos. Una llamada que falla por la instancia (error de
+ * conexión o 5xx) se reintenta en otra instancia que no se haya probado. Si todas están expulsadas se sigue eligiendo
+ * entre ellas: es preferible intentar que rechazar sin llamar.
+ * Métricas: prestamos.remoto.instancias.disponibles, prestamos.remoto.instancias.en-curso,
+ * prestamos.remoto.expulsiones y prestamos.remoto.reintentos (etiqueta servicio).
+ */
+public class BalanceadorInstancias {
+
+    public enum Estrategia {
+        ROUND_ROBIN,
+        MENOS_PENDIENTES
+    }
+
+    private final String nombre;
+    private final List<Instancia> instancias;
+    private final Estrategia estrategia;
+    private final int fallosParaExpulsar;
+    private final long expulsionNanos;
+    private final int intentos;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger siguiente = new AtomicInteger();
+
+    public BalanceadorInstancias(String nombre, List<String> urls, ConfiguracionBalanceo configuracion, MeterRegistry meterRegistry) {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("El servicio de " + nombre + " no tiene instancias configuradas");
+        }
+        this.nombre = nombre;
+        this.estrategia = configuracion.getEstrategia();
+        this.fallosParaExpulsar = configuracion.getFallosParaExpulsar();
+        this.expulsionNanos = configuracion.getExpulsion().toNanos();
+        this.intentos = Math.max(1, Math.min(configuracion.getIntentos(), urls.size()));
+        this.meterRegistry = meterRegistry;
+        this.instancias = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            Instancia instancia = new Instancia(url.trim().replaceAll("/+$", ""));
+            instancias.add(instancia);
+            Gauge.builder("prestamos.remoto.instancias.en-curso", instancia.enCurso, AtomicInteger::get)
+                    .description("Llamadas en curso por instancia de servicio remoto")
+                    .tag("servicio", nombre)
+                    .tag("instancia", instancia.url)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("prestamos.remoto.instancias.disponibles", this, BalanceadorInstancias::disponibles)
+                .description("Instancias de servicio remoto no expulsadas")
+                .tag("servicio", nombre)
+                .register(meterRegistry);
+    }
+
+    public int getIntentos() {
+        return intentos;
+    }
+
+    /**
+     * Ejecuta la llamada con la URL base de una instancia. Si idempotente es false solo se reintenta cuando no se llegó
+     * a establecer la conexión, porque de otro modo la instancia pudo haber aplicado el cambio.
+     */
+    public <T> T ejecutar(Function<String, T> llamada, boolean idempotente) {
+        Set<Instancia> probadas = new HashSet<>();
+        while (true) {
+            Instancia instancia = elegir(probadas);
+            instancia.iniciar();
+            try {
+                T respuesta = llamada.apply(instancia.url);
+                registrarExito(instancia);
+                return respuesta;
+            } catch (RuntimeException e) {
+                if (!esFalloDeInstancia(e)) {
+                    throw e;
+                }
+                registrarFallo(instancia);
+                probadas.add(instancia);
+                if (probadas.size() >= intentos || !(idempotente || sinConexion(e))) {
+                    throw e;
+                }
+                registrarReintento();
+            } finally {
+                instancia.terminar();
+            }
+        }
+    }
+
+    // Instancia para el próximo intento, sin repetir las ya probadas en esta llamada
+    public Instancia elegir(Set<Instancia> probadas) {
+        long ahora = System.nanoTime();
+        List<Instancia> candidatas = new ArrayList<>(instancias.size());
+        for (Instancia instancia : instancias) {
+            if (!probadas.contains(instancia) && !instancia.expulsada(ahora)) {
+                candidatas.add(instancia);
+            }
+        }
+        if (candidatas.isEmpty()) {
+            for (Instancia instancia : instancias) {
+                if (!probadas.contains(instancia)) {
+                    candidatas.add(instancia);
+                }
+            }
+        }
+        if (candidatas.isEmpty()) {
+            throw new ServicioNoDisponibleException("Servicio de " + nombre + " sin instancias disponibles", null);
+        }
+
+        // El recorrido empieza en una posición rotativa para repartir los empates
+        int inicio = Math.floorMod(siguiente.getAndIncrement(), candidatas.size());
+        if (estrategia == Estrategia.ROUND_ROBIN) {
+            return candidatas.get(inicio);
+        }
+        Instancia elegida = null;
+        for (int i = 0; i < candidatas.size(); i++) {
+            Instancia candidata = candidatas.get((inicio + i) % candidatas.size());
+            if (elegida == null || candidata.enCurso.get() < elegida.enCurso.get()) {
+                elegida = candidata;
+            }
+        }
+        return elegida;
+    }
+
+    public void registrarExito(Instancia instancia) {
+        instancia.fallosConsecutivos.set(0);
+    }
+
+    // Tras la expulsión la instancia vuelve a recibir llamadas; con un fallo más se la expulsa otra vez
+    public void registrarFallo(Instancia instancia) {
+        if (instancia.fallosConsecutivos.incrementAndGet() >= fallosParaExpulsar) {
+            long ahora = System.nanoTime();
+            if (!instancia.expulsada(ahora)) {
+                instancia.expulsadaHasta = ahora + expulsionNanos;
+                meterRegistry.counter("prestamos.remoto.expulsiones", "servicio", nombre, "instancia", instancia.url).increment();
+            }
+        }
+    }
+
+    public void registrarReintento() {
+        meterRegistry.counter("prestamos.remoto.reintentos", "servicio", nombre).increment();
+    }
+
+    private int disponibles() {
+        long ahora = System.nanoTime();
+        return (int) instancias.stream().filter(instancia -> !instancia.expulsada(ahora)).count();
+    }
+
+    // Errores de E/S y 5xx son de la instancia; los 4xx y los rechazos locales no
+    private static boolean esFalloDeInstancia(RuntimeException e) {
+        return e instanceof ResourceAccessException || e instanceof HttpServerErrorException;
+    }
+
+    private static boolean sinConexion(RuntimeException e) {
+        for (Throwable causa = e.getCause(); causa != null; causa = causa.getCause()) {
+            if (causa instanceof ConnectException || causa instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Instancia {
+
+        private final String url;
+        private final AtomicInteger enCurso = new AtomicInteger();
+        private final AtomicInteger fallosConsecutivos = new AtomicInteger();
+        private volatile long expulsadaHasta;
+
+        Instancia(String url) {
+            this.url = url;
+            this.expulsadaHasta = System.nanoTime();
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public int getEnCurso() {
+            return enCurso.get();
+        }
+
+        public void iniciar() {
+            enCurso.incrementAndGet();
+        }
+
+        public void terminar() {
+            enCurso.decrementAndGet();
+        }
+
+        boolean expulsada(long ahora) {
+            return ahora - expulsadaHasta < 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Caché acotada de resultados de existencia (true/false) consultados a otro servicio.
+ * Las respuestas negativas expiran antes que las positivas, y las positivas se refrescan en segundo plano
+ * antes de expirar. Si la consulta devuelve null (error transitorio) el resultado no se guarda, y si lanza
+ * ServicioNoDisponibleException esta se propaga a quien consulta.
+ */
+public class CacheExistencia {
+
+    private final LoadingCache<Long, Boolean> cache;
+
+    public CacheExistencia(String nombre, Function<Long, Boolean> consulta, long maxEntradas,
+                           Duration ttlPositivo, Duration ttlNegativo, Duration refrescoAnticipado,
+                           Executor executor, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfter(expiracion(ttlPositivo, ttlNegativo))
+                .refreshAfterWrite(refrescoAnticipado)
+                .executor(executor)
+                .recordStats()
+                .build(new CacheLoader<Long, Boolean>() {
+                    @Override
+                    public Boolean load(Long id) {
+                        return consulta.apply(id);
+                    }
+
+                    @Override
+                    public Boolean reload(Long id, Boolean anterior) {
+                        // Ante un error transitorio o un circuito abierto se conserva el valor anterior hasta que expire
+                        try {
+                            Boolean actual = consulta.apply(id);
+                            return actual != null ? actual : anterior;
+                        } catch (ServicioNoDisponibleException e) {
+                            return anterior;
+                        }
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, nombre);
+    }
+
+    // TTL distinto para respuestas positivas y negativas; leer una entrada no extiende su vigencia
+    public static Expiry<Long, Boolean> expiracion(Duration ttlPositivo, Duration ttlNegativo) {
+        return new Expiry<Long, Boolean>() {
+            @Override
+            public long expireAfterCreate(Long id, Boolean existe, long ahora) {
+                return (existe ? ttlPositivo : ttlNegativo).toNanos();
+            }
+
+            @Override
+            public long expireAfterUpdate(Long id, Boolean existe, long ahora, long duracionActual) {
+                return (existe ? ttlPositivo : ttlNegativo).toNanos();
+            }
+
+            @Override
+            public long expireAfterRead(Long id, Boolean existe, long ahora, long duracionActual) {
+                return duracionActual;
+            }
+        };
+    }
+
+    public boolean existe(Long id) {
+        return Boolean.TRUE.equals(cache.get(id));
+    }
+
+    public void invalidar(Long id) {
+        cache.invalidate(id);
+    }
+}
@@ -0,0 +1,127 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConversionException;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.UnknownContentTypeException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Consulta de existencia contra un servicio remoto con recursos en /api/v1/{servicio}/{id} y, si lo admite, por lote en
+ * /api/v1/{servicio}?ids=. Arma la protección (circuit breaker y bulkhead), el balanceo entre réplicas, el agrupador de
+ * consultas y la caché de existencia con el nombre del servicio; cada subclase aporta su configuración.
+ */
+public abstract class ClienteRemoto {
+
+    // Arreglo JSON con los recursos encontrados entre los IDs pedidos
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> RESPUESTA_LOTE =
+            new ParameterizedTypeReference<>() {
+            };
+
+    @Autowired
+    private ConfiguracionBalanceo configuracionBalanceo;
+
+    @Autowired
+    private ConfiguracionAgrupacion configuracionAgrupacion;
+
+    @Autowired
+    protected RestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Autowired
+    @Qualifier("validacionRemotaExecutor")
+    private Executor validacionRemotaExecutor;
+
+    private final String servicio;
+
+    protected CacheExistencia existentes;
+
+    protected ProteccionRemota proteccion;
+
+    protected BalanceadorInstancias balanceador;
+
+    private AgrupadorConsultas agrupador;
+
+    protected ClienteRemoto(String servicio) {
+        this.servicio = servicio;
+    }
+
+    protected void inicializar(List<String> instancias, long maxEntradas, Duration ttlPositivo, Duration ttlNegativo,
+                               Duration refrescoAnticipado) {
+        proteccion = new ProteccionRemota(servicio, circuitBreakerRegistry, bulkheadRegistry, meterRegistry);
+        balanceador = new BalanceadorInstancias(servicio, instancias, configuracionBalanceo, meterRegistry);
+        Function<Long, Boolean> consulta = this::consultarExistencia;
+        if (configuracionAgrupacion.isHabilitada()) {
+            agrupador = new AgrupadorConsultas(servicio, this::consultarExistentes, this::consultarExistencia,
+                    validacionRemotaExecutor, configuracionAgrupacion, meterRegistry);
+            consulta = agrupador::consultar;
+        }
+        existentes = new CacheExistencia(servicio, consulta, maxEntradas,
+                ttlPositivo, ttlNegativo, refrescoAnticipado, validacionRemotaExecutor, meterRegistry);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (agrupador != null) {
+            agrupador.cerrar();
+        }
+    }
+
+    // true/false si el servicio respondió, null si no se pudo determinar (no se guarda en caché)
+    private Boolean consultarExistencia(Long id) {
+        try {
+            ResponseEntity<Object> response = proteccion.ejecutar("consultar", () -> balanceador.ejecutar(
+                    url -> restTemplate.getForEntity(url + "/api/v1/" + servicio + "/" + id, Object.class), true));
+            return response.getStatusCode() == HttpStatus.OK;
+        } catch (HttpClientErrorException.NotFound e) {
+            return false;
+        } catch (RestClientException e) {
+            proteccion.registrarError("consultar", e);
+            return null;
+        }
+    }
+
+    // IDs existentes entre los pedidos en una sola llamada, null si no se pudo determinar
+    private Set<Long> consultarExistentes(List<Long> pedidos) {
+        String ids = pedidos.stream().map(String::valueOf).collect(Collectors.joining(","));
+        try {
+            ResponseEntity<List<Map<String, Object>>> response = proteccion.ejecutar("consultar-lote", () -> balanceador.ejecutar(
+                    url -> restTemplate.exchange(url + "/api/v1/" + servicio + "?ids=" + ids, HttpMethod.GET, null, RESPUESTA_LOTE), true));
+            return AgrupadorConsultas.idsEncontrados(response.getBody(), pedidos);
+        } catch (HttpClientErrorException e) {
+            throw new AgrupadorConsultas.LoteNoSoportadoException("Servicio de " + servicio + " sin consulta por lote", e);
+        } catch (RestClientException e) {
+            if (e instanceof UnknownContentTypeException || e.getCause() instanceof HttpMessageConversionException) {
+                throw new AgrupadorConsultas.LoteNoSoportadoException("Servicio de " + servicio + " sin consulta por lote", e);
+            }
+            proteccion.registrarError("consultar-lote", e);
+            return null;
+        }
+    }
+}
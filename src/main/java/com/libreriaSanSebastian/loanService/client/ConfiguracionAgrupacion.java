@@ -0,0 +1,60 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Parámetros de la agrupación de consultas de existencia en una sola llamada por lote (prestamos.lotes.*),
+ * comunes a los servicios de usuarios y libros.
+ */
+@Component
+public class ConfiguracionAgrupacion {
+
+    private final boolean habilitada;
+    private final Duration ventana;
+    private final int maximo;
+    private final Duration reintentoLote;
+    private final int hilos;
+    private final Duration espera;
+
+    public ConfiguracionAgrupacion(
+            @Value("${prestamos.lotes.habilitada:true}") boolean habilitada,
+            @Value("${prestamos.lotes.ventana:2ms}") Duration ventana,
+            @Value("${prestamos.lotes.maximo:64}") int maximo,
+            @Value("${prestamos.lotes.reintento-lote:10m}") Duration reintentoLote,
+            @Value("${prestamos.lotes.hilos:4}") int hilos,
+            @Value("${prestamos.lotes.espera:${prestamos.remoto.timeout-total-ms:3000}}") Duration espera) {
+        this.habilitada = habilitada;
+        this.ventana = ventana;
+        this.maximo = maximo;
+        this.reintentoLote = reintentoLote;
+        this.hilos = hilos;
+        this.espera = espera;
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    public Duration getVentana() {
+        return ventana;
+    }
+
+    public int getMaximo() {
+        return maximo;
+    }
+
+    public Duration getReintentoLote() {
+        return reintentoLote;
+    }
+
+    public int getHilos() {
+        return hilos;
+    }
+
+    public Duration getEspera() {
+        return espera;
+    }
+}
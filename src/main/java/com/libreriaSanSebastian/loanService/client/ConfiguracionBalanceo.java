@@ -0,0 +1,46 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Parámetros comunes del balanceo entre instancias de los servicios remotos (servicios.balanceo.*).
+ * Las instancias de cada servicio se listan en servicios.{nombre}.instancias.
+ */
+@Component
+public class ConfiguracionBalanceo {
+
+    private final BalanceadorInstancias.Estrategia estrategia;
+    private final int fallosParaExpulsar;
+    private final Duration expulsion;
+    private final int intentos;
+
+    public ConfiguracionBalanceo(
+            @Value("${servicios.balanceo.estrategia:MENOS_PENDIENTES}") BalanceadorInstancias.Estrategia estrategia,
+            @Value("${servicios.balanceo.fallos-para-expulsar:3}") int fallosParaExpulsar,
+            @Value("${servicios.balanceo.expulsion:30s}") Duration expulsion,
+            @Value("${servicios.balanceo.intentos:2}") int intentos) {
+        this.estrategia = estrategia;
+        this.fallosParaExpulsar = fallosParaExpulsar;
+        this.expulsion = expulsion;
+        this.intentos = intentos;
+    }
+
+    public BalanceadorInstancias.Estrategia getEstrategia() {
+        return estrategia;
+    }
+
+    public int getFallosParaExpulsar() {
+        return fallosParaExpulsar;
+    }
+
+    public Duration getExpulsion() {
+        return expulsion;
+    }
+
+    public int getIntentos() {
+        return intentos;
+    }
+}
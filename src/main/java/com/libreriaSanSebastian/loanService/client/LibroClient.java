@@ -0,0 +1,74 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+public class LibroClient extends ClienteRemoto {
+
+    // Réplicas del servicio separadas por coma; sin lista se usa la URL única de servicios.libros.url
+    @Value("${servicios.libros.instancias:${servicios.libros.url:http://localhost:8080}}")
+    private List<String> instancias;
+
+    @Value("${prestamos.cache.libros.max-entradas:10000}")
+    private long maxEntradas;
+
+    @Value("${prestamos.cache.libros.ttl-positivo:10m}")
+    private Duration ttlPositivo;
+
+    @Value("${prestamos.cache.libros.ttl-negativo:30s}")
+    private Duration ttlNegativo;
+
+    @Value("${prestamos.cache.libros.refresco-anticipado:5m}")
+    private Duration refrescoAnticipado;
+
+    public LibroClient() {
+        super("libros");
+    }
+
+    @PostConstruct
+    public void inicializar() {
+        inicializar(instancias, maxEntradas, ttlPositivo, ttlNegativo, refrescoAnticipado);
+    }
+
+    // Solo indica que el libro existe; el stock real lo ajusta DespachoStockService, sin pasar por la caché
+    public boolean estaDisponible(Long libroId) {
+        return existentes.existe(libroId);
+    }
+
+    // Descuenta (cantidad < 0) o repone (cantidad > 0) stock del libro en una sola llamada.
+    // Los errores se propagan para que quien llama decida si reintentar
+    // La clave va en el encabezado Idempotency-Key: el servicio de libros descarta un ajuste con una clave que ya aplicó
+    public void ajustarStock(Long libroId, int cantidad, String claveIdempotencia) {
+        String operacion = cantidad < 0 ? "decrementar-stock" : "incrementar-stock";
+        String ruta = "/api/v1/libros/" + operacion + "/" + libroId + "?cantidad=" + Math.abs(cantidad);
+        HttpHeaders encabezados = new HttpHeaders();
+        encabezados.set("Idempotency-Key", claveIdempotencia);
+        try {
+            // Solo se reintenta en otra instancia si no se llegó a conectar con la primera
+            proteccion.ejecutar(operacion, () -> balanceador.ejecutar(url -> restTemplate.exchange(
+                    url + ruta,
+                    HttpMethod.PUT,
+                    new HttpEntity<>(encabezados),
+                    Void.class
+            ), false));
+        } catch (HttpClientErrorException.NotFound e) {
+            // El libro ya no existe: se descarta el resultado positivo que pudiera estar en caché
+            existentes.invalidar(libroId);
+            proteccion.registrarError(operacion, e);
+            throw e;
+        } catch (RestClientException e) {
+            proteccion.registrarError(operacion, e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker, bulkhead y métricas de un servicio remoto. La configuración de cada instancia se toma de
+ * resilience4j.circuitbreaker.instances.{nombre} y resilience4j.bulkhead.instances.{nombre}.
+ * Cada llamada se mide en el timer prestamos.remoto.llamadas (servicio, operacion, resultado).
+ */
+public class ProteccionRemota {
+
+    private final String nombre;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    public ProteccionRemota(String nombre, CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                            MeterRegistry meterRegistry) {
+        this.nombre = nombre;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(nombre);
+        this.bulkhead = bulkheadRegistry.bulkhead(nombre);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T ejecutar(String operacion, Supplier<T> llamada) {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        String resultado = "error";
+        try {
+            T respuesta = circuitBreaker.executeSupplier(Bulkhead.decorateSupplier(bulkhead, llamada));
+            resultado = "ok";
+            return respuesta;
+        } catch (CallNotPermittedException e) {
+            resultado = "rechazado";
+            throw new ServicioNoDisponibleException("Servicio de " + nombre + " no disponible temporalmente", e);
+        } catch (BulkheadFullException e) {
+            resultado = "rechazado";
+            throw new ServicioNoDisponibleException("Servicio de " + nombre + " saturado, intente nuevamente", e);
+        } catch (HttpClientErrorException.NotFound e) {
+            resultado = "no-encontrado";
+            throw e;
+        } finally {
+            muestra.stop(Timer.builder("prestamos.remoto.llamadas")
+                    .description("Latencia de las llamadas a los servicios remotos")
+                    .tag("servicio", nombre)
+                    .tag("operacion", operacion)
+                    .tag("resultado", resultado)
+                    .register(meterRegistry));
+        }
+    }
+
+    // Errores de llamadas que no se pudieron completar, por tipo de excepción
+    public void registrarError(String operacion, Exception e) {
+        meterRegistry.counter("prestamos.remoto.errores",
+                "servicio", nombre,
+                "operacion", operacion,
+                "excepcion", e.getClass().getSimpleName()).increment();
+    }
+}
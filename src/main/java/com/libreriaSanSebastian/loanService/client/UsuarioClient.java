@@ -0,0 +1,41 @@
+package com.libreriaSanSebastian.loanService.client;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+public class UsuarioClient extends ClienteRemoto {
+
+    // Réplicas del servicio separadas por coma; sin lista se usa la URL única de servicios.usuarios.url
+    @Value("${servicios.usuarios.instancias:${servicios.usuarios.url:http://localhost:8081}}")
+    private List<String> instancias;
+
+    @Value("${prestamos.cache.usuarios.max-entradas:10000}")
+    private long maxEntradas;
+
+    @Value("${prestamos.cache.usuarios.ttl-positivo:10m}")
+    private Duration ttlPositivo;
+
+    @Value("${prestamos.cache.usuarios.ttl-negativo:30s}")
+    private Duration ttlNegativo;
+
+    @Value("${prestamos.cache.usuarios.refresco-anticipado:5m}")
+    private Duration refrescoAnticipado;
+
+    public UsuarioClient() {
+        super("usuarios");
+    }
+
+    @PostConstruct
+    public void inicializar() {
+        inicializar(instancias, maxEntradas, ttlPositivo, ttlNegativo, refrescoAnticipado);
+    }
+
+    public boolean existe(Long usuarioId) {
+        return existentes.existe(usuarioId);
+    }
+}
@@ -0,0 +1,44 @@
+package com.libreriaSanSebastian.loanService.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    @Value("${prestamos.remoto.hilos:32}")
+    private int hilos;
+
+    @Value("${prestamos.remoto.capacidad-cola:500}")
+    private int capacidadCola;
+
+    // Hilos dedicados a las llamadas a los servicios de usuarios y libros, separados de los de Tomcat
+    @Bean(name = "validacionRemotaExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public AsyncTaskExecutor validacionRemotaExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(capacidadCola);
+        executor.setThreadNamePrefix("validacion-remota-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Con spring.threads.virtual.enabled=true (Java 21) Tomcat atiende cada solicitud en un hilo virtual y cada
+    // verificación remota usa también uno propio. El límite de concurrencia reemplaza al tamaño del pool y la cola
+    @Bean(name = "validacionRemotaExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public AsyncTaskExecutor validacionRemotaExecutorVirtual() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("validacion-remota-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(hilos + capacidadCola);
+        return executor;
+    }
+}
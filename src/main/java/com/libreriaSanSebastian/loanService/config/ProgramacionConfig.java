@@ -0,0 +1,10 @@
+package com.libreriaSanSebastian.loanService.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Tareas periódicas (@Scheduled) del servicio
+@Configuration
+@EnableScheduling
+public class ProgramacionConfig {
+}
@@ -1,14 +1,94 @@
 package com.libreriaSanSebastian.loanService.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RestTemplateConfig {
 
+    @Value("${prestamos.http.max-conexiones:200}")
+    private int maxConexiones;
+
+    @Value("${prestamos.http.max-conexiones-por-ruta:50}")
+    private int maxConexionesPorRuta;
+
+    @Value("${prestamos.http.timeout-conexion-ms:1000}")
+    private long timeoutConexionMs;
+
+    @Value("${prestamos.http.timeout-lectura-ms:2000}")
+    private long timeoutLecturaMs;
+
+    // Tiempo máximo esperando una conexión libre del pool antes de fallar
+    @Value("${prestamos.http.timeout-pool-ms:500}")
+    private long timeoutPoolMs;
+
+    @Value("${prestamos.http.keep-alive-s:30}")
+    private long keepAliveS;
+
+    @Value("${prestamos.http.inactividad-maxima-s:30}")
+    private long inactividadMaximaS;
+
+    @Bean
+    public PoolingHttpClientConnectionManager httpConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConexiones)
+                .setMaxConnPerRoute(maxConexionesPorRuta)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(timeoutConexionMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(timeoutLecturaMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeoutPoolMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(timeoutLecturaMs))
+                        .setConnectionKeepAlive(TimeValue.ofSeconds(keepAliveS))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(inactividadMaximaS))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    // Estado del pool de conexiones HTTP, visible en /actuator/metrics
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public MeterBinder httpPoolMetrics(PoolingHttpClientConnectionManager httpConnectionManager) {
+        return registry -> {
+            Gauge.builder("prestamos.http.pool.leased", httpConnectionManager, pool -> pool.getTotalStats().getLeased())
+                    .description("Conexiones HTTP en uso")
+                    .register(registry);
+            Gauge.builder("prestamos.http.pool.pending", httpConnectionManager, pool -> pool.getTotalStats().getPending())
+                    .description("Solicitudes esperando una conexión libre")
+                    .register(registry);
+            Gauge.builder("prestamos.http.pool.available", httpConnectionManager, pool -> pool.getTotalStats().getAvailable())
+                    .description("Conexiones HTTP inactivas listas para reutilizar")
+                    .register(registry);
+            Gauge.builder("prestamos.http.pool.max", httpConnectionManager, pool -> pool.getTotalStats().getMax())
+                    .description("Máximo de conexiones HTTP del pool")
+                    .register(registry);
+        };
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,23 @@
 package com.libreriaSanSebastian.loanService.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.libreriaSanSebastian.loanService.assemblers.PrestamoModelAssembler;
+import com.libreriaSanSebastian.loanService.dto.ConsultaPrestamos;
+import com.libreriaSanSebastian.loanService.dto.EstadisticasPrestamos;
+import com.libreriaSanSebastian.loanService.dto.PrestamoIdempotente;
+import com.libreriaSanSebastian.loanService.dto.PrestamoResumen;
+import com.libreriaSanSebastian.loanService.dto.ResultadoActualizacionLote;
+import com.libreriaSanSebastian.loanService.dto.ResultadoPrestamoLote;
+import com.libreriaSanSebastian.loanService.exception.ClaveIdempotenciaEnUsoException;
+import com.libreriaSanSebastian.loanService.exception.ClaveIdempotenciaReutilizadaException;
+import com.libreriaSanSebastian.loanService.exception.PrestamoEliminadoException;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
 import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.service.ArchivoPrestamosService;
+import com.libreriaSanSebastian.loanService.service.EstadisticasPrestamosService;
+import com.libreriaSanSebastian.loanService.service.IdempotenciaService;
 import com.libreriaSanSebastian.loanService.service.PrestamoService;
+import com.libreriaSanSebastian.loanService.service.TransferenciaPrestamosService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,20 +25,36 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.PagedModel;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/v1/prestamos")
 @Tag(name = "Préstamos", description = "Operaciones relacionadas con la gestión de préstamos de libros")
 public class PrestamoController {
@@ -31,26 +62,265 @@ public class PrestamoController {
     @Autowired
     private PrestamoService prestamoService;
 
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    @Autowired
+    private EstadisticasPrestamosService estadisticasPrestamosService;
+
+    @Autowired
+    private TransferenciaPrestamosService transferenciaPrestamosService;
+
+    @Autowired
+    private ArchivoPrestamosService archivoPrestamosService;
+
     @Autowired
     private PrestamoModelAssembler prestamoModelAssembler;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final String CSV_VALUE = "text/csv";
+    private static final int TAMANO_BUFFER_GZIP = 64 * 1024;
+    // Representación sin _links para consumidores masivos; ?formato=simple equivale a este Accept
+    public static final String PRESTAMOS_SIMPLE_VALUE = "application/vnd.libreria.prestamos.simple+json";
+    private static final int TAMANO_PAGINA_DEFECTO = 50;
+    private static final int TAMANO_PAGINA_MAXIMO = 500;
+    private static final int TAMANO_LOTE_MAXIMO = 500;
+    private static final int TAMANO_DEVOLUCION_MAXIMO = 5000;
+    private static final int LARGO_CLAVE_IDEMPOTENCIA_MAXIMO = 100;
+    private static final int DIAS_ESTADISTICAS_MAXIMO = 366;
+    private static final int TOP_ESTADISTICAS_MAXIMO = 100;
+
     @Operation(
         summary = "Listar todos los préstamos",
-        description = "Obtiene una lista completa de todos los préstamos registrados en el sistema"
+        description = "Obtiene los préstamos registrados en el sistema, paginados por cursor. Admite filtros por usuario, " +
+                "libro, estado y ventanas de fecha, orden por id o fechaPrestamo y selección de campos con 'fields'. " +
+                "El enlace 'next' entrega la página siguiente con los mismos filtros"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Página de préstamos obtenida exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Prestamo.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Orden, campo o cursor no válido",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @GetMapping
+    public ResponseEntity<?> listarTodos(
+            @Parameter(description = "ID del último préstamo recibido; se omite para la primera página", example = "100")
+            @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Cantidad máxima de préstamos por página", example = "50")
+            @RequestParam(required = false) Integer size,
+            @ParameterObject ConsultaPrestamos consulta) {
+        int tamano = size == null ? TAMANO_PAGINA_DEFECTO : Math.max(1, Math.min(size, TAMANO_PAGINA_MAXIMO));
+        try {
+            if (consulta.conProyeccion()) {
+                List<Map<String, Object>> pagina = prestamoService.buscarCampos(consulta, cursor, tamano);
+                return ResponseEntity.ok(paginar(prestamoModelAssembler.toModelsCampos(pagina), cursor, tamano,
+                        ultimoId(pagina, tamano, fila -> (Long) fila.get("id"))));
+            }
+            List<Prestamo> pagina = prestamoService.buscar(consulta, cursor, tamano);
+            return ResponseEntity.ok(paginar(prestamoModelAssembler.toModels(pagina), cursor, tamano,
+                    ultimoId(pagina, tamano, Prestamo::getId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(
+        summary = "Listar todos los préstamos (representación simple)",
+        description = "Igual que el listado paginado, con los mismos filtros, pero como JSON plano sin enlaces. Se solicita " +
+                "con el header Accept: " + PRESTAMOS_SIMPLE_VALUE + " o con ?formato=simple. La página siguiente se indica " +
+                "en el header Link"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Página de préstamos obtenida exitosamente",
+            content = @Content(mediaType = PRESTAMOS_SIMPLE_VALUE, schema = @Schema(implementation = Prestamo.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Orden, campo o cursor no válido",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @GetMapping(produces = PRESTAMOS_SIMPLE_VALUE)
+    public ResponseEntity<?> listarTodosSimple(
+            @Parameter(description = "ID del último préstamo recibido; se omite para la primera página", example = "100")
+            @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Cantidad máxima de préstamos por página", example = "50")
+            @RequestParam(required = false) Integer size,
+            @ParameterObject ConsultaPrestamos consulta) {
+        int tamano = size == null ? TAMANO_PAGINA_DEFECTO : Math.max(1, Math.min(size, TAMANO_PAGINA_MAXIMO));
+        try {
+            List<?> pagina;
+            Long ultimoId;
+            if (consulta.conProyeccion()) {
+                List<Map<String, Object>> filas = prestamoService.buscarCampos(consulta, cursor, tamano);
+                pagina = filas;
+                ultimoId = ultimoId(filas, tamano, fila -> (Long) fila.get("id"));
+            } else {
+                List<Prestamo> prestamos = prestamoService.buscar(consulta, cursor, tamano);
+                pagina = prestamos;
+                ultimoId = ultimoId(prestamos, tamano, Prestamo::getId);
+            }
+
+            ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+            if (ultimoId != null) {
+                respuesta.header(HttpHeaders.LINK, Link.of(conCursor(ultimoId, tamano), IanaLinkRelations.NEXT).toString());
+            }
+            return respuesta.body(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private <T> PagedModel<T> paginar(List<T> contenido, Long cursor, int tamano, Long ultimoId) {
+        PagedModel<T> modelo = PagedModel.of(contenido, (PagedModel.PageMetadata) null,
+                Link.of(conCursor(cursor, tamano), IanaLinkRelations.SELF),
+                Link.of(conCursor(null, tamano), IanaLinkRelations.FIRST));
+        if (ultimoId != null) {
+            modelo.add(Link.of(conCursor(ultimoId, tamano), IanaLinkRelations.NEXT));
+        }
+        return modelo;
+    }
+
+    // Si la página vino completa puede haber más registros después del último ID
+    private static <T> Long ultimoId(List<T> pagina, int tamano, Function<T, Long> id) {
+        return pagina.size() == tamano ? id.apply(pagina.get(pagina.size() - 1)) : null;
+    }
+
+    // URL de la solicitud actual con otro cursor, conservando filtros, orden y campos
+    private static String conCursor(Long cursor, int tamano) {
+        return ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", cursor == null ? new Object[0] : new Object[]{cursor})
+                .replaceQueryParam("size", tamano)
+                .build()
+                .toUriString();
+    }
+
+    @Operation(
+        summary = "Transmitir todos los préstamos",
+        description = "Envía todos los préstamos como NDJSON (un objeto JSON por línea) a medida que se leen de la base de datos"
     )
     @ApiResponse(
         responseCode = "200",
-        description = "Lista de préstamos obtenida exitosamente",
-        content = @Content(mediaType = "application/json", schema = @Schema(implementation = Prestamo.class))
+        description = "Transmisión de préstamos iniciada",
+        content = @Content(mediaType = NDJSON_VALUE, schema = @Schema(implementation = Prestamo.class))
     )
-    @GetMapping
-    public CollectionModel<EntityModel<Prestamo>> listarTodos() {
-        List<EntityModel<Prestamo>> prestamos = prestamoService.listarTodos().stream()
-                .map(prestamoModelAssembler::toModel)
-                .collect(Collectors.toList());
+    @GetMapping(produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> transmitirTodos() {
+        StreamingResponseBody cuerpo = salida -> prestamoService.recorrerTodos(prestamo -> {
+            try {
+                salida.write(objectMapper.writeValueAsBytes(prestamo));
+                salida.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(cuerpo);
+    }
 
-        return CollectionModel.of(prestamos,
-                linkTo(methodOn(PrestamoController.class).listarTodos()).withSelfRel());
+    @Operation(
+        summary = "Exportar todos los préstamos",
+        description = "Envía todos los préstamos como CSV (por defecto) o NDJSON (Accept: application/x-ndjson o " +
+                "?formato=ndjson) a medida que se leen de la base con un cursor de solo avance, sin enlaces HATEOAS. " +
+                "Con gzip=true la respuesta va comprimida (Content-Encoding: gzip) y con historial=true incluye los " +
+                "préstamos devueltos archivados"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Exportación iniciada",
+        content = {@Content(mediaType = CSV_VALUE), @Content(mediaType = NDJSON_VALUE)}
+    )
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportarCsv(
+            @Parameter(description = "Comprimir la respuesta con gzip", example = "false")
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @Parameter(description = "Incluir los préstamos devueltos archivados", example = "false")
+            @RequestParam(defaultValue = "false") boolean historial) {
+        return exportar(TransferenciaPrestamosService.Formato.CSV, CSV_VALUE, "prestamos.csv", gzip, historial);
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportarNdjson(@RequestParam(defaultValue = "false") boolean gzip,
+                                                                @RequestParam(defaultValue = "false") boolean historial) {
+        return exportar(TransferenciaPrestamosService.Formato.NDJSON, NDJSON_VALUE, "prestamos.ndjson", gzip, historial);
+    }
+
+    private ResponseEntity<StreamingResponseBody> exportar(TransferenciaPrestamosService.Formato formato, String tipo,
+                                                           String archivo, boolean gzip, boolean historial) {
+        StreamingResponseBody cuerpo = salida -> {
+            if (!gzip) {
+                transferenciaPrestamosService.exportar(formato, historial, salida);
+                return;
+            }
+            GZIPOutputStream comprimida = new GZIPOutputStream(salida, TAMANO_BUFFER_GZIP);
+            transferenciaPrestamosService.exportar(formato, historial, comprimida);
+            comprimida.finish();
+        };
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(tipo))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(archivo).build().toString());
+        if (gzip) {
+            respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return respuesta.body(cuerpo);
+    }
+
+    @Operation(
+        summary = "Importar préstamos",
+        description = "Inserta los préstamos de un CSV (mismas columnas que la exportación; id es opcional y se ignora) " +
+                "o NDJSON, leyendo la entrada a medida que llega e insertando por lotes. Acepta el cuerpo comprimido con " +
+                "Content-Encoding: gzip. No verifica usuarios ni libros ni descuenta stock: es para cargar préstamos " +
+                "que ya existen en otro sistema"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Préstamos importados",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Fila inválida; los lotes anteriores a esa fila ya quedaron guardados y el error indica cuántos",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @PostMapping(value = "/import", consumes = CSV_VALUE)
+    public ResponseEntity<?> importarCsv(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String codificacion,
+            InputStream cuerpo) {
+        return importar(TransferenciaPrestamosService.Formato.CSV, codificacion, cuerpo);
+    }
+
+    @PostMapping(value = "/import", consumes = NDJSON_VALUE)
+    public ResponseEntity<?> importarNdjson(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String codificacion,
+            InputStream cuerpo) {
+        return importar(TransferenciaPrestamosService.Formato.NDJSON, codificacion, cuerpo);
+    }
+
+    private ResponseEntity<?> importar(TransferenciaPrestamosService.Formato formato, String codificacion,
+                                       InputStream cuerpo) {
+        try {
+            InputStream entrada = "gzip".equalsIgnoreCase(codificacion)
+                    ? new GZIPInputStream(cuerpo, TAMANO_BUFFER_GZIP)
+                    : cuerpo;
+            return ResponseEntity.ok(Map.of("importados", transferenciaPrestamosService.importar(formato, entrada)));
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
     }
 
     @Operation(
@@ -72,8 +342,10 @@ public class PrestamoController {
     @GetMapping("/{id}")
     public ResponseEntity<EntityModel<Prestamo>> obtenerPorId(
             @Parameter(description = "ID único del préstamo", required = true, example = "1")
-            @PathVariable Long id) {
-        return prestamoService.buscarPorId(id)
+            @PathVariable Long id,
+            @Parameter(description = "Buscar también en los préstamos devueltos archivados", example = "false")
+            @RequestParam(defaultValue = "false") boolean historial) {
+        return prestamoService.buscarPorId(id, historial)
                 .map(prestamoModelAssembler::toModel)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
@@ -81,7 +353,8 @@ public class PrestamoController {
 
     @Operation(
         summary = "Obtener préstamos por usuario",
-        description = "Busca y retorna todos los préstamos asociados a un usuario específico"
+        description = "Busca y retorna todos los préstamos asociados a un usuario específico. Los devueltos hace más de " +
+                "prestamos.archivo.edad están archivados y solo se incluyen con historial=true"
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -98,19 +371,106 @@ public class PrestamoController {
     @GetMapping("/usuario/{usuarioId}")
     public CollectionModel<EntityModel<Prestamo>> obtenerPorUsuario(
             @Parameter(description = "ID único del usuario", required = true, example = "1")
-            @PathVariable Long usuarioId) {
-        List<EntityModel<Prestamo>> prestamos = prestamoService.buscarPorUsuario(usuarioId).stream()
-                .map(prestamoModelAssembler::toModel)
-                .collect(Collectors.toList());
+            @PathVariable Long usuarioId,
+            @Parameter(description = "Incluir los préstamos devueltos archivados", example = "false")
+            @RequestParam(defaultValue = "false") boolean historial) {
+        List<EntityModel<Prestamo>> prestamos = prestamoModelAssembler.toModels(prestamoService.buscarPorUsuario(usuarioId, historial));
 
         return CollectionModel.of(prestamos,
-                linkTo(methodOn(PrestamoController.class).obtenerPorUsuario(usuarioId)).withSelfRel(),
-                linkTo(methodOn(PrestamoController.class).listarTodos()).withRel("all-prestamos"));
+                linkTo(methodOn(PrestamoController.class).obtenerPorUsuario(usuarioId, historial)).withSelfRel(),
+                linkTo(methodOn(PrestamoController.class).listarTodos(null, null, null)).withRel("all-prestamos"));
+    }
+
+    @Operation(
+        summary = "Obtener préstamos por usuario (representación simple)",
+        description = "Préstamos del usuario como JSON plano sin enlaces. Se solicita con el header " +
+                "Accept: " + PRESTAMOS_SIMPLE_VALUE + " o con ?formato=simple"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Lista de préstamos del usuario obtenida exitosamente",
+        content = @Content(mediaType = PRESTAMOS_SIMPLE_VALUE, schema = @Schema(implementation = Prestamo.class))
+    )
+    @GetMapping(value = "/usuario/{usuarioId}", produces = PRESTAMOS_SIMPLE_VALUE)
+    public List<Prestamo> obtenerPorUsuarioSimple(
+            @Parameter(description = "ID único del usuario", required = true, example = "1")
+            @PathVariable Long usuarioId,
+            @Parameter(description = "Incluir los préstamos devueltos archivados", example = "false")
+            @RequestParam(defaultValue = "false") boolean historial) {
+        return prestamoService.buscarPorUsuario(usuarioId, historial);
+    }
+
+    @Operation(
+        summary = "Obtener préstamos activos de un usuario",
+        description = "Retorna un resumen (ID, usuario, libro y estado) de los préstamos activos del usuario, " +
+                "leído directamente desde el índice por usuario y estado"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Préstamos activos del usuario obtenidos exitosamente",
+        content = @Content(mediaType = "application/json", schema = @Schema(implementation = PrestamoResumen.class))
+    )
+    @GetMapping("/usuario/{usuarioId}/activos")
+    public List<PrestamoResumen> obtenerActivosPorUsuario(
+            @Parameter(description = "ID único del usuario", required = true, example = "1")
+            @PathVariable Long usuarioId) {
+        return prestamoService.buscarActivosPorUsuario(usuarioId);
+    }
+
+    @Operation(
+        summary = "Contar préstamos activos de un libro",
+        description = "Retorna la cantidad de ejemplares del libro que están prestados actualmente"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Cantidad obtenida exitosamente",
+        content = @Content(mediaType = "application/json")
+    )
+    @GetMapping("/libro/{libroId}/activos")
+    public Map<String, Long> contarActivosPorLibro(
+            @Parameter(description = "ID único del libro", required = true, example = "1")
+            @PathVariable Long libroId) {
+        return Map.of("libroId", libroId, "activos", prestamoService.contarActivosPorLibro(libroId));
+    }
+
+    @Operation(
+        summary = "Estadísticas de préstamos",
+        description = "Retorna totales, préstamos prestados y devueltos por día, libros con más préstamos sin devolver, " +
+                "usuarios con más préstamos y duración de los préstamos devueltos. Se calculan desde agregados en " +
+                "memoria que se actualizan con cada operación, sin consultar la base"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Estadísticas obtenidas exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = EstadisticasPrestamos.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Parámetros fuera de rango",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<?> obtenerEstadisticas(
+            @Parameter(description = "Días hacia atrás, hoy incluido, en el detalle por día (máximo " + DIAS_ESTADISTICAS_MAXIMO + ")", example = "30")
+            @RequestParam(defaultValue = "30") int dias,
+            @Parameter(description = "Cantidad de libros y usuarios en los rankings (máximo " + TOP_ESTADISTICAS_MAXIMO + ")", example = "10")
+            @RequestParam(defaultValue = "10") int top) {
+        if (dias < 1 || dias > DIAS_ESTADISTICAS_MAXIMO) {
+            return ResponseEntity.badRequest().body(Map.of("error", "dias debe estar entre 1 y " + DIAS_ESTADISTICAS_MAXIMO));
+        }
+        if (top < 1 || top > TOP_ESTADISTICAS_MAXIMO) {
+            return ResponseEntity.badRequest().body(Map.of("error", "top debe estar entre 1 y " + TOP_ESTADISTICAS_MAXIMO));
+        }
+        return ResponseEntity.ok(estadisticasPrestamosService.consultar(dias, top));
     }
 
     @Operation(
         summary = "Crear nuevo préstamo",
-        description = "Registra un nuevo préstamo de libro, verificando la disponibilidad del libro y la existencia del usuario"
+        description = "Registra un nuevo préstamo de libro, verificando la disponibilidad del libro y la existencia del usuario. " +
+                "Con el encabezado Idempotency-Key, los reintentos con la misma clave devuelven el préstamo original " +
+                "(encabezado Idempotent-Replayed: true) sin crear otro ni descontar stock de nuevo"
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -123,25 +483,71 @@ public class PrestamoController {
             description = "Datos de entrada inválidos o libro no disponible",
             content = @Content(mediaType = "application/json")
         ),
+        @ApiResponse(
+            responseCode = "409",
+            description = "Otra solicitud con la misma Idempotency-Key sigue en curso",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "410",
+            description = "La Idempotency-Key creó un préstamo que luego se anuló o eliminó; la respuesta incluye su ID",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "422",
+            description = "La Idempotency-Key ya se usó con otro usuario o libro",
+            content = @Content(mediaType = "application/json")
+        ),
         @ApiResponse(
             responseCode = "500",
             description = "Error interno del servidor",
             content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Servicio de usuarios o de libros no disponible temporalmente",
+            content = @Content(mediaType = "application/json")
         )
     })
     @PostMapping
     public ResponseEntity<?> crearPrestamo(
             @Parameter(description = "Datos del préstamo a crear", required = true)
-            @RequestBody Prestamo prestamo) {
+            @RequestBody Prestamo prestamo,
+            @Parameter(description = "Clave única de la solicitud para reintentos seguros", example = "3f8a1c2e-7d4b-4e0f-9a61-2b5c8d9e0f17")
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia) {
         try {
             if (prestamo.getUsuarioId() == null || prestamo.getLibroId() == null) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Usuario ID y Libro ID son requeridos"));
             }
 
-            Prestamo nuevoPrestamo = prestamoService.crearPrestamo(prestamo);
-            EntityModel<Prestamo> prestamoModel = prestamoModelAssembler.toModel(nuevoPrestamo);
-            return ResponseEntity.status(HttpStatus.CREATED).body(prestamoModel);
+            if (claveIdempotencia == null) {
+                Prestamo nuevoPrestamo = prestamoService.crearPrestamo(prestamo);
+                EntityModel<Prestamo> prestamoModel = prestamoModelAssembler.toModel(nuevoPrestamo);
+                return ResponseEntity.status(HttpStatus.CREATED).body(prestamoModel);
+            }
+
+            if (claveIdempotencia.isBlank() || claveIdempotencia.length() > LARGO_CLAVE_IDEMPOTENCIA_MAXIMO) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Idempotency-Key debe tener entre 1 y " + LARGO_CLAVE_IDEMPOTENCIA_MAXIMO + " caracteres"));
+            }
+            PrestamoIdempotente resultado = idempotenciaService.crearPrestamo(claveIdempotencia, prestamo);
+            EntityModel<Prestamo> prestamoModel = prestamoModelAssembler.toModel(resultado.getPrestamo());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header("Idempotent-Replayed", String.valueOf(resultado.isRepetido()))
+                    .body(prestamoModel);
+        } catch (ClaveIdempotenciaEnUsoException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (ClaveIdempotenciaReutilizadaException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (PrestamoEliminadoException e) {
+            return ResponseEntity.status(HttpStatus.GONE)
+                    .body(Map.of("error", e.getMessage(), "prestamoId", e.getPrestamoId()));
+        } catch (ServicioNoDisponibleException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest()
                     .body(Map.of("error", e.getMessage()));
@@ -151,6 +557,43 @@ public class PrestamoController {
         }
     }
 
+    @Operation(
+        summary = "Crear préstamos en lote",
+        description = "Registra varios préstamos en una sola solicitud. Cada usuario y libro distinto se verifica una sola vez, " +
+                "y la respuesta indica el resultado de cada préstamo en el mismo orden de la solicitud"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Lote procesado; cada elemento indica si el préstamo se creó o el motivo del rechazo",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoPrestamoLote.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Lote vacío o con más elementos de los permitidos",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<?> crearPrestamosEnLote(
+            @Parameter(description = "Préstamos a crear", required = true)
+            @RequestBody List<Prestamo> prestamos) {
+        if (prestamos == null || prestamos.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Se requiere al menos un préstamo"));
+        }
+        if (prestamos.size() > TAMANO_LOTE_MAXIMO) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "El lote no puede superar " + TAMANO_LOTE_MAXIMO + " préstamos"));
+        }
+        try {
+            return ResponseEntity.ok(prestamoService.crearPrestamosEnLote(prestamos));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @Operation(
         summary = "Devolver libro prestado",
         description = "Marca un préstamo como devuelto y actualiza la fecha de devolución"
@@ -186,6 +629,68 @@ public class PrestamoController {
         }
     }
 
+    @Operation(
+        summary = "Devolver préstamos en lote",
+        description = "Marca como devueltos los préstamos indicados que estén activos o vencidos, con una actualización " +
+                "por bloque de IDs. La respuesta separa los IDs devueltos de los omitidos (inexistentes o ya devueltos)"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Devolución procesada",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoActualizacionLote.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Lista vacía o con más IDs de los permitidos",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @PatchMapping("/devolver")
+    public ResponseEntity<?> devolverEnLote(
+            @Parameter(description = "IDs de los préstamos a devolver", required = true)
+            @RequestBody List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Se requiere al menos un ID de préstamo"));
+        }
+        if (ids.size() > TAMANO_DEVOLUCION_MAXIMO) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "La devolución admite como máximo " + TAMANO_DEVOLUCION_MAXIMO + " préstamos"));
+        }
+        return ResponseEntity.ok(prestamoService.devolverEnLote(ids));
+    }
+
+    @Operation(
+        summary = "Marcar préstamos vencidos",
+        description = "Ejecuta el barrido diario de vencimiento: los préstamos activos con más días que el plazo configurado " +
+                "pasan a VENCIDO. Devuelve los IDs marcados y los omitidos por haberse devuelto durante el barrido"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Barrido completado",
+        content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoActualizacionLote.class))
+    )
+    @PostMapping("/vencidos/barrido")
+    public ResultadoActualizacionLote marcarVencidos() {
+        return prestamoService.marcarVencidos();
+    }
+
+    @Operation(
+        summary = "Archivar préstamos devueltos",
+        description = "Ejecuta el archivo diario: los préstamos devueltos con más antigüedad que prestamos.archivo.edad " +
+                "pasan de la tabla principal a prestamos_archivo. Siguen disponibles con historial=true"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Archivo completado",
+        content = @Content(mediaType = "application/json")
+    )
+    @PostMapping("/archivo/barrido")
+    public Map<String, Long> archivarDevueltos() {
+        return Map.of("archivados", archivoPrestamosService.archivar());
+    }
+
     @Operation(
         summary = "Eliminar préstamo",
         description = "Elimina permanentemente un préstamo del sistema"
@@ -206,6 +711,7 @@ public class PrestamoController {
             @PathVariable Long id) {
         if (prestamoService.buscarPorId(id).isPresent()) {
             prestamoService.eliminar(id);
+            idempotenciaService.olvidarPrestamo(id);
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.notFound().build();
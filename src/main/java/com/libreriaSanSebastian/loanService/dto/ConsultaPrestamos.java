@@ -0,0 +1,90 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import org.springframework.data.domain.Sort;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Filtros, orden y campos de GET /api/v1/prestamos; todos son opcionales y se resuelven en la base
+@Data
+public class ConsultaPrestamos {
+
+    // Solo columnas sin nulos con índice propio, para que el cursor (valor, id) siga siendo único y ordenado
+    private static final Set<String> ORDENABLES = Set.of("id", "fechaPrestamo");
+    private static final Set<String> CAMPOS = Set.of("id", "usuarioId", "libroId", "fechaPrestamo", "fechaDevolucion", "estado");
+    public static final Sort ORDEN_POR_DEFECTO = Sort.by(Sort.Direction.ASC, "id");
+
+    @Schema(description = "ID del usuario", example = "1")
+    private Long usuarioId;
+
+    @Schema(description = "ID del libro", example = "1")
+    private Long libroId;
+
+    @Schema(description = "Estado del préstamo", example = "ACTIVO")
+    private EstadoPrestamo estado;
+
+    @Schema(description = "Fecha de préstamo desde (inclusive, ISO-8601)", example = "2024-01-01T00:00:00Z")
+    private Instant prestadoDesde;
+
+    @Schema(description = "Fecha de préstamo hasta (exclusive, ISO-8601)", example = "2024-02-01T00:00:00Z")
+    private Instant prestadoHasta;
+
+    @Schema(description = "Fecha de devolución desde (inclusive, ISO-8601)", example = "2024-01-01T00:00:00Z")
+    private Instant devueltoDesde;
+
+    @Schema(description = "Fecha de devolución hasta (exclusive, ISO-8601)", example = "2024-02-01T00:00:00Z")
+    private Instant devueltoHasta;
+
+    @Schema(description = "Orden como campo,dirección; campos: id o fechaPrestamo", example = "fechaPrestamo,desc")
+    private String sort;
+
+    @Schema(description = "Campos a devolver; el id siempre se incluye", example = "id,libroId,estado")
+    private List<String> fields;
+
+    public boolean sinFiltros() {
+        return usuarioId == null && libroId == null && estado == null && prestadoDesde == null && prestadoHasta == null
+                && devueltoDesde == null && devueltoHasta == null;
+    }
+
+    public boolean conProyeccion() {
+        return fields != null && !fields.isEmpty();
+    }
+
+    public Sort orden() {
+        if (sort == null || sort.isBlank()) {
+            return ORDEN_POR_DEFECTO;
+        }
+        String[] partes = sort.split(",");
+        String campo = partes[0].trim();
+        if (!ORDENABLES.contains(campo)) {
+            throw new IllegalArgumentException("No se puede ordenar por: " + campo);
+        }
+        Sort.Direction direccion = partes.length > 1
+                ? Sort.Direction.fromOptionalString(partes[1].trim()).orElseThrow(
+                        () -> new IllegalArgumentException("Dirección de orden no válida: " + partes[1].trim()))
+                : Sort.Direction.ASC;
+        Sort orden = Sort.by(direccion, campo);
+        // El ID desempata y hace que el cursor avance sin saltar ni repetir filas
+        return campo.equals("id") ? orden : orden.and(Sort.by(direccion, "id"));
+    }
+
+    public List<String> campos() {
+        List<String> campos = new ArrayList<>();
+        campos.add("id");
+        for (String campo : fields) {
+            String nombre = campo.trim();
+            if (!CAMPOS.contains(nombre)) {
+                throw new IllegalArgumentException("Campo desconocido: " + nombre);
+            }
+            if (!campos.contains(nombre)) {
+                campos.add(nombre);
+            }
+        }
+        return campos;
+    }
+}
@@ -0,0 +1,8 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+// Cantidad de préstamos de un usuario, agrupada en la base (ver PrestamoRepository.contarPorUsuario)
+public interface ConteoPrestamosUsuario {
+    Long getUsuarioId();
+
+    long getCantidad();
+}
@@ -0,0 +1,43 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+// Respuesta de GET /api/v1/prestamos/stats, calculada desde los agregados en memoria de EstadisticasPrestamosService
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadisticasPrestamos {
+    private long total;
+    private long sinDevolver;
+    private long devueltos;
+    // Promedio de fechaDevolucion - fechaPrestamo de los préstamos devueltos; 0 si aún no hay devoluciones
+    private double duracionPromedioHoras;
+    // Préstamos devueltos por duración, en tramos de días ("0-1", "1-3", ..., "30+")
+    private Map<String, Long> duracionDevueltos;
+    // Días más recientes primero, en UTC
+    private List<Dia> porDia;
+    private List<Conteo> librosConMasActivos;
+    private List<Conteo> usuariosConMasPrestamos;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Dia {
+        private LocalDate fecha;
+        private long prestados;
+        private long devueltos;
+    }
+
+    // librosConMasActivos cuenta préstamos sin devolver; usuariosConMasPrestamos, todos los registrados
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Conteo {
+        private Long id;
+        private long cantidad;
+    }
+}
@@ -0,0 +1,10 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+import java.time.Instant;
+
+// PrestamoResumen más las fechas, para actualizar las estadísticas sin cargar la entidad
+public interface PrestamoConFechas extends PrestamoResumen {
+    Instant getFechaPrestamo();
+
+    Instant getFechaDevolucion();
+}
@@ -0,0 +1,10 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+import java.time.Instant;
+
+// Posición de un préstamo en el recorrido por fecha de préstamo (ver PrestamoRepository.findCursorByEstadoAndFechaPrestamoBefore)
+public interface PrestamoCursor {
+    Long getId();
+
+    Instant getFechaPrestamo();
+}
@@ -0,0 +1,13 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import lombok.*;
+
+// Préstamo creado con una Idempotency-Key; repetido indica que se devolvió el de una solicitud anterior
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrestamoIdempotente {
+    private Prestamo prestamo;
+    private boolean repetido;
+}
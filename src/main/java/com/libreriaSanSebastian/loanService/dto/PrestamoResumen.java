@@ -0,0 +1,14 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+
+// Proyección con solo las columnas cubiertas por idx_prestamos_usuario_estado (más la clave primaria)
+public interface PrestamoResumen {
+    Long getId();
+
+    Long getUsuarioId();
+
+    Long getLibroId();
+
+    EstadoPrestamo getEstado();
+}
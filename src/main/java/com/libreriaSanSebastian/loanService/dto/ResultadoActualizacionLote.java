@@ -0,0 +1,14 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+// IDs que una actualización por conjunto cambió y los que omitió (inexistentes o ya en otro estado)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoActualizacionLote {
+    private List<Long> actualizados;
+    private List<Long> omitidos;
+}
@@ -0,0 +1,25 @@
+package com.libreriaSanSebastian.loanService.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import lombok.*;
+
+// Resultado de un elemento de POST /api/v1/prestamos/batch, en la misma posición que en la solicitud
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoPrestamoLote {
+    private int indice;
+    private boolean exitoso;
+    private Prestamo prestamo;
+    private String error;
+
+    public static ResultadoPrestamoLote exito(int indice, Prestamo prestamo) {
+        return new ResultadoPrestamoLote(indice, true, prestamo, null);
+    }
+
+    public static ResultadoPrestamoLote error(int indice, Prestamo prestamo, String error) {
+        return new ResultadoPrestamoLote(indice, false, prestamo, error);
+    }
+}
@@ -0,0 +1,9 @@
+package com.libreriaSanSebastian.loanService.exception;
+
+// Otra solicitud con la misma Idempotency-Key sigue en curso; se responde 409
+public class ClaveIdempotenciaEnUsoException extends RuntimeException {
+
+    public ClaveIdempotenciaEnUsoException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.libreriaSanSebastian.loanService.exception;
+
+// La Idempotency-Key ya se usó con otro usuario o libro; se responde 422
+public class ClaveIdempotenciaReutilizadaException extends RuntimeException {
+
+    public ClaveIdempotenciaReutilizadaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.libreriaSanSebastian.loanService.exception;
+
+// La Idempotency-Key está resuelta pero su préstamo se anuló o se eliminó después; se responde 410 con el ID original
+public class PrestamoEliminadoException extends RuntimeException {
+
+    private final Long prestamoId;
+
+    public PrestamoEliminadoException(String message, Long prestamoId) {
+        super(message);
+        this.prestamoId = prestamoId;
+    }
+
+    public Long getPrestamoId() {
+        return prestamoId;
+    }
+}
@@ -0,0 +1,9 @@
+package com.libreriaSanSebastian.loanService.exception;
+
+// Un servicio remoto no puede atender la solicitud ahora (circuito abierto o sin capacidad); se responde 503
+public class ServicioNoDisponibleException extends RuntimeException {
+
+    public ServicioNoDisponibleException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,33 @@
+package com.libreriaSanSebastian.loanService.modelo;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Idempotency-Key recibida al crear un préstamo. La clave primaria impide que dos solicitudes con la misma
+// clave creen dos préstamos, aunque lleguen a instancias distintas del servicio
+@Entity
+@Table(name = "prestamos_idempotencia", indexes = {
+        @Index(name = "idx_idempotencia_fecha", columnList = "fechaCreacion")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClaveIdempotencia {
+    @Id
+    @Column(length = 100)
+    private String clave;
+
+    @Column(nullable = false)
+    private Long usuarioId;
+
+    @Column(nullable = false)
+    private Long libroId;
+
+    // null mientras la solicitud original sigue en curso
+    @Column
+    private Long prestamoId;
+
+    @Column(nullable = false)
+    private Instant fechaCreacion;
+}
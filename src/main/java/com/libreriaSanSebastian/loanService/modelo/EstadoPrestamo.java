@@ -0,0 +1,28 @@
+package com.libreriaSanSebastian.loanService.modelo;
+
+// Se almacena como un código de un carácter (ver EstadoPrestamoConverter)
+public enum EstadoPrestamo {
+    ACTIVO('A'),
+    DEVUELTO('D'),
+    // Sin devolver pasado el plazo (prestamos.vencimiento.plazo); lo asigna el barrido diario
+    VENCIDO('V');
+
+    private final char codigo;
+
+    EstadoPrestamo(char codigo) {
+        this.codigo = codigo;
+    }
+
+    public char getCodigo() {
+        return codigo;
+    }
+
+    public static EstadoPrestamo desdeCodigo(char codigo) {
+        for (EstadoPrestamo estado : values()) {
+            if (estado.codigo == codigo) {
+                return estado;
+            }
+        }
+        throw new IllegalArgumentException("Código de estado de préstamo desconocido: " + codigo);
+    }
+}
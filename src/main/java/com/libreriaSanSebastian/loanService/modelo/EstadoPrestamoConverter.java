@@ -0,0 +1,18 @@
+package com.libreriaSanSebastian.loanService.modelo;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+@Converter
+public class EstadoPrestamoConverter implements AttributeConverter<EstadoPrestamo, String> {
+
+    @Override
+    public String convertToDatabaseColumn(EstadoPrestamo estado) {
+        return estado == null ? null : String.valueOf(estado.getCodigo());
+    }
+
+    @Override
+    public EstadoPrestamo convertToEntityAttribute(String codigo) {
+        return codigo == null || codigo.isEmpty() ? null : EstadoPrestamo.desdeCodigo(codigo.charAt(0));
+    }
+}
@@ -0,0 +1,61 @@
+package com.libreriaSanSebastian.loanService.modelo;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Ajuste de stock pendiente de enviar al servicio de libros (outbox). Se guarda en la misma transacción que
+// el préstamo que lo origina y lo envía DespachoStockService
+@Entity
+@Table(name = "prestamos_eventos_stock", indexes = {
+        @Index(name = "idx_eventos_stock_pendientes", columnList = "fallido, proximoIntento")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoStock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "eventos_stock_seq")
+    @SequenceGenerator(name = "eventos_stock_seq", sequenceName = "eventos_stock_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long libroId;
+
+    // Negativo al prestar, positivo al devolver
+    @Column(nullable = false)
+    private int cantidad;
+
+    @Column(nullable = false)
+    private Long prestamoId;
+
+    @Column(nullable = false)
+    private Instant fechaCreacion;
+
+    @Column(nullable = false)
+    private int intentos;
+
+    @Column(nullable = false)
+    private Instant proximoIntento;
+
+    // El servicio de libros rechazó el ajuste (4xx); no se reintenta
+    @Column(nullable = false)
+    private boolean fallido;
+
+    @Column(length = 500)
+    private String ultimoError;
+
+    // Mayor ID de los eventos que se enviaron juntos la primera vez; null hasta entonces. Los reintentos repiten el
+    // mismo grupo y la misma clave de idempotencia, así el servicio de libros descarta un ajuste que ya aplicó
+    @Column
+    private Long lote;
+
+    public static EventoStock de(Prestamo prestamo, int cantidad) {
+        return de(prestamo.getId(), prestamo.getLibroId(), cantidad);
+    }
+
+    public static EventoStock de(Long prestamoId, Long libroId, int cantidad) {
+        Instant ahora = Instant.now();
+        return new EventoStock(null, libroId, cantidad, prestamoId, ahora, 0, ahora, false, null, null);
+    }
+}
@@ -2,16 +2,35 @@ package com.libreriaSanSebastian.loanService.modelo;
 
 import lombok.*;
 import jakarta.persistence.*;
-import java.util.Date;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.time.Instant;
 
 @Entity
-@Table(name = "prestamos")
+@Table(name = "prestamos", indexes = {
+        // Préstamos de un usuario por estado; incluye libroId para que PrestamoResumen se lea solo desde el índice
+        @Index(name = "idx_prestamos_usuario_estado", columnList = "usuarioId, estado, libroId"),
+        @Index(name = "idx_prestamos_libro_estado", columnList = "libroId, estado"),
+        // Barrido de vencidos: préstamos activos ordenados por fecha
+        @Index(name = "idx_prestamos_estado_fecha", columnList = "estado, fechaPrestamo"),
+        // Ventanas y orden por fecha sin filtrar por estado (GET /api/v1/prestamos?sort=fechaPrestamo)
+        @Index(name = "idx_prestamos_fecha", columnList = "fechaPrestamo")
+})
+// READ_WRITE: la entrada de un préstamo modificado queda bloqueada hasta el commit, así ninguna lectura concurrente
+// vuelve a guardar el estado anterior. Las actualizaciones masivas (devolverTodos, cambiarEstado) vacían la región.
+// La caché es local a cada instancia: lo que escribe otra se ve recién al expirar la entrada (application.conf), por eso
+// las lecturas que deciden una escritura usan buscarSinCache
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "prestamos")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Prestamo {
+    // Secuencia con asignación por bloques: IDENTITY impide que Hibernate agrupe los INSERT en lotes JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "prestamos_seq")
+    @SequenceGenerator(name = "prestamos_seq", sequenceName = "prestamos_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -21,17 +40,18 @@ public class Prestamo {
     private Long libroId;
 
     @Column(nullable = false)
-    private Date fechaPrestamo;
+    private Instant fechaPrestamo;
 
     @Column
-    private Date fechaDevolucion;
+    private Instant fechaDevolucion;
 
-    @Column(nullable = false)
-    private String estado; // ACTIVO, DEVUELTO
+    @Column(nullable = false, length = 1, columnDefinition = "CHAR(1)")
+    @Convert(converter = EstadoPrestamoConverter.class)
+    private EstadoPrestamo estado;
 
     @PrePersist
     protected void onCreate() {
-        this.fechaPrestamo = new Date();
-        this.estado = "ACTIVO";
+        this.fechaPrestamo = Instant.now();
+        this.estado = EstadoPrestamo.ACTIVO;
     }
 }
\ No newline at end of file
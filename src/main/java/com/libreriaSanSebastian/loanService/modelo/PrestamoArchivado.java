@@ -0,0 +1,37 @@
+package com.libreriaSanSebastian.loanService.modelo;
+
+import lombok.*;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Préstamo devuelto que ArchivoPrestamosService movió desde prestamos, con el mismo ID. La tabla principal queda solo
+// con los préstamos recientes y sus índices caben en memoria; el archivo se lee únicamente cuando se pide el historial.
+// Sin caché de segundo nivel: son lecturas poco frecuentes
+@Entity
+@Table(name = "prestamos_archivo", indexes = {
+        @Index(name = "idx_prestamos_archivo_usuario", columnList = "usuarioId")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrestamoArchivado {
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long usuarioId;
+
+    @Column(nullable = false)
+    private Long libroId;
+
+    @Column(nullable = false)
+    private Instant fechaPrestamo;
+
+    // Todos los archivados están en estado DEVUELTO
+    @Column(nullable = false)
+    private Instant fechaDevolucion;
+
+    public Prestamo aPrestamo() {
+        return new Prestamo(id, usuarioId, libroId, fechaPrestamo, fechaDevolucion, EstadoPrestamo.DEVUELTO);
+    }
+}
@@ -0,0 +1,52 @@
+package com.libreriaSanSebastian.loanService.repository;
+
+import com.libreriaSanSebastian.loanService.modelo.ClaveIdempotencia;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
+
+@Repository
+public interface ClaveIdempotenciaRepository extends JpaRepository<ClaveIdempotencia, String> {
+
+    // INSERT explícito: save() haría un merge sobre la fila existente. Una clave repetida lanza DataIntegrityViolationException
+    // Sin declarar la tabla afectada, Hibernate vaciaría toda la caché de segundo nivel en cada INSERT nativo
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "prestamos_idempotencia"))
+    @Query(value = "INSERT INTO prestamos_idempotencia (clave, usuario_id, libro_id, fecha_creacion) " +
+            "VALUES (:clave, :usuarioId, :libroId, :fechaCreacion)", nativeQuery = true)
+    void reservar(@Param("clave") String clave, @Param("usuarioId") Long usuarioId,
+                  @Param("libroId") Long libroId, @Param("fechaCreacion") Instant fechaCreacion);
+
+    // Se llama dentro de la transacción que inserta el préstamo, así la clave queda resuelta en el mismo commit
+    @Transactional
+    @Modifying
+    @Query("UPDATE ClaveIdempotencia c SET c.prestamoId = :prestamoId WHERE c.clave = :clave")
+    int asignarPrestamo(@Param("clave") String clave, @Param("prestamoId") Long prestamoId);
+
+    // Libera una clave solo si su préstamo no llegó a guardarse
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ClaveIdempotencia c WHERE c.clave = :clave AND c.prestamoId IS NULL")
+    int eliminarReserva(@Param("clave") String clave);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ClaveIdempotencia c WHERE c.fechaCreacion < :limite")
+    int eliminarAnterioresA(@Param("limite") Instant limite);
+
+    // Reservas de solicitudes que nunca terminaron (por ejemplo, la instancia se detuvo a mitad de la creación)
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ClaveIdempotencia c WHERE c.prestamoId IS NULL AND c.fechaCreacion < :limite")
+    int eliminarReservasAbandonadas(@Param("limite") Instant limite);
+}
@@ -0,0 +1,36 @@
+package com.libreriaSanSebastian.loanService.repository;
+
+import com.libreriaSanSebastian.loanService.modelo.EventoStock;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface EventoStockRepository extends JpaRepository<EventoStock, Long> {
+
+    // FOR UPDATE SKIP LOCKED (timeout -2): cada instancia toma eventos distintos sin esperar a las demás. El bloqueo dura
+    // solo la transacción que los aparta (ver DespachoStockService.reclamar)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<EventoStock> findByFallidoFalseAndProximoIntentoLessThanEqualOrderByIdAsc(Instant ahora, Limit limite);
+
+    long countByFallidoFalse();
+
+    // Reposiciones todavía sin enviar de un préstamo cuyo descuento fue rechazado: el stock nunca salió. Solo las que
+    // ninguna ronda tomó (sin lote): un grupo ya tomado se reenvía con su clave de idempotencia, y quitarle un evento
+    // cambiaría la cantidad bajo esa misma clave. Si otra instancia lo está tomando, el DELETE espera su bloqueo y ya
+    // lo ve con lote
+    @Modifying
+    @Query("DELETE FROM EventoStock e WHERE e.prestamoId = :prestamoId AND e.cantidad > 0 AND e.lote IS NULL")
+    int eliminarReposiciones(@Param("prestamoId") Long prestamoId);
+}
@@ -0,0 +1,30 @@
+package com.libreriaSanSebastian.loanService.repository;
+
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.PrestamoArchivado;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PrestamoArchivadoRepository extends JpaRepository<PrestamoArchivado, Long> {
+
+    List<PrestamoArchivado> findByUsuarioId(Long usuarioId);
+
+    // Paginación por cursor (keyset) sobre la clave primaria, como en PrestamoRepository
+    List<PrestamoArchivado> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Copia los préstamos del bloque que siguen devueltos, en un solo INSERT ... SELECT. Debe ejecutarse dentro de una
+    // transacción del servicio, junto con el borrado en prestamos
+    @Modifying
+    @Query("INSERT INTO PrestamoArchivado (id, usuarioId, libroId, fechaPrestamo, fechaDevolucion) " +
+            "SELECT p.id, p.usuarioId, p.libroId, p.fechaPrestamo, p.fechaDevolucion FROM Prestamo p " +
+            "WHERE p.id IN :ids AND p.estado = :devuelto")
+    int copiarDesdePrestamos(@Param("ids") Collection<Long> ids, @Param("devuelto") EstadoPrestamo devuelto);
+}
@@ -0,0 +1,50 @@
+package com.libreriaSanSebastian.loanService.repository;
+
+import com.libreriaSanSebastian.loanService.dto.ConsultaPrestamos;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+
+// Condiciones de ConsultaPrestamos como Specification; los filtros ausentes no agregan nada al WHERE
+public final class PrestamoEspecificaciones {
+
+    private PrestamoEspecificaciones() {
+    }
+
+    public static Specification<Prestamo> de(ConsultaPrestamos consulta) {
+        return Specification.where(igual("usuarioId", consulta.getUsuarioId()))
+                .and(igual("libroId", consulta.getLibroId()))
+                .and(igual("estado", consulta.getEstado()))
+                .and(desde("fechaPrestamo", consulta.getPrestadoDesde()))
+                .and(hasta("fechaPrestamo", consulta.getPrestadoHasta()))
+                .and(desde("fechaDevolucion", consulta.getDevueltoDesde()))
+                .and(hasta("fechaDevolucion", consulta.getDevueltoHasta()));
+    }
+
+    // Filas posteriores al cursor según el primer criterio de orden, desempatando por ID:
+    // (campo > valor) OR (campo = valor AND id > cursor), o con < si el orden es descendente
+    public static Specification<Prestamo> despuesDe(Sort.Order orden, Instant valor, Long cursor) {
+        boolean ascendente = orden.isAscending();
+        if (orden.getProperty().equals("id")) {
+            return (root, query, cb) -> ascendente ? cb.greaterThan(root.get("id"), cursor) : cb.lessThan(root.get("id"), cursor);
+        }
+        return (root, query, cb) -> cb.or(
+                ascendente ? cb.greaterThan(root.get(orden.getProperty()), valor) : cb.lessThan(root.get(orden.getProperty()), valor),
+                cb.and(cb.equal(root.get(orden.getProperty()), valor),
+                        ascendente ? cb.greaterThan(root.get("id"), cursor) : cb.lessThan(root.get("id"), cursor)));
+    }
+
+    private static Specification<Prestamo> igual(String campo, Object valor) {
+        return valor == null ? null : (root, query, cb) -> cb.equal(root.get(campo), valor);
+    }
+
+    private static Specification<Prestamo> desde(String campo, Instant valor) {
+        return valor == null ? null : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get(campo), valor);
+    }
+
+    private static Specification<Prestamo> hasta(String campo, Instant valor) {
+        return valor == null ? null : (root, query, cb) -> cb.lessThan(root.get(campo), valor);
+    }
+}
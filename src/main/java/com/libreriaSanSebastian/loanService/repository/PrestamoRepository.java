@@ -1,14 +1,110 @@
 package com.libreriaSanSebastian.loanService.repository;
 
 
+import com.libreriaSanSebastian.loanService.dto.ConteoPrestamosUsuario;
+import com.libreriaSanSebastian.loanService.dto.PrestamoConFechas;
+import com.libreriaSanSebastian.loanService.dto.PrestamoCursor;
+import com.libreriaSanSebastian.loanService.dto.PrestamoResumen;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
 import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+import static org.hibernate.jpa.SpecHints.HINT_SPEC_CACHE_STORE_MODE;
 
 @Repository
-public interface PrestamoRepository extends JpaRepository<Prestamo, Long> {
+public interface PrestamoRepository extends JpaRepository<Prestamo, Long>, JpaSpecificationExecutor<Prestamo>,
+        PrestamoRepositoryCustom {
+    // Resultado en la caché de consultas (solo IDs; las entidades salen de la región prestamos). Cualquier escritura en
+    // la tabla prestamos lo invalida
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = "prestamos-por-usuario")
+    })
     List<Prestamo> findByUsuarioId(Long usuarioId);
 
-}
\ No newline at end of file
+    List<PrestamoResumen> findByUsuarioIdAndEstado(Long usuarioId, EstadoPrestamo estado);
+
+    long countByLibroIdAndEstado(Long libroId, EstadoPrestamo estado);
+
+    // Una fila por usuario con préstamos en alguno de los estados; lo usa LimitePrestamosService al cargar y reconciliar
+    @Query("SELECT p.usuarioId AS usuarioId, COUNT(p) AS cantidad FROM Prestamo p WHERE p.estado IN :estados GROUP BY p.usuarioId")
+    List<ConteoPrestamosUsuario> contarPorUsuario(@Param("estados") Collection<EstadoPrestamo> estados);
+
+    // Paginación por cursor (keyset) sobre la clave primaria: no usa OFFSET ni COUNT. Un listado recorre filas que no se
+    // vuelven a pedir por ID, así que no se guardan en la caché de segundo nivel y no desplazan a las que sí se reusan
+    @QueryHints(@QueryHint(name = HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
+    List<Prestamo> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Valor de orden de la fila del cursor cuando la consulta se ordena por fecha de préstamo
+    @Query("SELECT p.fechaPrestamo FROM Prestamo p WHERE p.id = :id")
+    Optional<Instant> findFechaPrestamoById(@Param("id") Long id);
+
+    // Integer.MIN_VALUE hace que MySQL Connector/J entregue las filas una a una en lugar de cargar todo el resultado.
+    // BYPASS evita que la exportación completa llene la caché de segundo nivel
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS")
+    })
+    Stream<Prestamo> streamAllByOrderByIdAsc();
+
+    // Bloque del recorrido de EstadisticasPrestamosService: solo las columnas que usa, sin construir entidades ni pasar
+    // por la caché, por cursor sobre la clave primaria
+    @Query("SELECT p.id AS id, p.usuarioId AS usuarioId, p.libroId AS libroId, p.estado AS estado, " +
+            "p.fechaPrestamo AS fechaPrestamo, p.fechaDevolucion AS fechaDevolucion " +
+            "FROM Prestamo p WHERE p.id > :despuesDe ORDER BY p.id")
+    List<PrestamoConFechas> findConFechasDespuesDe(@Param("despuesDe") Long despuesDe, Limit limit);
+
+    // Actualizaciones por conjunto: un solo UPDATE por bloque de IDs, sin cargar las entidades.
+    // Deben ejecutarse dentro de una transacción del servicio
+    @Modifying
+    @Query("UPDATE Prestamo p SET p.estado = :devuelto, p.fechaDevolucion = :fecha " +
+            "WHERE p.id IN :ids AND p.estado IN :pendientes")
+    int devolverTodos(@Param("ids") Collection<Long> ids, @Param("pendientes") Collection<EstadoPrestamo> pendientes,
+                      @Param("devuelto") EstadoPrestamo devuelto, @Param("fecha") Instant fecha);
+
+    // Préstamos que devolverTodos acaba de actualizar, identificados por la fecha de devolución que asignó
+    List<PrestamoConFechas> findByIdInAndEstadoAndFechaDevolucion(Collection<Long> ids, EstadoPrestamo estado, Instant fechaDevolucion);
+
+    // Préstamos en el estado con fecha anterior al límite, por cursor sobre (fechaPrestamo, id): sigue el orden de
+    // idx_prestamos_estado_fecha, así cada bloque lee solo sus filas sin importar cuántas queden. El primer bloque
+    // empieza en Instant.EPOCH con ID 0
+    @Query("SELECT p.id AS id, p.fechaPrestamo AS fechaPrestamo FROM Prestamo p " +
+            "WHERE p.estado = :estado AND p.fechaPrestamo < :limite AND p.fechaPrestamo >= :despuesDeFecha " +
+            "AND (p.fechaPrestamo > :despuesDeFecha OR p.id > :despuesDeId) ORDER BY p.fechaPrestamo, p.id")
+    List<PrestamoCursor> findCursorByEstadoAndFechaPrestamoBefore(@Param("estado") EstadoPrestamo estado,
+                                                                 @Param("limite") Instant limite,
+                                                                 @Param("despuesDeFecha") Instant despuesDeFecha,
+                                                                 @Param("despuesDeId") Long despuesDeId, Limit limit);
+
+    @Modifying
+    @Query("UPDATE Prestamo p SET p.estado = :nuevo WHERE p.id IN :ids AND p.estado = :actual")
+    int cambiarEstado(@Param("ids") Collection<Long> ids, @Param("actual") EstadoPrestamo actual,
+                      @Param("nuevo") EstadoPrestamo nuevo);
+
+    @Query("SELECT p.id FROM Prestamo p WHERE p.id IN :ids AND p.estado = :estado")
+    List<Long> findIdsByIdInAndEstado(@Param("ids") Collection<Long> ids, @Param("estado") EstadoPrestamo estado);
+
+    // Borrado por conjunto del archivo: como las actualizaciones masivas, vacía la región prestamos de la caché
+    @Modifying
+    @Query("DELETE FROM Prestamo p WHERE p.id IN :ids AND p.estado = :estado")
+    int eliminarTodos(@Param("ids") Collection<Long> ids, @Param("estado") EstadoPrestamo estado);
+}
@@ -0,0 +1,41 @@
+package com.libreriaSanSebastian.loanService.repository;
+
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface PrestamoRepositoryCustom {
+
+    // Lee solo las columnas pedidas (en ese orden) de los préstamos que cumplen la Specification
+    List<Map<String, Object>> buscarCampos(Specification<Prestamo> especificacion, Sort orden, List<String> campos, int limite);
+
+    // Todas las filas en orden de ID con un cursor JDBC de solo avance; cada fila llega como un Prestamo sin gestionar.
+    // Con tamanoFetch Integer.MIN_VALUE MySQL Connector/J entrega las filas una a una en lugar de cargar todo el resultado
+    void recorrerFilas(int tamanoFetch, Consumer<Prestamo> consumidor);
+
+    // Igual que recorrerFilas, sobre los préstamos archivados (prestamos_archivo), todos en estado DEVUELTO
+    void recorrerArchivados(int tamanoFetch, Consumer<Prestamo> consumidor);
+
+    // Un INSERT por préstamo en un solo lote JDBC, con IDs del mismo generador que usa la entidad. No pasa por el contexto
+    // de persistencia ni por la caché de segundo nivel. Debe ejecutarse dentro de una transacción del servicio
+    void insertarTodos(List<Prestamo> prestamos);
+
+    // Marca DEVUELTO el préstamo solo si todavía no lo estaba; devuelve las filas actualizadas (0 o 1). Es JDBC para no
+    // vaciar la región prestamos como un UPDATE masivo de JPQL: quien llama desaloja esa entrada después del commit.
+    // Debe ejecutarse dentro de una transacción del servicio
+    int devolver(Long id, Instant fecha);
+
+    // Borra el préstamo solo si todavía no fue devuelto; devuelve las filas borradas (0 o 1). Lo usa DespachoStockService
+    // para anular un préstamo cuyo descuento de stock rechazó el servicio de libros. Como devolver, no pasa por la caché
+    int anular(Long id);
+
+    // findById leyendo siempre de la base, sin la caché de segundo nivel (que puede tener la fila vieja si otra instancia
+    // la cambió) y dejando en ella lo leído. Para las lecturas que deciden una escritura: devolver, eliminar, anular
+    Optional<Prestamo> buscarSinCache(Long id);
+}
@@ -0,0 +1,164 @@
+package com.libreriaSanSebastian.loanService.repository;
+
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+// Fragmento de PrestamoRepository: proyección por Criteria (SELECT de tuplas) y lectura y escritura masiva por JDBC,
+// sin cargar ni gestionar entidades
+class PrestamoRepositoryImpl implements PrestamoRepositoryCustom {
+
+    private static final String SELECCIONAR_TODOS = "SELECT id, usuario_id, libro_id, fecha_prestamo, fecha_devolucion, " +
+            "estado FROM prestamos ORDER BY id";
+    private static final String SELECCIONAR_ARCHIVADOS = "SELECT id, usuario_id, libro_id, fecha_prestamo, " +
+            "fecha_devolucion, 'D' FROM prestamos_archivo ORDER BY id";
+    private static final String INSERTAR = "INSERT INTO prestamos (id, usuario_id, libro_id, fecha_prestamo, " +
+            "fecha_devolucion, estado) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DEVOLVER = "UPDATE prestamos SET estado = ?, fecha_devolucion = ? WHERE id = ? AND estado <> ?";
+    private static final String ANULAR = "DELETE FROM prestamos WHERE id = ? AND estado <> ?";
+
+    private static final Map<String, Object> SIN_CACHE = Map.of(
+            "jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS,
+            "jakarta.persistence.cache.storeMode", CacheStoreMode.REFRESH);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Map<String, Object>> buscarCampos(Specification<Prestamo> especificacion, Sort orden, List<String> campos, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Prestamo> root = query.from(Prestamo.class);
+        List<Selection<?>> columnas = campos.stream().<Selection<?>>map(campo -> root.get(campo).alias(campo)).toList();
+        query.multiselect(columnas);
+        if (especificacion != null) {
+            query.where(especificacion.toPredicate(root, query, cb));
+        }
+        query.orderBy(QueryUtils.toOrders(orden, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limite)
+                .getResultStream()
+                .map(tupla -> {
+                    Map<String, Object> fila = new LinkedHashMap<>();
+                    for (String campo : campos) {
+                        fila.put(campo, tupla.get(campo));
+                    }
+                    return fila;
+                })
+                .toList();
+    }
+
+    @Override
+    public void recorrerFilas(int tamanoFetch, Consumer<Prestamo> consumidor) {
+        recorrer(SELECCIONAR_TODOS, tamanoFetch, consumidor);
+    }
+
+    @Override
+    public void recorrerArchivados(int tamanoFetch, Consumer<Prestamo> consumidor) {
+        recorrer(SELECCIONAR_ARCHIVADOS, tamanoFetch, consumidor);
+    }
+
+    private void recorrer(String consulta, int tamanoFetch, Consumer<Prestamo> consumidor) {
+        Calendar utc = utc();
+        jdbcTemplate.query(conexion -> {
+            PreparedStatement sentencia = conexion.prepareStatement(consulta, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            sentencia.setFetchSize(tamanoFetch);
+            return sentencia;
+        }, (RowCallbackHandler) fila -> consumidor.accept(new Prestamo(
+                fila.getLong(1),
+                fila.getLong(2),
+                fila.getLong(3),
+                instante(fila, 4, utc),
+                instante(fila, 5, utc),
+                EstadoPrestamo.desdeCodigo(fila.getString(6).charAt(0)))));
+    }
+
+    @Override
+    public void insertarTodos(List<Prestamo> prestamos) {
+        SharedSessionContractImplementor sesion = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator generador = (IdentifierGenerator) sesion.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(Prestamo.class).getGenerator();
+        for (Prestamo prestamo : prestamos) {
+            prestamo.setId((Long) generador.generate(sesion, prestamo));
+        }
+        Calendar utc = utc();
+        jdbcTemplate.batchUpdate(INSERTAR, prestamos, prestamos.size(), (sentencia, prestamo) -> {
+            sentencia.setLong(1, prestamo.getId());
+            sentencia.setLong(2, prestamo.getUsuarioId());
+            sentencia.setLong(3, prestamo.getLibroId());
+            sentencia.setTimestamp(4, Timestamp.from(prestamo.getFechaPrestamo()), utc);
+            if (prestamo.getFechaDevolucion() == null) {
+                sentencia.setNull(5, Types.TIMESTAMP);
+            } else {
+                sentencia.setTimestamp(5, Timestamp.from(prestamo.getFechaDevolucion()), utc);
+            }
+            sentencia.setString(6, String.valueOf(prestamo.getEstado().getCodigo()));
+        });
+    }
+
+    @Override
+    public int devolver(Long id, Instant fecha) {
+        String devuelto = String.valueOf(EstadoPrestamo.DEVUELTO.getCodigo());
+        return jdbcTemplate.update(DEVOLVER, sentencia -> {
+            sentencia.setString(1, devuelto);
+            sentencia.setTimestamp(2, Timestamp.from(fecha), utc());
+            sentencia.setLong(3, id);
+            sentencia.setString(4, devuelto);
+        });
+    }
+
+    @Override
+    public int anular(Long id) {
+        return jdbcTemplate.update(ANULAR, id, String.valueOf(EstadoPrestamo.DEVUELTO.getCodigo()));
+    }
+
+    // Las fechas se leen y escriben en UTC, igual que Hibernate guarda los Instant
+    private static Calendar utc() {
+        return Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    }
+
+    private static Instant instante(ResultSet fila, int columna, Calendar utc) throws SQLException {
+        Timestamp valor = fila.getTimestamp(columna, utc);
+        return valor == null ? null : valor.toInstant();
+    }
+
+    @Override
+    public Optional<Prestamo> buscarSinCache(Long id) {
+        return Optional.ofNullable(entityManager.find(Prestamo.class, id, SIN_CACHE));
+    }
+}
@@ -0,0 +1,83 @@
+package com.libreriaSanSebastian.loanService.service;
+
+import com.libreriaSanSebastian.loanService.dto.PrestamoCursor;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+// Mueve a prestamos_archivo los préstamos devueltos con más de prestamos.archivo.edad desde la fecha de préstamo, por
+// bloques de IDs: cada bloque se copia y se borra de prestamos en una transacción corta. Así la tabla principal y sus
+// índices (por usuario, por libro, por fecha) solo crecen con los préstamos recientes
+@Service
+public class ArchivoPrestamosService {
+
+    @Autowired
+    private PrestamoRepository prestamoRepository;
+
+    @Autowired
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${prestamos.archivo.edad:365d}")
+    private Duration edad;
+
+    @Value("${prestamos.archivo.tamano-bloque:1000}")
+    private int tamanoBloque;
+
+    @Scheduled(cron = "${prestamos.archivo.cron:0 0 3 * * *}")
+    public void barrerArchivo() {
+        archivar();
+    }
+
+    // Devuelve la cantidad de préstamos archivados. El cursor (fechaPrestamo, id) recorre idx_prestamos_estado_fecha en
+    // orden dentro de estado = DEVUELTO, sin ordenar en memoria; lo comparte con el barrido de vencidos
+    public long archivar() {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        Instant limite = Instant.now().minus(edad);
+        long archivados = 0;
+        Instant despuesDeFecha = Instant.EPOCH;
+        long despuesDeId = 0L;
+        List<PrestamoCursor> bloque;
+        while (!(bloque = prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(
+                EstadoPrestamo.DEVUELTO, limite, despuesDeFecha, despuesDeId, Limit.of(tamanoBloque))).isEmpty()) {
+            List<Long> candidatos = bloque.stream().map(PrestamoCursor::getId).toList();
+            try {
+                archivados += transactionTemplate.execute(estado -> {
+                    int copiados = prestamoArchivadoRepository.copiarDesdePrestamos(candidatos, EstadoPrestamo.DEVUELTO);
+                    int borrados = prestamoRepository.eliminarTodos(candidatos, EstadoPrestamo.DEVUELTO);
+                    if (copiados != borrados) {
+                        throw new IllegalStateException("Se copiaron " + copiados + " préstamos y se borraron " + borrados);
+                    }
+                    return borrados;
+                });
+            } catch (IllegalStateException e) {
+                // Un préstamo del bloque se eliminó entre ambas sentencias: el bloque se deshace y lo retoma la próxima
+                // ejecución
+                meterRegistry.counter("prestamos.archivo.bloques-omitidos").increment();
+            }
+            PrestamoCursor ultimo = bloque.get(bloque.size() - 1);
+            despuesDeFecha = ultimo.getFechaPrestamo();
+            despuesDeId = ultimo.getId();
+        }
+        meterRegistry.counter("prestamos.archivados").increment(archivados);
+        muestra.stop(meterRegistry.timer("prestamos.archivo.duracion"));
+        return archivados;
+    }
+}
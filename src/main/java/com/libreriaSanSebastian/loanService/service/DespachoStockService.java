@@ -0,0 +1,243 @@
+package com.libreriaSanSebastian.loanService.service;
+
+import com.libreriaSanSebastian.loanService.client.LibroClient;
+import com.libreriaSanSebastian.loanService.modelo.EventoStock;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.repository.EventoStockRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Envía al servicio de libros los ajustes de stock del outbox (prestamos_eventos_stock). Cada ronda toma un lote
+ * de eventos pendientes en una transacción corta, suma en una sola llamada los descuentos de un mismo libro, y en
+ * otra los de reposición, y en una segunda transacción borra los enviados. Las llamadas se hacen fuera de toda
+ * transacción, sin retener filas bloqueadas ni una conexión del pool. Si la llamada falla se reintenta con espera
+ * exponencial.
+ * <p>
+ * Si el servicio rechaza (4xx) un descuento de varios préstamos, cada uno se vuelve a enviar por separado. Un
+ * descuento individual rechazado anula el préstamo, que nunca tuvo stock: se borra si no fue devuelto y se libera su
+ * lugar en el máximo por usuario (métrica prestamos.outbox.anulados); si ya fue devuelto o archivado se descarta su
+ * reposición si ninguna ronda la tomó todavía, y si ya estaba tomada o enviada el stock del libro queda una unidad por
+ * encima (métrica prestamos.outbox.sin-compensar, para revisión manual). Si el préstamo ya no está en ninguna de las dos
+ * tablas no se sabe si llegó a devolverse: se cuenta en prestamos.outbox.sin-prestamo. Los eventos rechazados quedan con
+ * fallido = 1.
+ */
+@Service
+public class DespachoStockService {
+
+    // Prefijo de la clave de idempotencia de cada ajuste; le siguen el menor y el mayor ID del grupo
+    private static final String PREFIJO_CLAVE = "prestamos-stock-";
+
+    @Autowired
+    private EventoStockRepository eventoStockRepository;
+
+    @Autowired
+    private PrestamoRepository prestamoRepository;
+
+    @Autowired
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @Autowired
+    private LibroClient libroClient;
+
+    @Autowired
+    private LimitePrestamosService limitePrestamos;
+
+    @Autowired
+    private EstadisticasPrestamosService estadisticas;
+
+    @Autowired
+    private IdempotenciaService idempotencia;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${prestamos.outbox.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${prestamos.outbox.reintento-inicial:1s}")
+    private Duration reintentoInicial;
+
+    @Value("${prestamos.outbox.reintento-maximo:5m}")
+    private Duration reintentoMaximo;
+
+    // Tiempo que los eventos tomados por una ronda quedan fuera del alcance de las demás. Si la instancia se detiene
+    // a mitad de la ronda, pasado este tiempo otra los vuelve a enviar con la misma clave de idempotencia
+    @Value("${prestamos.outbox.reserva:5m}")
+    private Duration reserva;
+
+    // Eventos que se envían en una sola llamada, con la clave de idempotencia del grupo
+    private record Envio(Long libroId, String clave, List<EventoStock> eventos) {
+
+        int cantidad() {
+            return eventos.stream().mapToInt(EventoStock::getCantidad).sum();
+        }
+    }
+
+    // Resultado de las llamadas de una ronda, por ID de evento. Los descuentos rechazados de un grupo de varios
+    // préstamos van a separar, no a rechazados
+    private record Resultado(List<Long> enviados, Map<Long, RuntimeException> reintentos,
+                             Map<Long, RuntimeException> separar, Map<Long, RuntimeException> rechazados) {
+    }
+
+    @PostConstruct
+    public void registrarMetricas() {
+        Gauge.builder("prestamos.outbox.pendientes", eventoStockRepository, EventoStockRepository::countByFallidoFalse)
+                .description("Ajustes de stock pendientes de enviar al servicio de libros")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${prestamos.outbox.intervalo:PT1S}")
+    public void despachar() {
+        List<Envio> envios = transactionTemplate.execute(estado -> reclamar(Instant.now()));
+        if (envios.isEmpty()) {
+            return;
+        }
+
+        Resultado resultado = new Resultado(new ArrayList<>(), new HashMap<>(), new HashMap<>(), new HashMap<>());
+        envios.forEach(envio -> enviar(envio, resultado));
+
+        List<Prestamo> anulados = transactionTemplate.execute(estado -> registrar(resultado));
+        anulados.forEach(prestamo -> {
+            limitePrestamos.liberar(prestamo.getUsuarioId());
+            estadisticas.registrarEliminacion(prestamo);
+            entityManagerFactory.getCache().evict(Prestamo.class, prestamo.getId());
+            idempotencia.olvidarPrestamo(prestamo.getId());
+        });
+        if (!anulados.isEmpty()) {
+            // El borrado fue por JDBC: los IDs por usuario en caché todavía incluyen los préstamos anulados
+            entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictQueryRegion("prestamos-por-usuario");
+        }
+        meterRegistry.counter("prestamos.outbox.enviados").increment(resultado.enviados().size());
+        meterRegistry.counter("prestamos.outbox.anulados").increment(anulados.size());
+    }
+
+    // Toma los pendientes (SKIP LOCKED: otra instancia que despacha a la vez toma eventos distintos) y los aparta hasta
+    // que venza la reserva. Los descuentos de un libro sin lote forman un grupo nuevo, y sus reposiciones otro; los que
+    // ya tienen lote (reintentos o una ronda interrumpida) se vuelven a enviar con su mismo grupo
+    private List<Envio> reclamar(Instant ahora) {
+        List<EventoStock> pendientes = eventoStockRepository
+                .findByFallidoFalseAndProximoIntentoLessThanEqualOrderByIdAsc(ahora, Limit.of(tamanoLote));
+        Map<List<Long>, List<EventoStock>> grupos = new LinkedHashMap<>();
+        for (EventoStock evento : pendientes) {
+            evento.setProximoIntento(ahora.plus(reserva));
+            List<Long> grupo = List.of(evento.getLibroId(), (long) Integer.signum(evento.getCantidad()),
+                    evento.getLote() == null ? 0L : evento.getLote());
+            grupos.computeIfAbsent(grupo, clave -> new ArrayList<>()).add(evento);
+        }
+        List<Envio> envios = new ArrayList<>();
+        for (List<EventoStock> eventos : grupos.values()) {
+            // Los pendientes llegan ordenados por ID: el primero es el menor y el último el mayor
+            EventoStock primero = eventos.get(0);
+            Long lote = primero.getLote() != null ? primero.getLote() : eventos.get(eventos.size() - 1).getId();
+            eventos.forEach(evento -> evento.setLote(lote));
+            envios.add(new Envio(primero.getLibroId(), PREFIJO_CLAVE + primero.getId() + "-" + lote, List.copyOf(eventos)));
+        }
+        return envios;
+    }
+
+    private void enviar(Envio envio, Resultado resultado) {
+        try {
+            libroClient.ajustarStock(envio.libroId(), envio.cantidad(), envio.clave());
+            envio.eventos().forEach(evento -> resultado.enviados().add(evento.getId()));
+        } catch (HttpClientErrorException e) {
+            // El servicio no indica cuántas unidades faltaban: un descuento de varios préstamos se reparte en uno por
+            // préstamo para la próxima ronda, y solo se anulan los que el servicio vuelva a rechazar
+            Map<Long, RuntimeException> destino = envio.cantidad() < 0 && envio.eventos().size() > 1
+                    ? resultado.separar() : resultado.rechazados();
+            envio.eventos().forEach(evento -> destino.put(evento.getId(), e));
+        } catch (RuntimeException e) {
+            envio.eventos().forEach(evento -> resultado.reintentos().put(evento.getId(), e));
+        }
+    }
+
+    // Devuelve los préstamos anulados, para actualizar el máximo por usuario y las estadísticas después del commit
+    private List<Prestamo> registrar(Resultado resultado) {
+        eventoStockRepository.deleteAllByIdInBatch(resultado.enviados());
+        List<Long> conError = new ArrayList<>(resultado.reintentos().keySet());
+        conError.addAll(resultado.separar().keySet());
+        conError.addAll(resultado.rechazados().keySet());
+        Instant ahora = Instant.now();
+        List<Prestamo> anulados = new ArrayList<>();
+        for (EventoStock evento : eventoStockRepository.findAllById(conError)) {
+            int intentos = evento.getIntentos() + 1;
+            evento.setIntentos(intentos);
+            RuntimeException rechazo = resultado.rechazados().get(evento.getId());
+            RuntimeException separado = resultado.separar().get(evento.getId());
+            if (rechazo != null) {
+                evento.setFallido(true);
+                evento.setUltimoError(resumen(rechazo));
+                if (evento.getCantidad() < 0) {
+                    anular(evento.getPrestamoId(), anulados);
+                }
+            } else if (separado != null) {
+                // Grupo propio: la clave del evento solo (su ID dos veces) no coincide con la de ningún grupo anterior
+                evento.setLote(evento.getId());
+                evento.setProximoIntento(ahora);
+                evento.setUltimoError(resumen(separado));
+            } else {
+                evento.setProximoIntento(ahora.plus(espera(intentos)));
+                evento.setUltimoError(resumen(resultado.reintentos().get(evento.getId())));
+            }
+        }
+        meterRegistry.counter("prestamos.outbox.fallidos").increment(resultado.rechazados().size());
+        meterRegistry.counter("prestamos.outbox.reintentos").increment(resultado.reintentos().size());
+        return anulados;
+    }
+
+    private void anular(Long prestamoId, List<Prestamo> anulados) {
+        Prestamo prestamo = prestamoRepository.buscarSinCache(prestamoId).orElse(null);
+        if (prestamo != null && prestamoRepository.anular(prestamoId) == 1) {
+            anulados.add(prestamo);
+            return;
+        }
+        // Devuelto, archivado o eliminado: se descarta la reposición que ninguna ronda haya tomado
+        if (eventoStockRepository.eliminarReposiciones(prestamoId) > 0) {
+            return;
+        }
+        if (prestamo != null || prestamoArchivadoRepository.existsById(prestamoId)) {
+            // El archivo solo guarda devueltos: su reposición ya se envió o está en curso
+            meterRegistry.counter("prestamos.outbox.sin-compensar").increment();
+        } else {
+            meterRegistry.counter("prestamos.outbox.sin-prestamo").increment();
+        }
+    }
+
+    // Espera exponencial con tope y hasta 20% de variación, para que los reintentos no lleguen todos juntos
+    private Duration espera(int intentos) {
+        long base = reintentoInicial.toMillis() << Math.min(intentos - 1, 20);
+        long tope = Math.min(base, reintentoMaximo.toMillis());
+        return Duration.ofMillis(tope + ThreadLocalRandom.current().nextLong(tope / 5 + 1));
+    }
+
+    private static String resumen(RuntimeException e) {
+        String mensaje = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return mensaje.length() > 500 ? mensaje.substring(0, 500) : mensaje;
+    }
+}
@@ -0,0 +1,232 @@
+package com.libreriaSanSebastian.loanService.service;
+
+import com.libreriaSanSebastian.loanService.dto.EstadisticasPrestamos;
+import com.libreriaSanSebastian.loanService.dto.PrestamoConFechas;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.modelo.PrestamoArchivado;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Agregados de préstamos en memoria para GET /api/v1/prestamos/stats: totales, préstamos sin devolver por libro,
+// préstamos por usuario, prestados y devueltos por día (UTC) y duración de los devueltos. Se construyen al iniciar con
+// un solo recorrido de la tabla y se actualizan al crear, devolver y eliminar, así una consulta nunca lee la base.
+// Con varias instancias cada una ve solo sus propias escrituras hasta la siguiente reconstrucción programada
+@Service
+public class EstadisticasPrestamosService {
+
+    // Filas por consulta al reconstruir
+    private static final int TAMANO_BLOQUE = 5000;
+    private static final long SEGUNDOS_POR_DIA = 86_400;
+    // Límites superiores, en días, de los tramos de duración; el último tramo no tiene límite
+    private static final long[] TRAMOS_DURACION_DIAS = {1, 3, 7, 14, 30};
+
+    @Autowired
+    private PrestamoRepository prestamoRepository;
+
+    @Autowired
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile Agregados agregados = new Agregados();
+
+    // prestamos.sin-devolver lee el contador en memoria (ACTIVO y VENCIDO), así un scrape no consulta la base
+    @PostConstruct
+    public void inicializar() {
+        reconstruir();
+        Gauge.builder("prestamos.sin-devolver", this, estadisticas -> estadisticas.agregados.sinDevolver.sum())
+                .description("Préstamos sin devolver (ACTIVO o VENCIDO)")
+                .register(meterRegistry);
+    }
+
+    // Un solo recorrido de la tabla y del archivo de devueltos, por bloques de la clave primaria, sin retener una
+    // transacción ni un cursor abierto. Los agregados nuevos reemplazan a los actuales al terminar; una escritura (o un
+    // préstamo archivado) durante el recorrido puede quedar fuera o contarse dos veces, y la siguiente reconstrucción lo
+    // corrige. La lectura del archivo es un recorrido secuencial: InnoDB ubica esas páginas en la parte "vieja" del
+    // buffer pool, así no desplaza las de la tabla principal
+    @Scheduled(cron = "${prestamos.estadisticas.reconstruccion-cron:0 30 2 * * *}")
+    public void reconstruir() {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        Agregados nuevos = new Agregados();
+        long despuesDe = 0L;
+        List<PrestamoConFechas> bloque;
+        while (!(bloque = prestamoRepository.findConFechasDespuesDe(despuesDe, Limit.of(TAMANO_BLOQUE))).isEmpty()) {
+            for (PrestamoConFechas prestamo : bloque) {
+                nuevos.sumar(prestamo.getUsuarioId(), prestamo.getLibroId(), prestamo.getEstado(),
+                        prestamo.getFechaPrestamo(), prestamo.getFechaDevolucion(), 1);
+            }
+            despuesDe = bloque.get(bloque.size() - 1).getId();
+        }
+        // Archivar un préstamo no cambia los agregados: se siguen contando como devueltos
+        despuesDe = 0L;
+        List<PrestamoArchivado> archivados;
+        while (!(archivados = prestamoArchivadoRepository.findByIdGreaterThanOrderByIdAsc(
+                despuesDe, Limit.of(TAMANO_BLOQUE))).isEmpty()) {
+            for (PrestamoArchivado prestamo : archivados) {
+                nuevos.sumar(prestamo.getUsuarioId(), prestamo.getLibroId(), EstadoPrestamo.DEVUELTO,
+                        prestamo.getFechaPrestamo(), prestamo.getFechaDevolucion(), 1);
+            }
+            despuesDe = archivados.get(archivados.size() - 1).getId();
+        }
+        agregados = nuevos;
+        muestra.stop(meterRegistry.timer("prestamos.estadisticas.reconstruccion"));
+    }
+
+    public void registrarCreacion(Prestamo prestamo) {
+        agregados.sumar(prestamo.getUsuarioId(), prestamo.getLibroId(), prestamo.getEstado(),
+                prestamo.getFechaPrestamo(), prestamo.getFechaDevolucion(), 1);
+    }
+
+    public void registrarDevolucion(Long libroId, Instant fechaPrestamo, Instant fechaDevolucion) {
+        agregados.devolver(libroId, fechaPrestamo, fechaDevolucion);
+    }
+
+    // Resta todo lo que el préstamo aportaba, según el estado que tenía al eliminarse
+    public void registrarEliminacion(Prestamo prestamo) {
+        agregados.sumar(prestamo.getUsuarioId(), prestamo.getLibroId(), prestamo.getEstado(),
+                prestamo.getFechaPrestamo(), prestamo.getFechaDevolucion(), -1);
+    }
+
+    // Los últimos dias días (hoy incluido) y los top libros y usuarios con más préstamos
+    public EstadisticasPrestamos consultar(int dias, int top) {
+        Agregados actuales = agregados;
+        Map<String, Long> duracion = new LinkedHashMap<>();
+        long conDuracion = 0;
+        for (int i = 0; i < actuales.tramosDuracion.length; i++) {
+            long cantidad = actuales.tramosDuracion[i].sum();
+            duracion.put(etiquetaTramo(i), cantidad);
+            conDuracion += cantidad;
+        }
+        double duracionPromedioHoras = conDuracion == 0 ? 0 : actuales.duracionSegundos.sum() / 3600.0 / conDuracion;
+
+        List<EstadisticasPrestamos.Dia> porDia = new ArrayList<>(dias);
+        long hoy = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        for (long dia = hoy; dia > hoy - dias; dia--) {
+            porDia.add(new EstadisticasPrestamos.Dia(LocalDate.ofEpochDay(dia),
+                    valor(actuales.prestadosPorDia, dia), valor(actuales.devueltosPorDia, dia)));
+        }
+
+        return new EstadisticasPrestamos(actuales.total.sum(), actuales.sinDevolver.sum(), actuales.devueltos.sum(),
+                duracionPromedioHoras, duracion, porDia,
+                mayores(actuales.sinDevolverPorLibro, top), mayores(actuales.prestamosPorUsuario, top));
+    }
+
+    // Los top IDs con mayor cantidad, sin ordenar todo el mapa; en los empates gana el ID menor
+    private static List<EstadisticasPrestamos.Conteo> mayores(Map<Long, LongAdder> conteos, int top) {
+        Comparator<EstadisticasPrestamos.Conteo> menorPrimero = Comparator
+                .comparingLong(EstadisticasPrestamos.Conteo::getCantidad)
+                .thenComparing(EstadisticasPrestamos.Conteo::getId, Comparator.reverseOrder());
+        PriorityQueue<EstadisticasPrestamos.Conteo> mayores = new PriorityQueue<>(top + 1, menorPrimero);
+        conteos.forEach((id, contador) -> {
+            long cantidad = contador.sum();
+            if (cantidad > 0) {
+                mayores.add(new EstadisticasPrestamos.Conteo(id, cantidad));
+                if (mayores.size() > top) {
+                    mayores.poll();
+                }
+            }
+        });
+        List<EstadisticasPrestamos.Conteo> resultado = new ArrayList<>(mayores);
+        resultado.sort(menorPrimero.reversed());
+        return resultado;
+    }
+
+    private static long valor(Map<Long, LongAdder> conteos, long clave) {
+        LongAdder contador = conteos.get(clave);
+        return contador == null ? 0 : contador.sum();
+    }
+
+    private static String etiquetaTramo(int i) {
+        long desde = i == 0 ? 0 : TRAMOS_DURACION_DIAS[i - 1];
+        return i < TRAMOS_DURACION_DIAS.length ? desde + "-" + TRAMOS_DURACION_DIAS[i] : desde + "+";
+    }
+
+    // Contadores por clave long (IDs y días desde la época); cada actualización toca unos pocos contadores
+    private static class Agregados {
+
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sinDevolver = new LongAdder();
+        private final LongAdder devueltos = new LongAdder();
+        private final LongAdder duracionSegundos = new LongAdder();
+        private final LongAdder[] tramosDuracion = new LongAdder[TRAMOS_DURACION_DIAS.length + 1];
+        private final Map<Long, LongAdder> sinDevolverPorLibro = new ConcurrentHashMap<>();
+        private final Map<Long, LongAdder> prestamosPorUsuario = new ConcurrentHashMap<>();
+        private final Map<Long, LongAdder> prestadosPorDia = new ConcurrentHashMap<>();
+        private final Map<Long, LongAdder> devueltosPorDia = new ConcurrentHashMap<>();
+
+        Agregados() {
+            for (int i = 0; i < tramosDuracion.length; i++) {
+                tramosDuracion[i] = new LongAdder();
+            }
+        }
+
+        void sumar(Long usuarioId, Long libroId, EstadoPrestamo estado, Instant fechaPrestamo, Instant fechaDevolucion,
+                   int signo) {
+            total.add(signo);
+            contar(prestamosPorUsuario, usuarioId, signo);
+            contar(prestadosPorDia, dia(fechaPrestamo), signo);
+            if (estado == EstadoPrestamo.DEVUELTO) {
+                sumarDevuelto(fechaPrestamo, fechaDevolucion, signo);
+            } else {
+                sinDevolver.add(signo);
+                contar(sinDevolverPorLibro, libroId, signo);
+            }
+        }
+
+        void devolver(Long libroId, Instant fechaPrestamo, Instant fechaDevolucion) {
+            sinDevolver.decrement();
+            contar(sinDevolverPorLibro, libroId, -1);
+            sumarDevuelto(fechaPrestamo, fechaDevolucion, 1);
+        }
+
+        private void sumarDevuelto(Instant fechaPrestamo, Instant fechaDevolucion, int signo) {
+            devueltos.add(signo);
+            if (fechaDevolucion == null) {
+                return;
+            }
+            contar(devueltosPorDia, dia(fechaDevolucion), signo);
+            long segundos = Math.max(0, Duration.between(fechaPrestamo, fechaDevolucion).getSeconds());
+            duracionSegundos.add(signo * segundos);
+            tramosDuracion[tramo(segundos)].add(signo);
+        }
+
+        private static int tramo(long segundos) {
+            int i = 0;
+            while (i < TRAMOS_DURACION_DIAS.length && segundos >= TRAMOS_DURACION_DIAS[i] * SEGUNDOS_POR_DIA) {
+                i++;
+            }
+            return i;
+        }
+
+        private static long dia(Instant instante) {
+            return Math.floorDiv(instante.getEpochSecond(), SEGUNDOS_POR_DIA);
+        }
+
+        private static void contar(Map<Long, LongAdder> conteos, Long clave, int signo) {
+            conteos.computeIfAbsent(clave, id -> new LongAdder()).add(signo);
+        }
+    }
+}
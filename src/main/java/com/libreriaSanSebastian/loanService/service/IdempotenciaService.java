@@ -0,0 +1,168 @@
+package com.libreriaSanSebastian.loanService.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.libreriaSanSebastian.loanService.dto.PrestamoIdempotente;
+import com.libreriaSanSebastian.loanService.exception.ClaveIdempotenciaEnUsoException;
+import com.libreriaSanSebastian.loanService.exception.ClaveIdempotenciaReutilizadaException;
+import com.libreriaSanSebastian.loanService.exception.PrestamoEliminadoException;
+import com.libreriaSanSebastian.loanService.modelo.ClaveIdempotencia;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.modelo.PrestamoArchivado;
+import com.libreriaSanSebastian.loanService.repository.ClaveIdempotenciaRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Creación de préstamos con Idempotency-Key. Las claves resueltas recientemente se guardan en una caché acotada,
+ * así un reintento devuelve el préstamo original sin consultar la base ni los servicios de usuarios y libros.
+ * La tabla prestamos_idempotencia (clave primaria = clave) es la fuente de verdad entre instancias y reinicios.
+ */
+@Service
+public class IdempotenciaService {
+
+    @Autowired
+    private PrestamoService prestamoService;
+
+    @Autowired
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+
+    @Autowired
+    private PrestamoRepository prestamoRepository;
+
+    @Autowired
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${prestamos.idempotencia.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${prestamos.idempotencia.max-entradas:100000}")
+    private long maxEntradas;
+
+    @Value("${prestamos.idempotencia.reserva-maxima:5m}")
+    private Duration reservaMaxima;
+
+    private record Resuelta(Long usuarioId, Long libroId, Prestamo prestamo, Instant fechaCreacion) {
+    }
+
+    private Cache<String, Resuelta> resueltas;
+
+    @PostConstruct
+    public void inicializar() {
+        // Cada entrada vive lo que le queda a su clave en la tabla, no un TTL completo desde que entra a la caché
+        resueltas = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfter(new Expiry<String, Resuelta>() {
+                    @Override
+                    public long expireAfterCreate(String clave, Resuelta resuelta, long ahora) {
+                        return restante(resuelta);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clave, Resuelta resuelta, long ahora, long duracionActual) {
+                        return restante(resuelta);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clave, Resuelta resuelta, long ahora, long duracionActual) {
+                        return duracionActual;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, resueltas, "idempotencia");
+    }
+
+    public PrestamoIdempotente crearPrestamo(String clave, Prestamo prestamo) {
+        Resuelta resuelta = resueltas.getIfPresent(clave);
+        if (resuelta != null) {
+            return repetir(clave, resuelta, prestamo);
+        }
+
+        Instant fechaCreacion = Instant.now();
+        try {
+            claveIdempotenciaRepository.reservar(clave, prestamo.getUsuarioId(), prestamo.getLibroId(), fechaCreacion);
+        } catch (DataIntegrityViolationException e) {
+            // La clave ya existe: en curso, o resuelta en otra instancia o antes de un reinicio
+            return repetir(clave, buscarResuelta(clave, prestamo), prestamo);
+        }
+
+        Prestamo creado;
+        try {
+            // La clave se resuelve en la misma transacción que inserta el préstamo: si la instancia se detiene después
+            // del commit, la reserva no queda abandonada y un reintento devuelve el préstamo original
+            creado = prestamoService.crearPrestamo(prestamo,
+                    nuevo -> claveIdempotenciaRepository.asignarPrestamo(clave, nuevo.getId()));
+        } catch (RuntimeException e) {
+            // Si el préstamo no se guardó se libera la clave para que el cliente pueda reintentar. Si se guardó y falló
+            // algo posterior, la clave ya está resuelta y no se borra
+            claveIdempotenciaRepository.eliminarReserva(clave);
+            throw e;
+        }
+        resueltas.put(clave, new Resuelta(creado.getUsuarioId(), creado.getLibroId(), creado, fechaCreacion));
+        return new PrestamoIdempotente(creado, false);
+    }
+
+    private Resuelta buscarResuelta(String clave, Prestamo prestamo) {
+        ClaveIdempotencia existente = claveIdempotenciaRepository.findById(clave)
+                .orElseThrow(() -> new ClaveIdempotenciaEnUsoException("La solicitud con la clave " + clave + " sigue en curso"));
+        validarMismaSolicitud(clave, existente.getUsuarioId(), existente.getLibroId(), prestamo);
+        if (existente.getPrestamoId() == null) {
+            throw new ClaveIdempotenciaEnUsoException("La solicitud con la clave " + clave + " sigue en curso");
+        }
+        // El préstamo pudo archivarse, o anularse (stock rechazado) o eliminarse después de resolver la clave
+        Long prestamoId = existente.getPrestamoId();
+        Prestamo original = prestamoRepository.findById(prestamoId)
+                .or(() -> prestamoArchivadoRepository.findById(prestamoId).map(PrestamoArchivado::aPrestamo))
+                .orElseThrow(() -> new PrestamoEliminadoException(
+                        "El préstamo " + prestamoId + " creado con la clave " + clave + " ya no existe", prestamoId));
+        Resuelta resuelta = new Resuelta(existente.getUsuarioId(), existente.getLibroId(), original, existente.getFechaCreacion());
+        resueltas.put(clave, resuelta);
+        return resuelta;
+    }
+
+    // Quita de la caché las claves del préstamo anulado o eliminado: un reintento vuelve a leer la tabla y recibe 410.
+    // Recorre la caché, pero solo se llama al anular o eliminar. Las demás instancias lo reflejan al vencer sus entradas
+    public void olvidarPrestamo(Long prestamoId) {
+        resueltas.asMap().values().removeIf(resuelta -> prestamoId.equals(resuelta.prestamo().getId()));
+    }
+
+    private PrestamoIdempotente repetir(String clave, Resuelta resuelta, Prestamo prestamo) {
+        validarMismaSolicitud(clave, resuelta.usuarioId(), resuelta.libroId(), prestamo);
+        meterRegistry.counter("prestamos.idempotencia.repetidos").increment();
+        return new PrestamoIdempotente(resuelta.prestamo(), true);
+    }
+
+    private void validarMismaSolicitud(String clave, Long usuarioId, Long libroId, Prestamo prestamo) {
+        if (!Objects.equals(usuarioId, prestamo.getUsuarioId()) || !Objects.equals(libroId, prestamo.getLibroId())) {
+            throw new ClaveIdempotenciaReutilizadaException("La clave " + clave + " ya se usó con otro usuario o libro");
+        }
+    }
+
+    private long restante(Resuelta resuelta) {
+        return Math.max(0, Duration.between(Instant.now(), resuelta.fechaCreacion().plus(ttl)).toNanos());
+    }
+
+    @Scheduled(fixedDelayString = "${prestamos.idempotencia.purga-intervalo:PT10M}")
+    public void purgar() {
+        Instant ahora = Instant.now();
+        claveIdempotenciaRepository.eliminarAnterioresA(ahora.minus(ttl));
+        claveIdempotenciaRepository.eliminarReservasAbandonadas(ahora.minus(reservaMaxima));
+    }
+}
@@ -0,0 +1,116 @@
+package com.libreriaSanSebastian.loanService.service;
+
+import com.libreriaSanSebastian.loanService.dto.ConteoPrestamosUsuario;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Préstamos sin devolver (ACTIVO o VENCIDO) por usuario, en memoria, para aplicar el máximo por usuario sin leer su
+// historial en cada creación. Se carga con una consulta agrupada al iniciar, se actualiza al crear, devolver y eliminar,
+// y se reconcilia periódicamente con la base, que es la que manda (por ejemplo, con varias instancias del servicio)
+@Service
+public class LimitePrestamosService {
+
+    static final List<EstadoPrestamo> SIN_DEVOLVER = List.of(EstadoPrestamo.ACTIVO, EstadoPrestamo.VENCIDO);
+
+    @Autowired
+    private PrestamoRepository prestamoRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${prestamos.limite.maximo-por-usuario:5}")
+    private int maximoPorUsuario;
+
+    private final ConcurrentHashMap<Long, AtomicInteger> sinDevolver = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void inicializar() {
+        cargar().forEach((usuarioId, cantidad) -> sinDevolver.put(usuarioId, new AtomicInteger(cantidad)));
+        Gauge.builder("prestamos.limite.usuarios", sinDevolver, Map::size)
+                .description("Usuarios con préstamos sin devolver en el contador en memoria")
+                .register(meterRegistry);
+    }
+
+    public int getMaximoPorUsuario() {
+        return maximoPorUsuario;
+    }
+
+    // Ocupa un lugar del usuario si no alcanzó el máximo; quien reserva debe liberar si el préstamo no se guarda
+    public boolean reservar(Long usuarioId) {
+        while (true) {
+            AtomicInteger contador = sinDevolver.computeIfAbsent(usuarioId, id -> new AtomicInteger());
+            int actual = contador.get();
+            if (actual >= maximoPorUsuario) {
+                return false;
+            }
+            if (contador.compareAndSet(actual, actual + 1)) {
+                if (sinDevolver.get(usuarioId) == contador) {
+                    return true;
+                }
+                // La reconciliación retiró este contador entre la lectura y el incremento: se reintenta con el nuevo
+                contador.decrementAndGet();
+            }
+        }
+    }
+
+    public void liberar(Long usuarioId) {
+        liberar(usuarioId, 1);
+    }
+
+    public void liberar(Long usuarioId, int cantidad) {
+        AtomicInteger contador = sinDevolver.get(usuarioId);
+        if (contador != null) {
+            contador.updateAndGet(actual -> Math.max(0, actual - cantidad));
+        }
+    }
+
+    public int sinDevolver(Long usuarioId) {
+        AtomicInteger contador = sinDevolver.get(usuarioId);
+        return contador == null ? 0 : contador.get();
+    }
+
+    // Las reservas de creaciones aún sin confirmar se pierden al reconciliar; a lo sumo permite un préstamo de más
+    // durante esa ventana, y la siguiente reconciliación lo vuelve a contar
+    @Scheduled(fixedDelayString = "${prestamos.limite.reconciliacion-intervalo:PT5M}",
+            initialDelayString = "${prestamos.limite.reconciliacion-intervalo:PT5M}")
+    public void reconciliar() {
+        Map<Long, Integer> enBase = cargar();
+        int corregidos = 0;
+        for (Map.Entry<Long, Integer> conteo : enBase.entrySet()) {
+            AtomicInteger contador = sinDevolver.computeIfAbsent(conteo.getKey(), id -> new AtomicInteger());
+            if (contador.getAndSet(conteo.getValue()) != conteo.getValue()) {
+                corregidos++;
+            }
+        }
+        for (Map.Entry<Long, AtomicInteger> contador : sinDevolver.entrySet()) {
+            if (!enBase.containsKey(contador.getKey())) {
+                if (contador.getValue().getAndSet(0) != 0) {
+                    corregidos++;
+                }
+                sinDevolver.remove(contador.getKey(), contador.getValue());
+            }
+        }
+        meterRegistry.counter("prestamos.limite.correcciones").increment(corregidos);
+    }
+
+    private Map<Long, Integer> cargar() {
+        Map<Long, Integer> conteos = new HashMap<>();
+        for (ConteoPrestamosUsuario conteo : prestamoRepository.contarPorUsuario(SIN_DEVOLVER)) {
+            conteos.put(conteo.getUsuarioId(), (int) conteo.getCantidad());
+        }
+        return conteos;
+    }
+}
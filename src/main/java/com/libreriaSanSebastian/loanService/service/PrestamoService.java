@@ -1,20 +1,59 @@
 package com.libreriaSanSebastian.loanService.service;
 
+import com.libreriaSanSebastian.loanService.client.LibroClient;
+import com.libreriaSanSebastian.loanService.client.UsuarioClient;
+import com.libreriaSanSebastian.loanService.dto.ConsultaPrestamos;
+import com.libreriaSanSebastian.loanService.dto.PrestamoConFechas;
+import com.libreriaSanSebastian.loanService.dto.PrestamoCursor;
+import com.libreriaSanSebastian.loanService.dto.PrestamoResumen;
+import com.libreriaSanSebastian.loanService.dto.ResultadoActualizacionLote;
+import com.libreriaSanSebastian.loanService.dto.ResultadoPrestamoLote;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.EventoStock;
 import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.modelo.PrestamoArchivado;
+import com.libreriaSanSebastian.loanService.repository.EventoStockRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoEspecificaciones;
 import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Date;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class PrestamoService {
@@ -23,103 +62,459 @@ public class PrestamoService {
     private PrestamoRepository prestamoRepository;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
 
-    // URLs de los microservicios
-    private static final String USER_SERVICE_URL = "http://localhost:8081";
-    private static final String BOOK_SERVICE_URL = "http://localhost:8080";
+    @Autowired
+    private EventoStockRepository eventoStockRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LimitePrestamosService limitePrestamos;
+
+    @Autowired
+    private EstadisticasPrestamosService estadisticas;
 
-    public List<Prestamo> listarTodos() {
-        return prestamoRepository.findAll();
+    @Autowired
+    private UsuarioClient usuarioClient;
+
+    @Autowired
+    private LibroClient libroClient;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    @Qualifier("validacionRemotaExecutor")
+    private Executor validacionRemotaExecutor;
+
+    // Límite de cada llamada individual y de la validación completa (usuario y libro en paralelo)
+    @Value("${prestamos.remoto.timeout-llamada-ms:2000}")
+    private long timeoutLlamadaMs;
+
+    @Value("${prestamos.remoto.timeout-total-ms:3000}")
+    private long timeoutTotalMs;
+
+    @Value("${prestamos.vencimiento.plazo:14d}")
+    private Duration plazoPrestamo;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // IDs por sentencia en las actualizaciones por conjunto (largo de la lista IN)
+    private static final int TAMANO_BLOQUE = 500;
+
+    // Motivo del rechazo (etiqueta de prestamos.rechazados) y mensaje para el cliente
+    private record Rechazo(String motivo, String mensaje) {
+    }
+
+    public List<Prestamo> listarPagina(Long despuesDeId, int tamano) {
+        return prestamoRepository.findByIdGreaterThanOrderByIdAsc(despuesDeId == null ? 0L : despuesDeId, Limit.of(tamano));
+    }
+
+    // Página filtrada y ordenada en la base. Sin filtros y con el orden por defecto es el mismo cursor sobre la clave
+    // primaria de listarPagina; con filtros, el WHERE y el ORDER BY van sobre columnas indexadas y se lee a lo sumo una página
+    public List<Prestamo> buscar(ConsultaPrestamos consulta, Long despuesDeId, int tamano) {
+        Sort orden = consulta.orden();
+        if (consulta.sinFiltros() && orden.equals(ConsultaPrestamos.ORDEN_POR_DEFECTO)) {
+            return listarPagina(despuesDeId, tamano);
+        }
+        return prestamoRepository.findBy(especificacion(consulta, orden, despuesDeId),
+                consultaFluida -> consultaFluida.sortBy(orden).limit(tamano).all());
+    }
+
+    // Igual que buscar, pero leyendo solo las columnas pedidas en lugar de entidades completas
+    public List<Map<String, Object>> buscarCampos(ConsultaPrestamos consulta, Long despuesDeId, int tamano) {
+        Sort orden = consulta.orden();
+        return prestamoRepository.buscarCampos(especificacion(consulta, orden, despuesDeId), orden, consulta.campos(), tamano);
+    }
+
+    private Specification<Prestamo> especificacion(ConsultaPrestamos consulta, Sort orden, Long despuesDeId) {
+        Specification<Prestamo> especificacion = PrestamoEspecificaciones.de(consulta);
+        if (despuesDeId == null) {
+            return especificacion;
+        }
+        Sort.Order primero = orden.iterator().next();
+        Instant valor = primero.getProperty().equals("id") ? null : prestamoRepository.findFechaPrestamoById(despuesDeId)
+                .orElseThrow(() -> new IllegalArgumentException("Cursor no válido: " + despuesDeId));
+        return especificacion.and(PrestamoEspecificaciones.despuesDe(primero, valor, despuesDeId));
+    }
+
+    // Recorre la tabla completa sin mantener en memoria más de una fila a la vez
+    @Transactional(readOnly = true)
+    public void recorrerTodos(Consumer<Prestamo> consumidor) {
+        try (Stream<Prestamo> prestamos = prestamoRepository.streamAllByOrderByIdAsc()) {
+            prestamos.forEach(prestamo -> {
+                consumidor.accept(prestamo);
+                entityManager.detach(prestamo);
+            });
+        }
     }
 
     public Optional<Prestamo> buscarPorId(Long id) {
         return prestamoRepository.findById(id);
     }
 
+    // Con historial también busca en los préstamos archivados, solo si no está en la tabla principal
+    public Optional<Prestamo> buscarPorId(Long id, boolean historial) {
+        Optional<Prestamo> prestamo = buscarPorId(id);
+        if (prestamo.isPresent() || !historial) {
+            return prestamo;
+        }
+        return prestamoArchivadoRepository.findById(id).map(PrestamoArchivado::aPrestamo);
+    }
+
     public List<Prestamo> buscarPorUsuario(Long usuarioId) {
         return prestamoRepository.findByUsuarioId(usuarioId);
     }
 
+    // Con historial agrega los préstamos archivados del usuario después de los de la tabla principal
+    public List<Prestamo> buscarPorUsuario(Long usuarioId, boolean historial) {
+        List<Prestamo> prestamos = buscarPorUsuario(usuarioId);
+        if (!historial) {
+            return prestamos;
+        }
+        List<Prestamo> todos = new ArrayList<>(prestamos);
+        prestamoArchivadoRepository.findByUsuarioId(usuarioId).forEach(archivado -> todos.add(archivado.aPrestamo()));
+        return todos;
+    }
+
+    public List<PrestamoResumen> buscarActivosPorUsuario(Long usuarioId) {
+        return prestamoRepository.findByUsuarioIdAndEstado(usuarioId, EstadoPrestamo.ACTIVO);
+    }
+
+    public long contarActivosPorLibro(Long libroId) {
+        return prestamoRepository.countByLibroIdAndEstado(libroId, EstadoPrestamo.ACTIVO);
+    }
+
     public Prestamo crearPrestamo(Prestamo prestamo) {
+        return crearPrestamo(prestamo, nuevo -> {
+        });
+    }
+
+    // alGuardar corre dentro de la transacción del INSERT: lo que escriba se confirma o se deshace junto con el préstamo
+    public Prestamo crearPrestamo(Prestamo prestamo, Consumer<Prestamo> alGuardar) {
         // Validar entrada
         if (prestamo.getUsuarioId() == null || prestamo.getLibroId() == null) {
-            throw new RuntimeException("Usuario ID y Libro ID son requeridos");
-        }
-        // Verificar que el usuario existe
-        if (!verificarUsuarioExiste(prestamo.getUsuarioId())) {
-            throw new RuntimeException("Usuario no encontrado con ID: " + prestamo.getUsuarioId());
+            throw rechazar(new Rechazo("datos-invalidos", "Usuario ID y Libro ID son requeridos"));
         }
-        // Verificar que el libro existe y tiene stock disponible
-        if (!verificarLibroDisponible(prestamo.getLibroId())) {
-            throw new RuntimeException("Libro no disponible o no encontrado con ID: " + prestamo.getLibroId());
+        // El máximo por usuario se revisa en memoria, antes de cualquier llamada remota
+        if (!limitePrestamos.reservar(prestamo.getUsuarioId())) {
+            throw rechazar(limiteAlcanzado(prestamo.getUsuarioId()));
         }
-        // Decrementar stock del libro
-        if (!decrementarStockLibro(prestamo.getLibroId())) {
-            throw new RuntimeException("No se pudo decrementar el stock del libro");
+        Prestamo guardado;
+        try {
+            // Verificar en paralelo que el usuario existe y que el libro está disponible
+            validarUsuarioYLibro(prestamo.getUsuarioId(), prestamo.getLibroId());
+            // Crear el préstamo y, en la misma transacción, el descuento de stock que enviará DespachoStockService.
+            // Si el servicio de libros lo rechaza, DespachoStockService anula el préstamo y libera su lugar
+            guardado = transactionTemplate.execute(estado -> {
+                Prestamo nuevo = prestamoRepository.save(prestamo);
+                eventoStockRepository.save(EventoStock.de(nuevo, -1));
+                alGuardar.accept(nuevo);
+                return nuevo;
+            });
+        } catch (RuntimeException e) {
+            // Solo se libera el lugar si el préstamo no llegó a guardarse
+            limitePrestamos.liberar(prestamo.getUsuarioId());
+            throw e;
         }
-        // Crear el préstamo
-        return prestamoRepository.save(prestamo);
+        estadisticas.registrarCreacion(guardado);
+        meterRegistry.counter("prestamos.creados").increment();
+        return guardado;
     }
 
-    private boolean verificarUsuarioExiste(Long usuarioId) {
+    public List<ResultadoPrestamoLote> crearPrestamosEnLote(List<Prestamo> prestamos) {
+        ResultadoPrestamoLote[] resultados = new ResultadoPrestamoLote[prestamos.size()];
+        List<Integer> candidatos = new ArrayList<>();
+        for (int i = 0; i < prestamos.size(); i++) {
+            Prestamo prestamo = prestamos.get(i);
+            if (prestamo.getUsuarioId() == null || prestamo.getLibroId() == null) {
+                contarRechazo("datos-invalidos");
+                resultados[i] = ResultadoPrestamoLote.error(i, prestamo, "Usuario ID y Libro ID son requeridos");
+            } else if (!limitePrestamos.reservar(prestamo.getUsuarioId())) {
+                // Cada elemento ocupa un lugar del usuario en orden, así el lote no puede superar el máximo
+                Rechazo rechazo = limiteAlcanzado(prestamo.getUsuarioId());
+                contarRechazo(rechazo.motivo());
+                resultados[i] = ResultadoPrestamoLote.error(i, prestamo, rechazo.mensaje());
+            } else {
+                candidatos.add(i);
+            }
+        }
+
+        // Una sola verificación por usuario y por libro distintos, todas en paralelo. Con el executor lleno cada
+        // verificación que no entró falla por separado y solo rechaza (saturado) los elementos que dependen de ella
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutTotalMs);
+        Map<Long, CompletableFuture<Boolean>> usuarios = new HashMap<>();
+        Map<Long, CompletableFuture<Boolean>> libros = new HashMap<>();
+        Map<Long, Rechazo> usuariosRechazados;
+        Map<Long, Rechazo> librosRechazados;
         try {
-            String userUrl = USER_SERVICE_URL + "/api/v1/usuarios/" + usuarioId;
-            ResponseEntity<Object> response = restTemplate.getForEntity(userUrl, Object.class);
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (RestClientException e) {
-            System.err.println("Error al verificar usuario: " + e.getMessage());
-            return false;
+            for (int i : candidatos) {
+                Prestamo prestamo = prestamos.get(i);
+                usuarios.computeIfAbsent(prestamo.getUsuarioId(), id -> verificarEnParalelo(() -> usuarioClient.existe(id)));
+                libros.computeIfAbsent(prestamo.getLibroId(), id -> verificarEnParalelo(() -> libroClient.estaDisponible(id)));
+            }
+            usuariosRechazados = rechazos(usuarios, limite, "el usuario con ID: ",
+                    "usuario-no-encontrado", "Usuario no encontrado con ID: ");
+            librosRechazados = rechazos(libros, limite, "el libro con ID: ",
+                    "libro-no-disponible", "Libro no disponible o no encontrado con ID: ");
+        } catch (RuntimeException e) {
+            // Ningún candidato llega a guardarse: se devuelven todos los lugares reservados
+            usuarios.values().forEach(verificacion -> verificacion.cancel(true));
+            libros.values().forEach(verificacion -> verificacion.cancel(true));
+            candidatos.forEach(i -> limitePrestamos.liberar(prestamos.get(i).getUsuarioId()));
+            throw e;
+        }
+
+        List<Prestamo> aGuardar = new ArrayList<>();
+        List<Integer> indicesAGuardar = new ArrayList<>();
+        for (int i : candidatos) {
+            Prestamo prestamo = prestamos.get(i);
+            Rechazo rechazo = usuariosRechazados.getOrDefault(prestamo.getUsuarioId(), librosRechazados.get(prestamo.getLibroId()));
+            if (rechazo != null) {
+                limitePrestamos.liberar(prestamo.getUsuarioId());
+                contarRechazo(rechazo.motivo());
+                resultados[i] = ResultadoPrestamoLote.error(i, prestamo, rechazo.mensaje());
+            } else {
+                aGuardar.add(prestamo);
+                indicesAGuardar.add(i);
+            }
         }
-    }
 
-    private boolean verificarLibroDisponible(Long libroId) {
+        // Un solo saveAll por tabla: Hibernate agrupa los INSERT según hibernate.jdbc.batch_size
+        List<Prestamo> guardados;
         try {
-            String bookUrl = BOOK_SERVICE_URL + "/api/v1/libros/" + libroId;
-            ResponseEntity<Object> response = restTemplate.getForEntity(bookUrl, Object.class);
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (RestClientException e) {
-            System.err.println("Error al verificar libro: " + e.getMessage());
-            return false;
+            guardados = transactionTemplate.execute(estado -> {
+                List<Prestamo> nuevos = prestamoRepository.saveAll(aGuardar);
+                eventoStockRepository.saveAll(nuevos.stream().map(nuevo -> EventoStock.de(nuevo, -1)).toList());
+                return nuevos;
+            });
+        } catch (RuntimeException e) {
+            aGuardar.forEach(prestamo -> limitePrestamos.liberar(prestamo.getUsuarioId()));
+            throw e;
+        }
+        guardados.forEach(estadisticas::registrarCreacion);
+        meterRegistry.counter("prestamos.creados").increment(guardados.size());
+        for (int j = 0; j < guardados.size(); j++) {
+            int i = indicesAGuardar.get(j);
+            resultados[i] = ResultadoPrestamoLote.exito(i, guardados.get(j));
         }
+        return Arrays.asList(resultados);
+    }
+
+    // Espera cada verificación y devuelve, por ID, el motivo del rechazo; los IDs válidos no aparecen
+    private Map<Long, Rechazo> rechazos(Map<Long, CompletableFuture<Boolean>> verificaciones, long limite,
+                                        String descripcion, String motivoNoValido, String mensajeNoValido) {
+        Map<Long, Rechazo> rechazos = new HashMap<>();
+        verificaciones.forEach((id, verificacion) -> {
+            try {
+                if (!esperar(verificacion, limite, descripcion + id)) {
+                    rechazos.put(id, new Rechazo(motivoNoValido, mensajeNoValido + id));
+                }
+            } catch (RuntimeException e) {
+                verificacion.cancel(true);
+                rechazos.put(id, new Rechazo(motivoDeError(e), e.getMessage()));
+            }
+        });
+        return rechazos;
     }
 
-    private boolean decrementarStockLibro(Long libroId) {
+    private void validarUsuarioYLibro(Long usuarioId, Long libroId) {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutTotalMs);
+        CompletableFuture<Boolean> usuario = verificarEnParalelo(() -> usuarioClient.existe(usuarioId));
+        CompletableFuture<Boolean> libro = verificarEnParalelo(() -> libroClient.estaDisponible(libroId));
+        Rechazo rechazo = null;
         try {
-            String decrementUrl = BOOK_SERVICE_URL + "/api/v1/libros/decrementar-stock/" + libroId;
+            if (!esperar(usuario, limite, "el usuario con ID: " + usuarioId)) {
+                rechazo = new Rechazo("usuario-no-encontrado", "Usuario no encontrado con ID: " + usuarioId);
+            } else if (!esperar(libro, limite, "el libro con ID: " + libroId)) {
+                rechazo = new Rechazo("libro-no-disponible", "Libro no disponible o no encontrado con ID: " + libroId);
+            }
+        } catch (RuntimeException e) {
+            // Si una verificación falla no tiene sentido esperar la otra
+            usuario.cancel(true);
+            libro.cancel(true);
+            contarRechazo(motivoDeError(e));
+            throw e;
+        }
+        if (rechazo != null) {
+            usuario.cancel(true);
+            libro.cancel(true);
+            throw rechazar(rechazo);
+        }
+    }
+
+    private Rechazo limiteAlcanzado(Long usuarioId) {
+        return new Rechazo("limite-prestamos", "El usuario con ID: " + usuarioId + " alcanzó el máximo de "
+                + limitePrestamos.getMaximoPorUsuario() + " préstamos sin devolver");
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
+    private RuntimeException rechazar(Rechazo rechazo) {
+        contarRechazo(rechazo.motivo());
+        return new RuntimeException(rechazo.mensaje());
+    }
+
+    private void contarRechazo(String motivo) {
+        meterRegistry.counter("prestamos.rechazados", "motivo", motivo).increment();
+    }
+
+    private static String motivoDeError(RuntimeException e) {
+        if (e instanceof ServicioNoDisponibleException) {
+            return "servicio-no-disponible";
+        }
+        if (e.getCause() instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (e.getCause() instanceof RejectedExecutionException) {
+            return "saturado";
+        }
+        return "error";
+    }
 
-            ResponseEntity<Void> response = restTemplate.exchange(
-                    decrementUrl,
-                    HttpMethod.PUT,
-                    entity,
-                    Void.class
-            );
+    // Si el executor rechaza la tarea devuelve una verificación ya fallida en lugar de lanzar: quien espera las
+    // verificaciones cancela las que ya salieron y decide qué rechazar
+    private CompletableFuture<Boolean> verificarEnParalelo(Supplier<Boolean> verificacion) {
+        try {
+            return CompletableFuture.supplyAsync(verificacion, validacionRemotaExecutor)
+                    .orTimeout(timeoutLlamadaMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            return response.getStatusCode() == HttpStatus.OK;
-        } catch (RestClientException e) {
-            System.err.println("Error al decrementar stock: " + e.getMessage());
-            return false;
+    private boolean esperar(CompletableFuture<Boolean> verificacion, long limite, String descripcion) {
+        try {
+            return verificacion.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Tiempo de espera agotado al verificar " + descripcion, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new RuntimeException("Tiempo de espera agotado al verificar " + descripcion, e.getCause());
+            }
+            if (e.getCause() instanceof ServicioNoDisponibleException noDisponible) {
+                throw noDisponible;
+            }
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw new RuntimeException("Servicio de préstamos saturado, intente nuevamente", e.getCause());
+            }
+            throw new RuntimeException("Error al verificar " + descripcion, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Verificación interrumpida de " + descripcion);
         }
     }
 
     public Prestamo devolverLibro(Long id) {
-        Optional<Prestamo> prestamoOpt = prestamoRepository.findById(id);
-        if (prestamoOpt.isPresent()) {
-            Prestamo prestamo = prestamoOpt.get();
-            if ("DEVUELTO".equals(prestamo.getEstado())) {
-                throw new RuntimeException("El libro ya fue devuelto");
+        Prestamo prestamo = prestamoRepository.buscarSinCache(id).orElseThrow(() -> new RuntimeException("Préstamo no encontrado"));
+        if (prestamo.getEstado() == EstadoPrestamo.DEVUELTO) {
+            throw new RuntimeException("El libro ya fue devuelto");
+        }
+        // Misma precisión que la columna, igual que en devolverBloque
+        Instant fecha = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        // UPDATE condicional: de dos devoluciones simultáneas solo una cambia la fila y encola la reposición de stock,
+        // que viaja por el mismo outbox que los descuentos
+        boolean devuelto = transactionTemplate.execute(estado -> {
+            if (prestamoRepository.devolver(id, fecha) == 0) {
+                return false;
             }
-            prestamo.setEstado("DEVUELTO");
-            prestamo.setFechaDevolucion(new Date());
-            return prestamoRepository.save(prestamo);
+            eventoStockRepository.save(EventoStock.de(id, prestamo.getLibroId(), 1));
+            return true;
+        });
+        entityManagerFactory.getCache().evict(Prestamo.class, id);
+        if (!devuelto) {
+            throw new RuntimeException("El libro ya fue devuelto");
+        }
+        prestamo.setEstado(EstadoPrestamo.DEVUELTO);
+        prestamo.setFechaDevolucion(fecha);
+        limitePrestamos.liberar(prestamo.getUsuarioId());
+        estadisticas.registrarDevolucion(prestamo.getLibroId(), prestamo.getFechaPrestamo(), fecha);
+        meterRegistry.counter("prestamos.devueltos").increment();
+        return prestamo;
+    }
+
+    // Devuelve varios préstamos con un UPDATE por bloque, sin cargar ni guardar cada entidad
+    public ResultadoActualizacionLote devolverEnLote(List<Long> ids) {
+        List<Long> distintos = ids.stream().filter(Objects::nonNull).distinct().toList();
+        List<Long> devueltos = new ArrayList<>();
+        for (int desde = 0; desde < distintos.size(); desde += TAMANO_BLOQUE) {
+            List<Long> bloque = distintos.subList(desde, Math.min(desde + TAMANO_BLOQUE, distintos.size()));
+            List<PrestamoConFechas> devueltosBloque = transactionTemplate.execute(estado -> devolverBloque(bloque));
+            devueltosBloque.stream()
+                    .collect(Collectors.groupingBy(PrestamoResumen::getUsuarioId, Collectors.counting()))
+                    .forEach((usuarioId, cantidad) -> limitePrestamos.liberar(usuarioId, cantidad.intValue()));
+            devueltosBloque.forEach(devuelto -> {
+                estadisticas.registrarDevolucion(devuelto.getLibroId(), devuelto.getFechaPrestamo(), devuelto.getFechaDevolucion());
+                devueltos.add(devuelto.getId());
+            });
+        }
+        meterRegistry.counter("prestamos.devueltos").increment(devueltos.size());
+        return new ResultadoActualizacionLote(devueltos, omitidos(distintos, devueltos));
+    }
+
+    private List<PrestamoConFechas> devolverBloque(List<Long> bloque) {
+        // Misma precisión que la columna, para reconocer después las filas actualizadas por su fecha de devolución
+        Instant fecha = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        int actualizados = prestamoRepository.devolverTodos(bloque,
+                List.of(EstadoPrestamo.ACTIVO, EstadoPrestamo.VENCIDO), EstadoPrestamo.DEVUELTO, fecha);
+        if (actualizados == 0) {
+            return List.of();
+        }
+        List<PrestamoConFechas> devueltos = prestamoRepository.findByIdInAndEstadoAndFechaDevolucion(bloque, EstadoPrestamo.DEVUELTO, fecha);
+        eventoStockRepository.saveAll(devueltos.stream()
+                .map(devuelto -> EventoStock.de(devuelto.getId(), devuelto.getLibroId(), 1))
+                .toList());
+        return devueltos;
+    }
+
+    @Scheduled(cron = "${prestamos.vencimiento.barrido-cron:0 0 2 * * *}")
+    public void barrerVencidos() {
+        marcarVencidos();
+    }
+
+    // Marca VENCIDO los préstamos activos con más de prestamos.vencimiento.plazo, por bloques en orden de fecha
+    public ResultadoActualizacionLote marcarVencidos() {
+        Instant limite = Instant.now().minus(plazoPrestamo);
+        List<Long> vencidos = new ArrayList<>();
+        List<Long> omitidos = new ArrayList<>();
+        Instant despuesDeFecha = Instant.EPOCH;
+        long despuesDeId = 0L;
+        List<PrestamoCursor> bloque;
+        while (!(bloque = prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(
+                EstadoPrestamo.ACTIVO, limite, despuesDeFecha, despuesDeId, Limit.of(TAMANO_BLOQUE))).isEmpty()) {
+            List<Long> candidatos = bloque.stream().map(PrestamoCursor::getId).toList();
+            List<Long> actualizados = transactionTemplate.execute(estado -> {
+                prestamoRepository.cambiarEstado(candidatos, EstadoPrestamo.ACTIVO, EstadoPrestamo.VENCIDO);
+                return prestamoRepository.findIdsByIdInAndEstado(candidatos, EstadoPrestamo.VENCIDO);
+            });
+            vencidos.addAll(actualizados);
+            // Devueltos entre la consulta y el UPDATE
+            omitidos.addAll(omitidos(candidatos, actualizados));
+            PrestamoCursor ultimo = bloque.get(bloque.size() - 1);
+            despuesDeFecha = ultimo.getFechaPrestamo();
+            despuesDeId = ultimo.getId();
         }
-        throw new RuntimeException("Préstamo no encontrado");
+        meterRegistry.counter("prestamos.vencidos").increment(vencidos.size());
+        return new ResultadoActualizacionLote(vencidos, omitidos);
+    }
+
+    private static List<Long> omitidos(List<Long> solicitados, List<Long> actualizados) {
+        Set<Long> conjunto = new HashSet<>(actualizados);
+        return solicitados.stream().filter(id -> !conjunto.contains(id)).toList();
     }
 
     public void eliminar(Long id) {
-        prestamoRepository.deleteById(id);
+        // Sin caché: el estado decide si se libera un lugar del máximo por usuario
+        prestamoRepository.buscarSinCache(id).ifPresent(prestamo -> {
+            prestamoRepository.delete(prestamo);
+            if (prestamo.getEstado() != EstadoPrestamo.DEVUELTO) {
+                limitePrestamos.liberar(prestamo.getUsuarioId());
+            }
+            estadisticas.registrarEliminacion(prestamo);
+        });
     }
 }
\ No newline at end of file
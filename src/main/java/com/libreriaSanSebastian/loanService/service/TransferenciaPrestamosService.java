@@ -0,0 +1,271 @@
+package com.libreriaSanSebastian.loanService.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+// Exportación e importación masiva de préstamos en CSV o NDJSON. Ambas trabajan en memoria constante: la exportación
+// escribe cada fila a medida que llega del cursor JDBC y la importación lee la entrada fila por fila e inserta por lotes.
+// La importación carga datos ya existentes en otro sistema: no valida usuarios ni libros contra los servicios remotos,
+// no aplica el máximo por usuario ni genera eventos de stock
+@Service
+public class TransferenciaPrestamosService {
+
+    public enum Formato {
+        CSV, NDJSON
+    }
+
+    private static final String ENCABEZADO_CSV = "id,usuarioId,libroId,fechaPrestamo,fechaDevolucion,estado";
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    @Autowired
+    private PrestamoRepository prestamoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LimitePrestamosService limitePrestamos;
+
+    @Autowired
+    private EstadisticasPrestamosService estadisticas;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Integer.MIN_VALUE: lectura fila por fila en MySQL Connector/J. Otras bases (H2) necesitan un valor positivo
+    @Value("${prestamos.exportacion.tamano-fetch:-2147483648}")
+    private int tamanoFetch;
+
+    // Filas por lote JDBC y por transacción al importar
+    @Value("${prestamos.importacion.tamano-lote:1000}")
+    private int tamanoLote;
+
+    // Devuelve la cantidad de préstamos escritos. No cierra la salida. Con historial, después de la tabla principal
+    // exporta los préstamos archivados
+    @Transactional(readOnly = true)
+    public long exportar(Formato formato, boolean historial, OutputStream salida) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+        ObjectWriter json = objectMapper.writerFor(Prestamo.class);
+        long[] filas = {0};
+        if (formato == Formato.CSV) {
+            escritor.write(ENCABEZADO_CSV);
+            escritor.write('\n');
+        }
+        Consumer<Prestamo> escribirFila = prestamo -> {
+            try {
+                escritor.write(formato == Formato.CSV ? csv(prestamo) : json.writeValueAsString(prestamo));
+                escritor.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            filas[0]++;
+        };
+        prestamoRepository.recorrerFilas(tamanoFetch, escribirFila);
+        if (historial) {
+            prestamoRepository.recorrerArchivados(tamanoFetch, escribirFila);
+        }
+        escritor.flush();
+        meterRegistry.counter("prestamos.exportados", "formato", formato.name().toLowerCase()).increment(filas[0]);
+        return filas[0];
+    }
+
+    // Inserta los préstamos de la entrada con IDs nuevos, en una transacción por lote. Si una fila no es válida se
+    // detiene ahí con IllegalArgumentException: los lotes anteriores ya quedaron guardados y el mensaje indica cuántos
+    public long importar(Formato formato, InputStream entrada) throws IOException {
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), TAMANO_BUFFER);
+        Iterator<Prestamo> filas = formato == Formato.CSV ? new FilasCsv(lector) : ndjson(lector);
+        List<Prestamo> bloque = new ArrayList<>(tamanoLote);
+        long importados = 0;
+        long fila = 0;
+        try {
+            while (filas.hasNext()) {
+                fila++;
+                bloque.add(validar(filas.next()));
+                if (bloque.size() == tamanoLote) {
+                    importados += insertar(bloque);
+                    bloque = new ArrayList<>(tamanoLote);
+                }
+            }
+            importados += insertar(bloque);
+        } catch (UncheckedIOException e) {
+            throw new IOException(fallaEnFila(fila, e.getCause().getMessage(), importados), e.getCause());
+        } catch (RuntimeException e) {
+            // Solo una fila mal formada es error del cliente; una falla de la base se propaga tal cual
+            if (!filaInvalida(e)) {
+                throw e;
+            }
+            throw new IllegalArgumentException(fallaEnFila(fila, e.getMessage(), importados), e);
+        } finally {
+            if (importados > 0) {
+                // Los préstamos sin devolver importados cuentan para el máximo por usuario
+                limitePrestamos.reconciliar();
+            }
+            meterRegistry.counter("prestamos.importados", "formato", formato.name().toLowerCase()).increment(importados);
+        }
+        return importados;
+    }
+
+    private static String fallaEnFila(long fila, String mensaje, long importados) {
+        return "Fila " + fila + ": " + mensaje + ". Se importaron " + importados + " préstamos antes del error";
+    }
+
+    // Valores faltantes o mal escritos en el CSV, y JSON que no se puede leer como Prestamo (MappingIterator envuelve
+    // las excepciones de Jackson en RuntimeException)
+    private static boolean filaInvalida(RuntimeException e) {
+        return e instanceof IllegalArgumentException
+                || e instanceof DateTimeParseException
+                || e instanceof RuntimeJsonMappingException
+                || e.getCause() instanceof JsonProcessingException;
+    }
+
+    private int insertar(List<Prestamo> bloque) {
+        if (bloque.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(estado -> prestamoRepository.insertarTodos(bloque));
+        // Los INSERT por JDBC no invalidan la caché de consultas; se vacía después del commit para que ninguna lectura
+        // concurrente vuelva a guardar el resultado anterior
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictQueryRegion("prestamos-por-usuario");
+        bloque.forEach(estadisticas::registrarCreacion);
+        return bloque.size();
+    }
+
+    private static Prestamo validar(Prestamo prestamo) {
+        if (prestamo.getUsuarioId() == null || prestamo.getLibroId() == null) {
+            throw new IllegalArgumentException("Usuario ID y Libro ID son requeridos");
+        }
+        if (prestamo.getFechaPrestamo() == null || prestamo.getEstado() == null) {
+            throw new IllegalArgumentException("Fecha de préstamo y estado son requeridos");
+        }
+        if ((prestamo.getEstado() == EstadoPrestamo.DEVUELTO) != (prestamo.getFechaDevolucion() != null)) {
+            throw new IllegalArgumentException("Solo los préstamos DEVUELTO tienen fecha de devolución");
+        }
+        // El ID de la entrada se descarta: cada préstamo recibe uno nuevo
+        prestamo.setId(null);
+        return prestamo;
+    }
+
+    private static String csv(Prestamo prestamo) {
+        return prestamo.getId() + "," + prestamo.getUsuarioId() + "," + prestamo.getLibroId() + "," +
+                prestamo.getFechaPrestamo() + "," +
+                (prestamo.getFechaDevolucion() == null ? "" : prestamo.getFechaDevolucion()) + "," +
+                prestamo.getEstado();
+    }
+
+    private Iterator<Prestamo> ndjson(BufferedReader lector) throws IOException {
+        ObjectReader json = objectMapper.readerFor(Prestamo.class);
+        return json.readValues(lector);
+    }
+
+    // Lee el CSV línea por línea. Las columnas se ubican por el encabezado, así que su orden puede variar; id es opcional
+    private static class FilasCsv implements Iterator<Prestamo> {
+
+        private final BufferedReader lector;
+        private final int columnas;
+        private final int usuarioId;
+        private final int libroId;
+        private final int fechaPrestamo;
+        private final int fechaDevolucion;
+        private final int estado;
+        private String siguiente;
+
+        FilasCsv(BufferedReader lector) throws IOException {
+            this.lector = lector;
+            String encabezado = lector.readLine();
+            if (encabezado == null) {
+                throw new IllegalArgumentException("El CSV no tiene encabezado");
+            }
+            List<String> nombres = Arrays.stream(encabezado.split(",", -1)).map(String::trim).toList();
+            this.columnas = nombres.size();
+            this.usuarioId = columna(nombres, "usuarioId");
+            this.libroId = columna(nombres, "libroId");
+            this.fechaPrestamo = columna(nombres, "fechaPrestamo");
+            this.fechaDevolucion = columna(nombres, "fechaDevolucion");
+            this.estado = columna(nombres, "estado");
+        }
+
+        private static int columna(List<String> nombres, String nombre) {
+            int indice = nombres.indexOf(nombre);
+            if (indice < 0) {
+                throw new IllegalArgumentException("Falta la columna " + nombre + " en el encabezado del CSV");
+            }
+            return indice;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (siguiente == null) {
+                    String linea = lector.readLine();
+                    if (linea == null) {
+                        return false;
+                    }
+                    if (!linea.isBlank()) {
+                        siguiente = linea;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Prestamo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String[] valores = siguiente.split(",", -1);
+            siguiente = null;
+            if (valores.length != columnas) {
+                throw new IllegalArgumentException("Se esperaban " + columnas + " columnas y hay " + valores.length);
+            }
+            Prestamo prestamo = new Prestamo();
+            prestamo.setUsuarioId(Long.valueOf(valores[usuarioId].trim()));
+            prestamo.setLibroId(Long.valueOf(valores[libroId].trim()));
+            prestamo.setFechaPrestamo(Instant.parse(valores[fechaPrestamo].trim()));
+            String devolucion = valores[fechaDevolucion].trim();
+            prestamo.setFechaDevolucion(devolucion.isEmpty() ? null : Instant.parse(devolucion));
+            prestamo.setEstado(EstadoPrestamo.valueOf(valores[estado].trim()));
+            return prestamo;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+-- Prestamo.id pasa de IDENTITY a la secuencia prestamos_seq (asignación de 50 IDs) para permitir inserciones
+-- en lote. MySQL no tiene secuencias y Hibernate la emula con esta tabla. Ejecutar antes de desplegar sobre
+-- una base con préstamos existentes: el optimizador "pooled" entrega los IDs (next_val - 49)..next_val,
+-- por lo que next_val debe quedar al menos 50 por sobre el máximo ID actual.
+CREATE TABLE IF NOT EXISTS prestamos_seq (next_val BIGINT);
+
+INSERT INTO prestamos_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 50 FROM prestamos
+WHERE NOT EXISTS (SELECT 1 FROM prestamos_seq);
+
+UPDATE prestamos_seq
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 50 FROM prestamos));
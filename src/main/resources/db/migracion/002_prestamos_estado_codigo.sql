@@ -0,0 +1,7 @@
+-- Prestamo.estado pasa de texto libre ('ACTIVO'/'DEVUELTO') al enum EstadoPrestamo, guardado como un código
+-- CHAR(1) ('A'/'D'). ddl-auto=update no cambia el tipo de una columna existente, por eso se migra a mano.
+-- Las fechas pasan de java.util.Date a java.time.Instant sobre las mismas columnas DATETIME(6), sin cambios.
+UPDATE prestamos SET estado = 'A' WHERE estado = 'ACTIVO';
+UPDATE prestamos SET estado = 'D' WHERE estado = 'DEVUELTO';
+
+ALTER TABLE prestamos MODIFY estado CHAR(1) NOT NULL;
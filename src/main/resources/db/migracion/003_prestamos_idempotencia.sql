@@ -0,0 +1,11 @@
+-- Claves Idempotency-Key de POST /api/v1/prestamos. Las filas más antiguas que prestamos.idempotencia.ttl
+-- las elimina IdempotenciaService periódicamente.
+CREATE TABLE IF NOT EXISTS prestamos_idempotencia (
+    clave VARCHAR(100) NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    libro_id BIGINT NOT NULL,
+    prestamo_id BIGINT NULL,
+    fecha_creacion DATETIME(6) NOT NULL,
+    PRIMARY KEY (clave),
+    INDEX idx_idempotencia_fecha (fecha_creacion)
+);
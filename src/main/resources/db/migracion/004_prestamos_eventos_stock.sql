@@ -0,0 +1,20 @@
+-- Outbox de ajustes de stock (EventoStock). Los eventos enviados se borran; los rechazados por el servicio
+-- de libros quedan con fallido = 1 para revisión manual.
+CREATE TABLE IF NOT EXISTS prestamos_eventos_stock (
+    id BIGINT NOT NULL,
+    libro_id BIGINT NOT NULL,
+    cantidad INT NOT NULL,
+    prestamo_id BIGINT NOT NULL,
+    fecha_creacion DATETIME(6) NOT NULL,
+    intentos INT NOT NULL,
+    proximo_intento DATETIME(6) NOT NULL,
+    fallido BIT NOT NULL,
+    ultimo_error VARCHAR(500) NULL,
+    PRIMARY KEY (id),
+    INDEX idx_eventos_stock_pendientes (fallido, proximo_intento)
+);
+
+CREATE TABLE IF NOT EXISTS eventos_stock_seq (next_val BIGINT);
+
+INSERT INTO eventos_stock_seq (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM eventos_stock_seq);
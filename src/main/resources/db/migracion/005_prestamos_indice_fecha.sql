@@ -0,0 +1,3 @@
+-- Índice para filtrar y ordenar por fechaPrestamo sin condición de estado (filtros de GET /api/v1/prestamos).
+-- InnoDB agrega la clave primaria a cada índice secundario, así el orden (fecha_prestamo, id) del cursor sale del índice.
+CREATE INDEX idx_prestamos_fecha ON prestamos (fecha_prestamo);
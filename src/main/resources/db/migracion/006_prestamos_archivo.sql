@@ -0,0 +1,17 @@
+-- Archivo de préstamos devueltos (PrestamoArchivado). ArchivoPrestamosService mueve aquí, con el mismo ID, los
+-- préstamos DEVUELTO con más de prestamos.archivo.edad, para que prestamos y sus índices secundarios queden en el buffer
+-- pool. Se usa una tabla aparte y no particiones por fecha_prestamo porque MySQL exige que la columna de partición forme
+-- parte de la clave primaria, y la de prestamos es solo id.
+CREATE TABLE IF NOT EXISTS prestamos_archivo (
+    id BIGINT NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    libro_id BIGINT NOT NULL,
+    fecha_prestamo DATETIME(6) NOT NULL,
+    fecha_devolucion DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_prestamos_archivo_usuario (usuario_id)
+);
+
+-- Tras la primera ejecución del archivo, prestamos conserva el espacio de las filas borradas. Reconstruirla una vez
+-- (en una ventana de poco tráfico) compacta la tabla y sus índices:
+-- OPTIMIZE TABLE prestamos;
@@ -0,0 +1,3 @@
+-- Grupo de envío de cada ajuste de stock (EventoStock.lote). DespachoStockService lo asigna al tomar los eventos y
+-- lo usa como clave de idempotencia ante el servicio de libros; los eventos ya existentes reciben uno en su próximo envío.
+ALTER TABLE prestamos_eventos_stock ADD COLUMN lote BIGINT NULL;
@@ -0,0 +1,5 @@
+-- Índices de Prestamo por usuario y por libro (@Index de la entidad). idx_prestamos_usuario_estado incluye libro_id
+-- para que la proyección PrestamoResumen (findByUsuarioIdAndEstado) se lea solo desde el índice;
+-- idx_prestamos_libro_estado atiende countByLibroIdAndEstado.
+CREATE INDEX idx_prestamos_usuario_estado ON prestamos (usuario_id, estado, libro_id);
+CREATE INDEX idx_prestamos_libro_estado ON prestamos (libro_id, estado);
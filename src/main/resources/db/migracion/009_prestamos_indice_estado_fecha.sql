@@ -0,0 +1,4 @@
+-- Índice de los barridos por estado y antigüedad (vencidos y archivo, @Index idx_prestamos_estado_fecha). InnoDB agrega
+-- la clave primaria al índice, así el cursor (fecha_prestamo, id) de findCursorByEstadoAndFechaPrestamoBefore lo
+-- recorre en orden y cada bloque lee solo sus filas.
+CREATE INDEX idx_prestamos_estado_fecha ON prestamos (estado, fecha_prestamo);
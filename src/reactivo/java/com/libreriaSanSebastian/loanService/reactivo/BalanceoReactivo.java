@@ -0,0 +1,53 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import com.libreriaSanSebastian.loanService.client.BalanceadorInstancias;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Equivalente reactivo de BalanceadorInstancias.ejecutar: elige la instancia al suscribirse, lleva la cuenta de llamadas
+ * en curso hasta que el Mono termina o se cancela y reintenta en otra instancia los errores de conexión y los 5xx.
+ * Solo para llamadas idempotentes.
+ */
+public class BalanceoReactivo {
+
+    private final BalanceadorInstancias balanceador;
+
+    public BalanceoReactivo(BalanceadorInstancias balanceador) {
+        this.balanceador = balanceador;
+    }
+
+    public <T> Mono<T> ejecutar(Function<String, Mono<T>> llamada) {
+        return Mono.defer(() -> intentar(llamada, new HashSet<>()));
+    }
+
+    private <T> Mono<T> intentar(Function<String, Mono<T>> llamada, Set<BalanceadorInstancias.Instancia> probadas) {
+        BalanceadorInstancias.Instancia instancia = balanceador.elegir(probadas);
+        instancia.iniciar();
+        return llamada.apply(instancia.getUrl())
+                .doOnSuccess(respuesta -> balanceador.registrarExito(instancia))
+                .doFinally(senal -> instancia.terminar())
+                .onErrorResume(e -> {
+                    if (!esFalloDeInstancia(e)) {
+                        return Mono.error(e);
+                    }
+                    balanceador.registrarFallo(instancia);
+                    probadas.add(instancia);
+                    if (probadas.size() >= balanceador.getIntentos()) {
+                        return Mono.error(e);
+                    }
+                    balanceador.registrarReintento();
+                    return Mono.defer(() -> intentar(llamada, probadas));
+                });
+    }
+
+    private static boolean esFalloDeInstancia(Throwable e) {
+        return e instanceof WebClientRequestException
+                || (e instanceof WebClientResponseException respuesta && respuesta.getStatusCode().is5xxServerError());
+    }
+}
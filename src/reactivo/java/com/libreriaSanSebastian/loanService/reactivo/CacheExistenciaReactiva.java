@@ -0,0 +1,59 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.libreriaSanSebastian.loanService.client.CacheExistencia;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Versión no bloqueante de CacheExistencia, con las mismas reglas: TTL positivo y negativo distintos,
+ * refresco anticipado que conserva el valor anterior ante errores, y sin guardar resultados vacíos (error transitorio).
+ * Las consultas concurrentes de un mismo ID comparten la misma llamada en curso.
+ */
+public class CacheExistenciaReactiva {
+
+    private final AsyncLoadingCache<Long, Boolean> cache;
+
+    public CacheExistenciaReactiva(String nombre, Function<Long, Mono<Boolean>> consulta, long maxEntradas,
+                                   Duration ttlPositivo, Duration ttlNegativo, Duration refrescoAnticipado,
+                                   MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntradas)
+                .expireAfter(CacheExistencia.expiracion(ttlPositivo, ttlNegativo))
+                .refreshAfterWrite(refrescoAnticipado)
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<Long, Boolean>() {
+                    @Override
+                    public CompletableFuture<? extends Boolean> asyncLoad(Long id, Executor executor) {
+                        return consulta.apply(id).toFuture();
+                    }
+
+                    @Override
+                    public CompletableFuture<? extends Boolean> asyncReload(Long id, Boolean anterior, Executor executor) {
+                        return consulta.apply(id)
+                                .defaultIfEmpty(anterior)
+                                .onErrorReturn(ServicioNoDisponibleException.class, anterior)
+                                .toFuture();
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), nombre);
+    }
+
+    // Vacío si no se pudo determinar
+    public Mono<Boolean> existe(Long id) {
+        return Mono.fromFuture(() -> cache.get(id));
+    }
+
+    public void invalidar(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+}
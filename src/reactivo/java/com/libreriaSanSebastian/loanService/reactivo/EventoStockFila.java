@@ -0,0 +1,38 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+// Fila de prestamos_eventos_stock escrita por la variante reactiva; la despacha DespachoStockService igual que EventoStock
+@Table("prestamos_eventos_stock")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoStockFila {
+    @Id
+    private Long id;
+
+    private Long libroId;
+
+    private int cantidad;
+
+    private Long prestamoId;
+
+    private Instant fechaCreacion;
+
+    private int intentos;
+
+    private Instant proximoIntento;
+
+    private boolean fallido;
+
+    private String ultimoError;
+
+    public static EventoStockFila de(Long id, PrestamoFila prestamo, int cantidad) {
+        Instant ahora = Instant.now();
+        return new EventoStockFila(id, prestamo.getLibroId(), cantidad, prestamo.getId(), ahora, 0, ahora, false, null);
+    }
+}
@@ -0,0 +1,34 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+
+// Fila de la tabla prestamos para R2DBC; el esquema lo define la entidad Prestamo
+@Table("prestamos")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrestamoFila {
+    @Id
+    private Long id;
+
+    private Long usuarioId;
+
+    private Long libroId;
+
+    private Instant fechaPrestamo;
+
+    private Instant fechaDevolucion;
+
+    // Código de un carácter, igual que EstadoPrestamoConverter
+    private String estado;
+
+    public Prestamo aPrestamo() {
+        return new Prestamo(id, usuarioId, libroId, fechaPrestamo, fechaDevolucion, EstadoPrestamo.desdeCodigo(estado.charAt(0)));
+    }
+}
@@ -0,0 +1,225 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import com.libreriaSanSebastian.loanService.dto.EstadisticasPrestamos;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.service.EstadisticasPrestamosService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+// Variante WebFlux de PrestamoController (perfil reactivo). Devuelve la representación simple, sin _links;
+// los lotes, la devolución masiva y la Idempotency-Key siguen disponibles solo en la variante MVC
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/v1/prestamos")
+@Tag(name = "Préstamos", description = "Operaciones relacionadas con la gestión de préstamos de libros")
+public class PrestamoReactivoController {
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int TAMANO_PAGINA_DEFECTO = 50;
+    private static final int TAMANO_PAGINA_MAXIMO = 500;
+    private static final int DIAS_ESTADISTICAS_MAXIMO = 366;
+    private static final int TOP_ESTADISTICAS_MAXIMO = 100;
+
+    @Autowired
+    private PrestamoReactivoService prestamoService;
+
+    @Autowired
+    private EstadisticasPrestamosService estadisticasPrestamosService;
+
+    @Operation(
+        summary = "Listar todos los préstamos",
+        description = "Retorna una página de préstamos ordenados por ID. La página siguiente se indica en el header Link"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Página de préstamos obtenida exitosamente",
+        content = @Content(mediaType = "application/json", schema = @Schema(implementation = Prestamo.class))
+    )
+    @GetMapping(produces = "application/json")
+    public Mono<ResponseEntity<List<Prestamo>>> listarTodos(
+            @Parameter(description = "ID del último préstamo recibido; se omite para la primera página", example = "100")
+            @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Cantidad máxima de préstamos por página", example = "50")
+            @RequestParam(required = false) Integer size) {
+        int tamano = size == null ? TAMANO_PAGINA_DEFECTO : Math.max(1, Math.min(size, TAMANO_PAGINA_MAXIMO));
+        return prestamoService.listarPagina(cursor, tamano)
+                .collectList()
+                .map(pagina -> {
+                    ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+                    // Si la página vino completa puede haber más registros después del último ID
+                    if (pagina.size() == tamano) {
+                        String siguiente = UriComponentsBuilder.fromPath("/api/v1/prestamos")
+                                .queryParam("cursor", pagina.get(pagina.size() - 1).getId())
+                                .queryParam("size", tamano)
+                                .toUriString();
+                        respuesta.header(HttpHeaders.LINK, "<" + siguiente + ">;rel=\"next\"");
+                    }
+                    return respuesta.body(pagina);
+                });
+    }
+
+    @Operation(
+        summary = "Transmitir todos los préstamos",
+        description = "Envía todos los préstamos como NDJSON (un objeto JSON por línea) a medida que se leen de la base de datos"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Transmisión de préstamos iniciada",
+        content = @Content(mediaType = NDJSON_VALUE, schema = @Schema(implementation = Prestamo.class))
+    )
+    @GetMapping(produces = NDJSON_VALUE)
+    public Flux<Prestamo> transmitirTodos() {
+        return prestamoService.listarTodos();
+    }
+
+    @Operation(
+        summary = "Obtener préstamo por ID",
+        description = "Busca y retorna un préstamo específico por su identificador único"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Préstamo encontrado exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Prestamo.class))
+        ),
+        @ApiResponse(
+            responseCode = "404",
+            description = "Préstamo no encontrado",
+            content = @Content
+        )
+    })
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Prestamo>> obtenerPorId(
+            @Parameter(description = "ID único del préstamo", required = true, example = "1")
+            @PathVariable Long id) {
+        return prestamoService.buscarPorId(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @Operation(
+        summary = "Obtener préstamos por usuario",
+        description = "Busca y retorna todos los préstamos asociados a un usuario específico"
+    )
+    @ApiResponse(
+        responseCode = "200",
+        description = "Lista de préstamos del usuario obtenida exitosamente",
+        content = @Content(mediaType = "application/json", schema = @Schema(implementation = Prestamo.class))
+    )
+    @GetMapping("/usuario/{usuarioId}")
+    public Flux<Prestamo> obtenerPorUsuario(
+            @Parameter(description = "ID único del usuario", required = true, example = "1")
+            @PathVariable Long usuarioId) {
+        return prestamoService.buscarPorUsuario(usuarioId);
+    }
+
+    @Operation(
+        summary = "Estadísticas de préstamos",
+        description = "Retorna totales, préstamos prestados y devueltos por día, libros con más préstamos sin devolver, " +
+                "usuarios con más préstamos y duración de los préstamos devueltos, desde agregados en memoria"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Estadísticas obtenidas exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = EstadisticasPrestamos.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Parámetros fuera de rango",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<?> obtenerEstadisticas(
+            @Parameter(description = "Días hacia atrás, hoy incluido, en el detalle por día", example = "30")
+            @RequestParam(defaultValue = "30") int dias,
+            @Parameter(description = "Cantidad de libros y usuarios en los rankings", example = "10")
+            @RequestParam(defaultValue = "10") int top) {
+        // Solo lee contadores en memoria: no bloquea el event loop
+        if (dias < 1 || dias > DIAS_ESTADISTICAS_MAXIMO) {
+            return ResponseEntity.badRequest().body(Map.of("error", "dias debe estar entre 1 y " + DIAS_ESTADISTICAS_MAXIMO));
+        }
+        if (top < 1 || top > TOP_ESTADISTICAS_MAXIMO) {
+            return ResponseEntity.badRequest().body(Map.of("error", "top debe estar entre 1 y " + TOP_ESTADISTICAS_MAXIMO));
+        }
+        return ResponseEntity.ok(estadisticasPrestamosService.consultar(dias, top));
+    }
+
+    @Operation(
+        summary = "Crear nuevo préstamo",
+        description = "Crea un nuevo préstamo verificando que el usuario exista y el libro esté disponible"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "201",
+            description = "Préstamo creado exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Prestamo.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Datos de entrada inválidos o libro no disponible",
+            content = @Content(mediaType = "application/json")
+        ),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Servicio de usuarios o de libros no disponible temporalmente",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @PostMapping
+    public Mono<ResponseEntity<?>> crearPrestamo(
+            @Parameter(description = "Datos del préstamo a crear", required = true)
+            @RequestBody Prestamo prestamo) {
+        return prestamoService.crearPrestamo(prestamo)
+                .<ResponseEntity<?>>map(nuevo -> ResponseEntity.status(HttpStatus.CREATED).body(nuevo))
+                .onErrorResume(ServicioNoDisponibleException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(Map.of("error", e.getMessage()))))
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.badRequest()
+                        .body(Map.of("error", e.getMessage()))));
+    }
+
+    @Operation(
+        summary = "Devolver libro",
+        description = "Marca un préstamo como devuelto y registra la fecha de devolución"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Libro devuelto exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = Prestamo.class))
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "El libro ya fue devuelto o préstamo no válido",
+            content = @Content(mediaType = "application/json")
+        )
+    })
+    @PatchMapping("/devolver/{id}")
+    public Mono<ResponseEntity<?>> devolverLibro(
+            @Parameter(description = "ID único del préstamo", required = true, example = "1")
+            @PathVariable Long id) {
+        return prestamoService.devolverLibro(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(RuntimeException.class, e -> Mono.just(ResponseEntity.badRequest()
+                        .body(Map.of("error", e.getMessage()))));
+    }
+}
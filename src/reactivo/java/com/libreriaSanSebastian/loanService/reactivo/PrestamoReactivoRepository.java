@@ -0,0 +1,25 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public interface PrestamoReactivoRepository extends R2dbcRepository<PrestamoFila, Long> {
+
+    Flux<PrestamoFila> findByUsuarioId(Long usuarioId);
+
+    // Paginación por cursor, igual que PrestamoRepository.findByIdGreaterThanOrderByIdAsc
+    @Query("SELECT * FROM prestamos WHERE id > :despuesDeId ORDER BY id LIMIT :tamano")
+    Flux<PrestamoFila> findPagina(Long despuesDeId, int tamano);
+
+    Flux<PrestamoFila> findAllByOrderByIdAsc();
+
+    // Solo cambia la fila si seguía sin devolver, para que dos devoluciones simultáneas no repongan stock dos veces
+    @Modifying
+    @Query("UPDATE prestamos SET estado = 'D', fecha_devolucion = :fecha WHERE id = :id AND estado <> 'D'")
+    Mono<Integer> devolver(Long id, Instant fecha);
+}
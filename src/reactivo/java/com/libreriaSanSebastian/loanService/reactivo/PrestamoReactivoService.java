@@ -0,0 +1,206 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.service.EstadisticasPrestamosService;
+import com.libreriaSanSebastian.loanService.service.LimitePrestamosService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeoutException;
+
+// Creación y devolución de préstamos sin bloquear hilos: las verificaciones remotas van por WebClient y la
+// persistencia por R2DBC. Escribe en las mismas tablas que PrestamoService, incluido el outbox de stock
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class PrestamoReactivoService {
+
+    @Autowired
+    private PrestamoReactivoRepository prestamoRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate entityTemplate;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private TransactionalOperator transaccion;
+
+    @Autowired
+    private LimitePrestamosService limitePrestamos;
+
+    @Autowired
+    private EstadisticasPrestamosService estadisticas;
+
+    @Autowired
+    private UsuarioReactivoClient usuarioClient;
+
+    @Autowired
+    private LibroReactivoClient libroClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Mismos límites que la variante MVC
+    @Value("${prestamos.remoto.timeout-llamada-ms:2000}")
+    private long timeoutLlamadaMs;
+
+    @Value("${prestamos.remoto.timeout-total-ms:3000}")
+    private long timeoutTotalMs;
+
+    private SecuenciaReactiva secuenciaPrestamos;
+
+    private SecuenciaReactiva secuenciaEventos;
+
+    @PostConstruct
+    public void inicializar() {
+        secuenciaPrestamos = new SecuenciaReactiva(databaseClient, transaccion, "prestamos_seq", 50);
+        secuenciaEventos = new SecuenciaReactiva(databaseClient, transaccion, "eventos_stock_seq", 50);
+    }
+
+    public Flux<Prestamo> listarPagina(Long despuesDeId, int tamano) {
+        return prestamoRepository.findPagina(despuesDeId == null ? 0L : despuesDeId, tamano).map(PrestamoFila::aPrestamo);
+    }
+
+    // Las filas se leen a medida que el cliente las consume
+    public Flux<Prestamo> listarTodos() {
+        return prestamoRepository.findAllByOrderByIdAsc().map(PrestamoFila::aPrestamo);
+    }
+
+    public Mono<Prestamo> buscarPorId(Long id) {
+        return prestamoRepository.findById(id).map(PrestamoFila::aPrestamo);
+    }
+
+    public Flux<Prestamo> buscarPorUsuario(Long usuarioId) {
+        return prestamoRepository.findByUsuarioId(usuarioId).map(PrestamoFila::aPrestamo);
+    }
+
+    public Mono<Prestamo> crearPrestamo(Prestamo prestamo) {
+        Long usuarioId = prestamo.getUsuarioId();
+        Long libroId = prestamo.getLibroId();
+        if (usuarioId == null || libroId == null) {
+            return Mono.error(() -> rechazar("datos-invalidos", "Usuario ID y Libro ID son requeridos"));
+        }
+        // El lugar del usuario se reserva al suscribirse, antes de las llamadas remotas, y se libera si la creación
+        // falla. Si el cliente cancela, la reserva queda hasta la próxima reconciliación con la base
+        return Mono.defer(() -> {
+            if (!limitePrestamos.reservar(usuarioId)) {
+                return Mono.error(rechazar("limite-prestamos", "El usuario con ID: " + usuarioId + " alcanzó el máximo de "
+                        + limitePrestamos.getMaximoPorUsuario() + " préstamos sin devolver"));
+            }
+            return verificarYGuardar(usuarioId, libroId)
+                    .doOnError(e -> limitePrestamos.liberar(usuarioId));
+        });
+    }
+
+    private Mono<Prestamo> verificarYGuardar(Long usuarioId, Long libroId) {
+        // Ambas verificaciones corren a la vez; si una falla, zip cancela la otra
+        Mono<Boolean> usuario = verificar(usuarioClient.existe(usuarioId), "el usuario con ID: " + usuarioId);
+        Mono<Boolean> libro = verificar(libroClient.estaDisponible(libroId), "el libro con ID: " + libroId);
+        return Mono.zip(usuario, libro)
+                .timeout(Duration.ofMillis(timeoutTotalMs), Mono.error(() -> new RuntimeException(
+                        "Tiempo de espera agotado al verificar el usuario y el libro", new TimeoutException())))
+                .doOnError(e -> contarRechazo(motivoDeError(e)))
+                .flatMap(verificaciones -> {
+                    if (!verificaciones.getT1()) {
+                        return Mono.error(rechazar("usuario-no-encontrado", "Usuario no encontrado con ID: " + usuarioId));
+                    }
+                    if (!verificaciones.getT2()) {
+                        return Mono.error(rechazar("libro-no-disponible", "Libro no disponible o no encontrado con ID: " + libroId));
+                    }
+                    return guardar(usuarioId, libroId);
+                })
+                .doOnNext(guardado -> {
+                    estadisticas.registrarCreacion(guardado);
+                    meterRegistry.counter("prestamos.creados").increment();
+                });
+    }
+
+    // Los IDs se reservan fuera de la transacción del préstamo para no retener el bloqueo de la secuencia
+    private Mono<Prestamo> guardar(Long usuarioId, Long libroId) {
+        return Mono.zip(secuenciaPrestamos.siguiente(), secuenciaEventos.siguiente())
+                .flatMap(ids -> {
+                    PrestamoFila fila = new PrestamoFila(ids.getT1(), usuarioId, libroId,
+                            Instant.now().truncatedTo(ChronoUnit.MICROS), null,
+                            String.valueOf(EstadoPrestamo.ACTIVO.getCodigo()));
+                    return transaccion.transactional(entityTemplate.insert(fila)
+                            .flatMap(nuevo -> entityTemplate.insert(EventoStockFila.de(ids.getT2(), nuevo, -1))
+                                    .thenReturn(nuevo)));
+                })
+                .map(PrestamoFila::aPrestamo);
+    }
+
+    public Mono<Prestamo> devolverLibro(Long id) {
+        Instant ahora = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        return prestamoRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Préstamo no encontrado")))
+                .flatMap(fila -> {
+                    if (EstadoPrestamo.desdeCodigo(fila.getEstado().charAt(0)) == EstadoPrestamo.DEVUELTO) {
+                        return Mono.error(new RuntimeException("El libro ya fue devuelto"));
+                    }
+                    // La reposición de stock viaja por el mismo outbox que los descuentos
+                    return secuenciaEventos.siguiente().flatMap(idEvento -> transaccion.transactional(
+                            prestamoRepository.devolver(id, ahora).flatMap(actualizadas -> {
+                                if (actualizadas == 0) {
+                                    return Mono.error(new RuntimeException("El libro ya fue devuelto"));
+                                }
+                                fila.setEstado(String.valueOf(EstadoPrestamo.DEVUELTO.getCodigo()));
+                                fila.setFechaDevolucion(ahora);
+                                return entityTemplate.insert(EventoStockFila.de(idEvento, fila, 1)).thenReturn(fila);
+                            })));
+                })
+                .map(PrestamoFila::aPrestamo)
+                .doOnNext(devuelto -> {
+                    limitePrestamos.liberar(devuelto.getUsuarioId());
+                    estadisticas.registrarDevolucion(devuelto.getLibroId(), devuelto.getFechaPrestamo(), devuelto.getFechaDevolucion());
+                    meterRegistry.counter("prestamos.devueltos").increment();
+                });
+    }
+
+    private Mono<Boolean> verificar(Mono<Boolean> verificacion, String descripcion) {
+        return verificacion
+                .timeout(Duration.ofMillis(timeoutLlamadaMs))
+                .onErrorMap(e -> {
+                    if (e instanceof TimeoutException) {
+                        return new RuntimeException("Tiempo de espera agotado al verificar " + descripcion, e);
+                    }
+                    if (e instanceof ServicioNoDisponibleException) {
+                        return e;
+                    }
+                    return new RuntimeException("Error al verificar " + descripcion, e);
+                });
+    }
+
+    private RuntimeException rechazar(String motivo, String mensaje) {
+        contarRechazo(motivo);
+        return new RuntimeException(mensaje);
+    }
+
+    private void contarRechazo(String motivo) {
+        meterRegistry.counter("prestamos.rechazados", "motivo", motivo).increment();
+    }
+
+    private static String motivoDeError(Throwable e) {
+        if (e instanceof ServicioNoDisponibleException) {
+            return "servicio-no-disponible";
+        }
+        if (e.getCause() instanceof TimeoutException) {
+            return "timeout";
+        }
+        return "error";
+    }
+}
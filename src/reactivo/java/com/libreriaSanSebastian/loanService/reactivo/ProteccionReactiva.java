@@ -0,0 +1,76 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Equivalente reactivo de ProteccionRemota: mismo circuit breaker, bulkhead y timer prestamos.remoto.llamadas
+ * (servicio, operacion, resultado), aplicados como operadores sobre el Mono de la llamada.
+ */
+public class ProteccionReactiva {
+
+    private final String nombre;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    public ProteccionReactiva(String nombre, CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                              MeterRegistry meterRegistry) {
+        this.nombre = nombre;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(nombre);
+        this.bulkhead = bulkheadRegistry.bulkhead(nombre);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> Mono<T> ejecutar(String operacion, Mono<T> llamada) {
+        return Mono.defer(() -> {
+            Timer.Sample muestra = Timer.start(meterRegistry);
+            return llamada
+                    .transformDeferred(BulkheadOperator.of(bulkhead))
+                    .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                    .doOnSuccess(respuesta -> registrar(muestra, operacion, "ok"))
+                    .doOnError(e -> registrar(muestra, operacion, resultado(e)))
+                    .onErrorMap(CallNotPermittedException.class,
+                            e -> new ServicioNoDisponibleException("Servicio de " + nombre + " no disponible temporalmente", e))
+                    .onErrorMap(BulkheadFullException.class,
+                            e -> new ServicioNoDisponibleException("Servicio de " + nombre + " saturado, intente nuevamente", e));
+        });
+    }
+
+    public void registrarError(String operacion, Throwable e) {
+        meterRegistry.counter("prestamos.remoto.errores",
+                "servicio", nombre,
+                "operacion", operacion,
+                "excepcion", e.getClass().getSimpleName()).increment();
+    }
+
+    private static String resultado(Throwable e) {
+        if (e instanceof CallNotPermittedException || e instanceof BulkheadFullException) {
+            return "rechazado";
+        }
+        if (e instanceof WebClientResponseException.NotFound) {
+            return "no-encontrado";
+        }
+        return "error";
+    }
+
+    private void registrar(Timer.Sample muestra, String operacion, String resultado) {
+        muestra.stop(Timer.builder("prestamos.remoto.llamadas")
+                .description("Latencia de las llamadas a los servicios remotos")
+                .tag("servicio", nombre)
+                .tag("operacion", operacion)
+                .tag("resultado", resultado)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,75 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import io.netty.channel.ChannelOption;
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+// WebClient hacia los servicios de usuarios y libros, con los mismos límites de prestamos.http.* que el RestTemplate,
+// y los dos gestores de transacciones: JPA (despacho del outbox, barridos) y R2DBC (préstamos reactivos)
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivoConfig {
+
+    @Value("${prestamos.http.max-conexiones:200}")
+    private int maxConexiones;
+
+    @Value("${prestamos.http.timeout-conexion-ms:1000}")
+    private int timeoutConexionMs;
+
+    @Value("${prestamos.http.timeout-lectura-ms:2000}")
+    private long timeoutLecturaMs;
+
+    @Value("${prestamos.http.timeout-pool-ms:500}")
+    private long timeoutPoolMs;
+
+    @Value("${prestamos.http.inactividad-maxima-s:30}")
+    private long inactividadMaximaS;
+
+    @Bean
+    public WebClient webClient(WebClient.Builder builder) {
+        ConnectionProvider conexiones = ConnectionProvider.builder("prestamos-http")
+                .maxConnections(maxConexiones)
+                .pendingAcquireTimeout(Duration.ofMillis(timeoutPoolMs))
+                .maxIdleTime(Duration.ofSeconds(inactividadMaximaS))
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(conexiones)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeoutConexionMs)
+                .responseTimeout(Duration.ofMillis(timeoutLecturaMs));
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    // Con R2DBC presente Boot no crea el de JPA (ambos son TransactionManager); el de JPA queda como principal
+    // para @Transactional y TransactionTemplate, y el reactivo solo se usa a través de TransactionalOperator
+    @Bean
+    @Primary
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    @Bean
+    public ReactiveTransactionManager reactiveTransactionManager(ConnectionFactory connectionFactory) {
+        return new R2dbcTransactionManager(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator transactionalOperator(ReactiveTransactionManager reactiveTransactionManager) {
+        return TransactionalOperator.create(reactiveTransactionManager);
+    }
+}
@@ -0,0 +1,67 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Reparte IDs de las mismas secuencias que usa Hibernate (prestamos_seq, eventos_stock_seq) con su protocolo
+// "pooled": cada valor v leído reserva el bloque v - incremento + 1 .. v, así ambas variantes pueden escribir
+// en las mismas tablas sin chocar. En MySQL la secuencia es una tabla (next_val); en H2 es una secuencia nativa
+public class SecuenciaReactiva {
+
+    private final DatabaseClient databaseClient;
+
+    private final TransactionalOperator transaccion;
+
+    private final String nombre;
+
+    private final int incremento;
+
+    private final boolean secuenciaNativa;
+
+    private final AtomicReference<Bloque> bloque = new AtomicReference<>(new Bloque(new AtomicLong(1), 0));
+
+    private record Bloque(AtomicLong siguiente, long ultimo) {
+    }
+
+    public SecuenciaReactiva(DatabaseClient databaseClient, TransactionalOperator transaccion, String nombre, int incremento) {
+        this.databaseClient = databaseClient;
+        this.transaccion = transaccion;
+        this.nombre = nombre;
+        this.incremento = incremento;
+        this.secuenciaNativa = "H2".equalsIgnoreCase(databaseClient.getConnectionFactory().getMetadata().getName());
+    }
+
+    public Mono<Long> siguiente() {
+        return Mono.defer(() -> {
+            Bloque actual = bloque.get();
+            long id = actual.siguiente().getAndIncrement();
+            if (id <= actual.ultimo()) {
+                return Mono.just(id);
+            }
+            // Si otra suscripción reemplazó el bloque antes, el reservado aquí se descarta (solo deja un hueco de IDs)
+            return reservar().flatMap(nuevo -> {
+                bloque.compareAndSet(actual, nuevo);
+                return siguiente();
+            });
+        });
+    }
+
+    private Mono<Bloque> reservar() {
+        Mono<Long> valor = secuenciaNativa
+                ? databaseClient.sql("SELECT NEXT VALUE FOR " + nombre)
+                        .map(fila -> fila.get(0, Long.class))
+                        .one()
+                : transaccion.transactional(databaseClient.sql("SELECT next_val FROM " + nombre + " FOR UPDATE")
+                        .map(fila -> fila.get(0, Long.class))
+                        .one()
+                        .flatMap(actual -> databaseClient.sql("UPDATE " + nombre + " SET next_val = :siguiente")
+                                .bind("siguiente", actual + incremento)
+                                .then()
+                                .thenReturn(actual)));
+        return valor.map(ultimo -> new Bloque(new AtomicLong(Math.max(1, ultimo - incremento + 1)), ultimo));
+    }
+}
@@ -0,0 +1,89 @@
+package com.libreriaSanSebastian.loanService.reactivo;
+
+import com.libreriaSanSebastian.loanService.client.BalanceadorInstancias;
+import com.libreriaSanSebastian.loanService.client.ConfiguracionBalanceo;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class UsuarioReactivoClient {
+
+    @Value("${servicios.usuarios.instancias:${servicios.usuarios.url:http://localhost:8081}}")
+    private List<String> instancias;
+
+    @Autowired
+    private ConfiguracionBalanceo configuracionBalanceo;
+
+    @Autowired
+    private WebClient webClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Value("${prestamos.cache.usuarios.max-entradas:10000}")
+    private long maxEntradas;
+
+    @Value("${prestamos.cache.usuarios.ttl-positivo:10m}")
+    private Duration ttlPositivo;
+
+    @Value("${prestamos.cache.usuarios.ttl-negativo:30s}")
+    private Duration ttlNegativo;
+
+    @Value("${prestamos.cache.usuarios.refresco-anticipado:5m}")
+    private Duration refrescoAnticipado;
+
+    private CacheExistenciaReactiva usuarios;
+
+    private ProteccionReactiva proteccion;
+
+    private BalanceoReactivo balanceo;
+
+    @PostConstruct
+    public void inicializar() {
+        proteccion = new ProteccionReactiva("usuarios", circuitBreakerRegistry, bulkheadRegistry, meterRegistry);
+        balanceo = new BalanceoReactivo(new BalanceadorInstancias("usuarios", instancias, configuracionBalanceo, meterRegistry));
+        usuarios = new CacheExistenciaReactiva("usuarios", this::consultarExistencia, maxEntradas,
+                ttlPositivo, ttlNegativo, refrescoAnticipado, meterRegistry);
+    }
+
+    public Mono<Boolean> existe(Long usuarioId) {
+        // Igual que en la variante MVC, si no se pudo determinar se considera inexistente
+        return usuarios.existe(usuarioId).defaultIfEmpty(false);
+    }
+
+    // true/false si el servicio respondió, vacío si no se pudo determinar (no se guarda en caché)
+    private Mono<Boolean> consultarExistencia(Long usuarioId) {
+        Mono<Boolean> consulta = balanceo.ejecutar(url -> webClient.get()
+                .uri(url + "/api/v1/usuarios/{id}", usuarioId)
+                .retrieve()
+                .toBodilessEntity()
+                .map(response -> response.getStatusCode() == HttpStatus.OK));
+        return proteccion.ejecutar("consultar", consulta)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(false))
+                .onErrorResume(WebClientException.class, e -> {
+                    proteccion.registrarError("consultar", e);
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,158 @@
+package com.libreriaSanSebastian.loanService.LoadTest;
+
+import com.libreriaSanSebastian.loanService.LoanServiceApplication;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Levanta la aplicación completa en modo MVC (Tomcat, 200 hilos) y en modo reactivo (perfil "reactivo", Netty) sobre la
+// base H2 del perfil "benchmark", con los servicios de usuarios y libros simulados a 200 ms por llamada, y compara
+// cuántos POST /api/v1/prestamos concurrentes atiende cada una. Ejecutar con: ./mvnw -Preactivo,load test
+@Tag("load")
+class PrestamoReactivoLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PrestamoReactivoLoadTest.class);
+
+    private static final int SOLICITUDES = 4000;
+    private static final int CALENTAMIENTO = 500;
+    private static final long LATENCIA_SERVIDOR_MS = 200;
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private String urlServicios;
+    private ExecutorService hilosCliente;
+    private HttpClient cliente;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        byte[] cuerpo = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        // El servidor simulado no debe ser el cuello de botella: un hilo por conexión
+        hilosServidor = Executors.newCachedThreadPool();
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 8192);
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext("/api/v1/", exchange -> {
+            try {
+                Thread.sleep(LATENCIA_SERVIDOR_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = exchange.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        });
+        servidor.start();
+        urlServicios = "http://127.0.0.1:" + servidor.getAddress().getPort();
+        hilosCliente = Executors.newFixedThreadPool(8);
+        cliente = HttpClient.newBuilder()
+                .executor(hilosCliente)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidor.stop(0);
+        hilosServidor.shutdownNow();
+        hilosCliente.shutdownNow();
+    }
+
+    @Test
+    void testCreacionesConcurrentesMvcVsReactivo() throws Exception {
+        double rpsMvc;
+        try (ConfigurableApplicationContext contexto = iniciar("benchmark")) {
+            rpsMvc = medirVariante(contexto);
+        }
+        double rpsReactivo;
+        int hilosEventLoop;
+        try (ConfigurableApplicationContext contexto = iniciar("benchmark,reactivo")) {
+            rpsReactivo = medirVariante(contexto);
+            hilosEventLoop = (int) Thread.getAllStackTraces().keySet().stream()
+                    .filter(hilo -> hilo.getName().startsWith("reactor-http-nio"))
+                    .count();
+        }
+
+        log.info("MVC (200 hilos de Tomcat): %.0f préstamos/s".formatted(rpsMvc));
+        log.info("WebFlux (%d hilos de event loop): %.0f préstamos/s (%.2fx)".formatted(
+                hilosEventLoop, rpsReactivo, rpsReactivo / rpsMvc));
+
+        // Unos pocos hilos de event loop sostienen miles de creaciones en curso
+        assertTrue(hilosEventLoop <= Runtime.getRuntime().availableProcessors() * 2 + 2);
+        assertTrue(rpsReactivo > rpsMvc);
+    }
+
+    private double medirVariante(ConfigurableApplicationContext contexto) throws Exception {
+        int puerto = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+        String url = "http://127.0.0.1:" + puerto + "/api/v1/prestamos";
+        // IDs distintos en cada ronda para que la caché de existencia no evite las llamadas remotas
+        medir(url, 1_000_000, CALENTAMIENTO);
+        return medir(url, 0, SOLICITUDES);
+    }
+
+    private double medir(String url, long primerId, int solicitudes) throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> respuestas = new ArrayList<>(solicitudes);
+        long inicio = System.nanoTime();
+        for (int i = 1; i <= solicitudes; i++) {
+            long id = primerId + i;
+            HttpRequest solicitud = HttpRequest.newBuilder(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMinutes(2))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"usuarioId\":" + id + ",\"libroId\":" + id + "}"))
+                    .build();
+            respuestas.add(cliente.sendAsync(solicitud, HttpResponse.BodyHandlers.ofString()));
+        }
+        CompletableFuture.allOf(respuestas.toArray(new CompletableFuture[0])).get(5, TimeUnit.MINUTES);
+        long duracion = System.nanoTime() - inicio;
+        for (CompletableFuture<HttpResponse<String>> respuesta : respuestas) {
+            assertEquals(201, respuesta.get().statusCode(), respuesta.get().body());
+        }
+        return solicitudes / (duracion / 1_000_000_000.0);
+    }
+
+    // Los límites de concurrencia se amplían para que la diferencia la marque el modelo de hilos
+    private ConfigurableApplicationContext iniciar(String perfiles) {
+        return new SpringApplicationBuilder(LoanServiceApplication.class).run(
+                "--spring.profiles.active=" + perfiles,
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--spring.devtools.restart.enabled=false",
+                "--servicios.usuarios.url=" + urlServicios,
+                "--servicios.libros.url=" + urlServicios,
+                "--prestamos.remoto.hilos=400",
+                "--prestamos.remoto.capacidad-cola=" + SOLICITUDES,
+                "--prestamos.remoto.timeout-llamada-ms=60000",
+                "--prestamos.remoto.timeout-total-ms=60000",
+                "--prestamos.http.max-conexiones=" + SOLICITUDES,
+                "--prestamos.http.max-conexiones-por-ruta=" + SOLICITUDES,
+                "--prestamos.http.timeout-lectura-ms=60000",
+                "--prestamos.http.timeout-pool-ms=60000",
+                "--resilience4j.bulkhead.instances.usuarios.max-concurrent-calls=" + SOLICITUDES,
+                "--resilience4j.bulkhead.instances.libros.max-concurrent-calls=" + SOLICITUDES,
+                "--resilience4j.circuitbreaker.configs.default.slow-call-rate-threshold=100");
+    }
+}
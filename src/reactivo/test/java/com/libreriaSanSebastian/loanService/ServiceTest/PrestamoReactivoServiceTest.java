@@ -0,0 +1,269 @@
+package com.libreriaSanSebastian.loanService.ServiceTest;
+
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.reactivo.EventoStockFila;
+import com.libreriaSanSebastian.loanService.reactivo.LibroReactivoClient;
+import com.libreriaSanSebastian.loanService.reactivo.PrestamoFila;
+import com.libreriaSanSebastian.loanService.reactivo.PrestamoReactivoRepository;
+import com.libreriaSanSebastian.loanService.reactivo.PrestamoReactivoService;
+import com.libreriaSanSebastian.loanService.reactivo.SecuenciaReactiva;
+import com.libreriaSanSebastian.loanService.reactivo.UsuarioReactivoClient;
+import com.libreriaSanSebastian.loanService.service.EstadisticasPrestamosService;
+import com.libreriaSanSebastian.loanService.service.LimitePrestamosService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PrestamoReactivoServiceTest {
+
+    @Mock
+    private PrestamoReactivoRepository prestamoRepository;
+
+    @Mock
+    private R2dbcEntityTemplate entityTemplate;
+
+    @Mock
+    private TransactionalOperator transaccion;
+
+    @Mock
+    private LimitePrestamosService limitePrestamos;
+
+    @Mock
+    private EstadisticasPrestamosService estadisticas;
+
+    @Mock
+    private UsuarioReactivoClient usuarioClient;
+
+    @Mock
+    private LibroReactivoClient libroClient;
+
+    @Mock
+    private SecuenciaReactiva secuenciaPrestamos;
+
+    @Mock
+    private SecuenciaReactiva secuenciaEventos;
+
+    @InjectMocks
+    private PrestamoReactivoService prestamoService;
+
+    private Prestamo prestamo;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        prestamo = new Prestamo();
+        prestamo.setUsuarioId(1L);
+        prestamo.setLibroId(1L);
+
+        ReflectionTestUtils.setField(prestamoService, "timeoutLlamadaMs", 2000L);
+        ReflectionTestUtils.setField(prestamoService, "timeoutTotalMs", 3000L);
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(prestamoService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(prestamoService, "secuenciaPrestamos", secuenciaPrestamos);
+        ReflectionTestUtils.setField(prestamoService, "secuenciaEventos", secuenciaEventos);
+        lenient().when(limitePrestamos.reservar(anyLong())).thenReturn(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCrearPrestamo_Exitoso() {
+        // Given
+        when(usuarioClient.existe(1L)).thenReturn(Mono.just(true));
+        when(libroClient.estaDisponible(1L)).thenReturn(Mono.just(true));
+        when(secuenciaPrestamos.siguiente()).thenReturn(Mono.just(101L));
+        when(secuenciaEventos.siguiente()).thenReturn(Mono.just(201L));
+        when(transaccion.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(entityTemplate.insert(any(PrestamoFila.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(entityTemplate.insert(any(EventoStockFila.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        // When / Then
+        StepVerifier.create(prestamoService.crearPrestamo(prestamo))
+                .assertNext(creado -> {
+                    assertEquals(101L, creado.getId());
+                    assertEquals(EstadoPrestamo.ACTIVO, creado.getEstado());
+                    assertNotNull(creado.getFechaPrestamo());
+                })
+                .verifyComplete();
+
+        // El descuento de stock se guarda como evento del outbox, con su propio ID
+        verify(entityTemplate).insert(argThat((EventoStockFila evento) -> evento.getId() == 201L
+                && evento.getPrestamoId() == 101L && evento.getCantidad() == -1));
+        assertEquals(1.0, meterRegistry.counter("prestamos.creados").count());
+    }
+
+    @Test
+    void testCrearPrestamo_UsuarioNoEncontrado() {
+        // Given
+        when(usuarioClient.existe(1L)).thenReturn(Mono.just(false));
+        when(libroClient.estaDisponible(1L)).thenReturn(Mono.just(true));
+
+        // When / Then
+        StepVerifier.create(prestamoService.crearPrestamo(prestamo))
+                .expectErrorMessage("Usuario no encontrado con ID: 1")
+                .verify();
+
+        verify(entityTemplate, never()).insert(any(PrestamoFila.class));
+        verify(limitePrestamos, times(1)).liberar(1L);
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "usuario-no-encontrado").count());
+    }
+
+    @Test
+    void testCrearPrestamo_LimiteAlcanzado() {
+        // Given
+        when(limitePrestamos.reservar(1L)).thenReturn(false);
+        when(limitePrestamos.getMaximoPorUsuario()).thenReturn(5);
+
+        // When / Then
+        StepVerifier.create(prestamoService.crearPrestamo(prestamo))
+                .expectErrorMessage("El usuario con ID: 1 alcanzó el máximo de 5 préstamos sin devolver")
+                .verify();
+
+        verifyNoInteractions(usuarioClient, libroClient);
+        verify(limitePrestamos, never()).liberar(anyLong());
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "limite-prestamos").count());
+    }
+
+    @Test
+    void testCrearPrestamo_LibroNoDisponible() {
+        // Given
+        when(usuarioClient.existe(1L)).thenReturn(Mono.just(true));
+        when(libroClient.estaDisponible(1L)).thenReturn(Mono.just(false));
+
+        // When / Then
+        StepVerifier.create(prestamoService.crearPrestamo(prestamo))
+                .expectErrorMessage("Libro no disponible o no encontrado con ID: 1")
+                .verify();
+
+        verify(entityTemplate, never()).insert(any(PrestamoFila.class));
+    }
+
+    @Test
+    void testCrearPrestamo_DatosInvalidos() {
+        // Given
+        prestamo.setLibroId(null);
+
+        // When / Then
+        StepVerifier.create(prestamoService.crearPrestamo(prestamo))
+                .expectErrorMessage("Usuario ID y Libro ID son requeridos")
+                .verify();
+
+        verifyNoInteractions(usuarioClient, libroClient);
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "datos-invalidos").count());
+    }
+
+    @Test
+    void testCrearPrestamo_TimeoutVerificacion() {
+        // Given
+        ReflectionTestUtils.setField(prestamoService, "timeoutLlamadaMs", 50L);
+        when(usuarioClient.existe(1L)).thenReturn(Mono.never());
+        when(libroClient.estaDisponible(1L)).thenReturn(Mono.just(true));
+
+        // When / Then
+        StepVerifier.create(prestamoService.crearPrestamo(prestamo))
+                .expectErrorMessage("Tiempo de espera agotado al verificar el usuario con ID: 1")
+                .verify();
+
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "timeout").count());
+    }
+
+    @Test
+    void testCrearPrestamo_ServicioNoDisponible() {
+        // Given
+        when(usuarioClient.existe(1L)).thenReturn(Mono.error(new ServicioNoDisponibleException("Servicio de usuarios no disponible", null)));
+        when(libroClient.estaDisponible(1L)).thenReturn(Mono.just(true));
+
+        // When / Then
+        StepVerifier.create(prestamoService.crearPrestamo(prestamo))
+                .expectError(ServicioNoDisponibleException.class)
+                .verify();
+
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "servicio-no-disponible").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDevolverLibro_Exitoso() {
+        // Given
+        PrestamoFila fila = new PrestamoFila(1L, 1L, 1L, Instant.now(), null, "A");
+        when(prestamoRepository.findById(1L)).thenReturn(Mono.just(fila));
+        when(secuenciaEventos.siguiente()).thenReturn(Mono.just(202L));
+        when(transaccion.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(prestamoRepository.devolver(eq(1L), any(Instant.class))).thenReturn(Mono.just(1));
+        when(entityTemplate.insert(any(EventoStockFila.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        // When / Then
+        StepVerifier.create(prestamoService.devolverLibro(1L))
+                .assertNext(devuelto -> {
+                    assertEquals(EstadoPrestamo.DEVUELTO, devuelto.getEstado());
+                    assertNotNull(devuelto.getFechaDevolucion());
+                })
+                .verifyComplete();
+
+        verify(entityTemplate).insert(argThat((EventoStockFila evento) -> evento.getPrestamoId() == 1L && evento.getCantidad() == 1));
+        verify(limitePrestamos, times(1)).liberar(1L);
+        assertEquals(1.0, meterRegistry.counter("prestamos.devueltos").count());
+    }
+
+    @Test
+    void testDevolverLibro_YaDevuelto() {
+        // Given
+        PrestamoFila fila = new PrestamoFila(1L, 1L, 1L, Instant.now(), Instant.now(), "D");
+        when(prestamoRepository.findById(1L)).thenReturn(Mono.just(fila));
+
+        // When / Then
+        StepVerifier.create(prestamoService.devolverLibro(1L))
+                .expectErrorMessage("El libro ya fue devuelto")
+                .verify();
+
+        verify(prestamoRepository, never()).devolver(anyLong(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDevolverLibro_DevueltoPorOtraSolicitud() {
+        // Given: la fila se leyó ACTIVO pero otra devolución la actualizó antes
+        PrestamoFila fila = new PrestamoFila(1L, 1L, 1L, Instant.now(), null, "A");
+        when(prestamoRepository.findById(1L)).thenReturn(Mono.just(fila));
+        when(secuenciaEventos.siguiente()).thenReturn(Mono.just(203L));
+        when(transaccion.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(prestamoRepository.devolver(eq(1L), any(Instant.class))).thenReturn(Mono.just(0));
+
+        // When / Then
+        StepVerifier.create(prestamoService.devolverLibro(1L))
+                .expectErrorMessage("El libro ya fue devuelto")
+                .verify();
+
+        verify(entityTemplate, never()).insert(any(EventoStockFila.class));
+        assertEquals(0.0, meterRegistry.counter("prestamos.devueltos").count());
+    }
+
+    @Test
+    void testDevolverLibro_NoEncontrado() {
+        // Given
+        when(prestamoRepository.findById(99L)).thenReturn(Mono.empty());
+
+        // When / Then
+        StepVerifier.create(prestamoService.devolverLibro(99L))
+                .expectErrorMessage("Préstamo no encontrado")
+                .verify();
+    }
+}
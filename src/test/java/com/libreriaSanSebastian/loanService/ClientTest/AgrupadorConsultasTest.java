@@ -0,0 +1,266 @@
+package com.libreriaSanSebastian.loanService.ClientTest;
+
+import com.libreriaSanSebastian.loanService.client.AgrupadorConsultas;
+import com.libreriaSanSebastian.loanService.client.ConfiguracionAgrupacion;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgrupadorConsultasTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService clientes;
+    private AgrupadorConsultas agrupador;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clientes = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clientes.shutdownNow();
+        if (agrupador != null) {
+            agrupador.cerrar();
+        }
+    }
+
+    @Test
+    void testConsultasConcurrentes_UnaSolaLlamadaPorLote() throws Exception {
+        // Given: el lote sale al reunir 3 IDs, mucho antes de la ventana
+        List<List<Long>> lotes = new CopyOnWriteArrayList<>();
+        agrupador = agrupador(3, Duration.ofSeconds(5), ids -> {
+            lotes.add(ids);
+            return Set.of(1L, 3L);
+        }, id -> fail("No debe consultar por ID"));
+
+        // When
+        Future<Boolean> uno = clientes.submit(() -> agrupador.consultar(1L));
+        Future<Boolean> dos = clientes.submit(() -> agrupador.consultar(2L));
+        Future<Boolean> tres = clientes.submit(() -> agrupador.consultar(3L));
+
+        // Then
+        assertTrue(uno.get(2, TimeUnit.SECONDS));
+        assertFalse(dos.get(2, TimeUnit.SECONDS));
+        assertTrue(tres.get(2, TimeUnit.SECONDS));
+        assertEquals(1, lotes.size());
+        assertEquals(Set.of(1L, 2L, 3L), new HashSet<>(lotes.get(0)));
+    }
+
+    @Test
+    void testVentana_EnviaLoteIncompleto() {
+        // Given
+        List<List<Long>> lotes = new CopyOnWriteArrayList<>();
+        agrupador = agrupador(64, Duration.ofMillis(2), ids -> {
+            lotes.add(ids);
+            return Set.of(7L);
+        }, id -> fail("No debe consultar por ID"));
+
+        // When
+        Boolean existe = agrupador.consultar(7L);
+
+        // Then
+        assertTrue(existe);
+        assertEquals(List.of(List.of(7L)), lotes);
+        assertEquals(1, meterRegistry.get("prestamos.remoto.lotes").summary().count());
+    }
+
+    @Test
+    void testMismoId_ComparteLaConsultaEnCurso() throws Exception {
+        // Given: el primer lote queda esperando la respuesta del servicio
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger llamadas = new AtomicInteger();
+        agrupador = agrupador(1, Duration.ofSeconds(5), ids -> {
+            llamadas.incrementAndGet();
+            try {
+                liberar.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Set.copyOf(ids);
+        }, id -> fail("No debe consultar por ID"));
+
+        // When
+        Future<Boolean> primera = clientes.submit(() -> agrupador.consultar(1L));
+        Future<Boolean> segunda = clientes.submit(() -> agrupador.consultar(1L));
+        esperarHasta(() -> llamadas.get() == 1 && meterRegistry.counter("prestamos.remoto.consultas.compartidas",
+                "servicio", "usuarios").count() == 1);
+        liberar.countDown();
+
+        // Then
+        assertTrue(primera.get(2, TimeUnit.SECONDS));
+        assertTrue(segunda.get(2, TimeUnit.SECONDS));
+        assertEquals(1, llamadas.get());
+    }
+
+    @Test
+    void testSinConsultaPorLote_ConsultaPorIdYNoVuelveAProbar() {
+        // Given
+        AtomicInteger lotes = new AtomicInteger();
+        List<Long> individuales = new CopyOnWriteArrayList<>();
+        agrupador = agrupador(1, Duration.ofMillis(2), ids -> {
+            lotes.incrementAndGet();
+            throw new AgrupadorConsultas.LoteNoSoportadoException("Sin consulta por lote");
+        }, id -> {
+            individuales.add(id);
+            return id % 2 == 0;
+        });
+
+        // When
+        Boolean primera = agrupador.consultar(2L);
+        Boolean segunda = agrupador.consultar(3L);
+
+        // Then: el segundo ID ya no intenta el lote
+        assertTrue(primera);
+        assertFalse(segunda);
+        assertEquals(1, lotes.get());
+        assertEquals(List.of(2L, 3L), individuales);
+        assertEquals(1.0, meterRegistry.counter("prestamos.remoto.lotes.no-soportados", "servicio", "usuarios").count());
+    }
+
+    @Test
+    void testErrorTransitorio_DevuelveNull() {
+        // Given
+        agrupador = agrupador(1, Duration.ofMillis(2), ids -> null, id -> fail("No debe consultar por ID"));
+
+        // When
+        Boolean existe = agrupador.consultar(1L);
+
+        // Then
+        assertNull(existe);
+    }
+
+    @Test
+    void testServicioNoDisponible_SePropaga() {
+        // Given
+        agrupador = agrupador(1, Duration.ofMillis(2), ids -> {
+            throw new ServicioNoDisponibleException("Servicio de usuarios no disponible temporalmente", null);
+        }, id -> fail("No debe consultar por ID"));
+
+        // When & Then
+        ServicioNoDisponibleException exception = assertThrows(ServicioNoDisponibleException.class,
+                () -> agrupador.consultar(1L));
+
+        assertEquals("Servicio de usuarios no disponible temporalmente", exception.getMessage());
+    }
+
+    @Test
+    void testSinConsultaPorLote_ConsultaPorIdEnElExecutorRecibido() {
+        // Given
+        List<String> hilos = new CopyOnWriteArrayList<>();
+        ExecutorService individuales = Executors.newSingleThreadExecutor(tarea -> new Thread(tarea, "individual"));
+        agrupador = agrupador(1, Duration.ofMillis(2), ids -> {
+            throw new AgrupadorConsultas.LoteNoSoportadoException("Sin consulta por lote");
+        }, id -> {
+            hilos.add(Thread.currentThread().getName());
+            return true;
+        }, individuales, Duration.ofSeconds(3));
+
+        // When
+        try {
+            Boolean existe = agrupador.consultar(1L);
+
+            // Then
+            assertTrue(existe);
+            assertEquals(List.of("individual"), hilos);
+        } finally {
+            individuales.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSinConsultaPorLote_ExecutorSaturado() {
+        // Given
+        agrupador = agrupador(1, Duration.ofMillis(2), ids -> {
+            throw new AgrupadorConsultas.LoteNoSoportadoException("Sin consulta por lote");
+        }, id -> fail("No debe consultar por ID"), tarea -> {
+            throw new RejectedExecutionException("cola llena");
+        }, Duration.ofSeconds(3));
+
+        // When & Then
+        ServicioNoDisponibleException exception = assertThrows(ServicioNoDisponibleException.class,
+                () -> agrupador.consultar(1L));
+
+        assertEquals("Servicio de usuarios saturado, intente nuevamente", exception.getMessage());
+    }
+
+    @Test
+    void testEspera_AcotadaAunqueElLoteNoResponda() throws Exception {
+        // Given: el servicio no responde a la consulta por lote
+        CountDownLatch liberar = new CountDownLatch(1);
+        agrupador = agrupador(1, Duration.ofMillis(2), ids -> {
+            try {
+                liberar.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Set.copyOf(ids);
+        }, id -> fail("No debe consultar por ID"), clientes, Duration.ofMillis(50));
+
+        // When & Then
+        try {
+            ServicioNoDisponibleException exception = assertThrows(ServicioNoDisponibleException.class,
+                    () -> agrupador.consultar(1L));
+
+            assertEquals("Servicio de usuarios sin respuesta a la consulta agrupada", exception.getMessage());
+        } finally {
+            liberar.countDown();
+        }
+    }
+
+    @Test
+    void testIdsEncontrados_RespuestaConIdsNoPedidos() {
+        // Given: el servicio ignoró el parámetro ids y devolvió otros recursos
+        List<Map<String, Object>> respuesta = new ArrayList<>();
+        respuesta.add(Map.of("id", 1));
+        respuesta.add(Map.of("id", 99));
+
+        // When & Then
+        assertEquals(Set.of(1L), AgrupadorConsultas.idsEncontrados(List.of(Map.of("id", 1)), List.of(1L, 2L)));
+        assertThrows(AgrupadorConsultas.LoteNoSoportadoException.class,
+                () -> AgrupadorConsultas.idsEncontrados(respuesta, List.of(1L, 2L)));
+    }
+
+    private AgrupadorConsultas agrupador(int maximo, Duration ventana, Function<List<Long>, Set<Long>> consultaLote,
+                                         Function<Long, Boolean> consultaIndividual) {
+        return agrupador(maximo, ventana, consultaLote, consultaIndividual, clientes, Duration.ofSeconds(3));
+    }
+
+    private AgrupadorConsultas agrupador(int maximo, Duration ventana, Function<List<Long>, Set<Long>> consultaLote,
+                                         Function<Long, Boolean> consultaIndividual, Executor individuales,
+                                         Duration espera) {
+        return new AgrupadorConsultas("usuarios", consultaLote, consultaIndividual, individuales,
+                new ConfiguracionAgrupacion(true, ventana, maximo, Duration.ofMinutes(10), 2, espera), meterRegistry);
+    }
+
+    private static void esperarHasta(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condicion.getAsBoolean()) {
+            assertTrue(System.nanoTime() < limite, "La condición no se cumplió a tiempo");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.libreriaSanSebastian.loanService.ClientTest;
+
+import com.libreriaSanSebastian.loanService.client.BalanceadorInstancias;
+import com.libreriaSanSebastian.loanService.client.ConfiguracionBalanceo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceadorInstanciasTest {
+
+    private static final List<String> INSTANCIAS = List.of("http://a:8081", "http://b:8081", "http://c:8081");
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testRoundRobin_RepartePorIgual() {
+        // Given
+        BalanceadorInstancias balanceador = balanceador(BalanceadorInstancias.Estrategia.ROUND_ROBIN, 3, 2);
+        Map<String, Integer> llamadas = new HashMap<>();
+
+        // When
+        for (int i = 0; i < 300; i++) {
+            balanceador.ejecutar(url -> llamadas.merge(url, 1, Integer::sum), true);
+        }
+
+        // Then
+        assertEquals(Map.of("http://a:8081", 100, "http://b:8081", 100, "http://c:8081", 100), llamadas);
+    }
+
+    @Test
+    void testMenosPendientes_EvitaInstanciaOcupada() {
+        // Given: a y b tienen llamadas en curso
+        BalanceadorInstancias balanceador = balanceador(BalanceadorInstancias.Estrategia.MENOS_PENDIENTES, 3, 2);
+        BalanceadorInstancias.Instancia primera = balanceador.elegir(Set.of());
+        primera.iniciar();
+        BalanceadorInstancias.Instancia segunda = balanceador.elegir(Set.of());
+        segunda.iniciar();
+
+        // When
+        BalanceadorInstancias.Instancia tercera = balanceador.elegir(Set.of());
+
+        // Then
+        assertNotEquals(primera.getUrl(), segunda.getUrl());
+        assertNotEquals(primera.getUrl(), tercera.getUrl());
+        assertNotEquals(segunda.getUrl(), tercera.getUrl());
+        assertEquals(0, tercera.getEnCurso());
+    }
+
+    @Test
+    void testEjecutar_ReintentaEnOtraInstancia() {
+        // Given
+        BalanceadorInstancias balanceador = balanceador(BalanceadorInstancias.Estrategia.ROUND_ROBIN, 3, 2);
+        List<String> probadas = new ArrayList<>();
+
+        // When
+        String respuesta = balanceador.ejecutar(url -> {
+            probadas.add(url);
+            if (probadas.size() == 1) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return "ok";
+        }, true);
+
+        // Then
+        assertEquals("ok", respuesta);
+        assertEquals(2, probadas.size());
+        assertNotEquals(probadas.get(0), probadas.get(1));
+        assertEquals(1.0, meterRegistry.counter("prestamos.remoto.reintentos", "servicio", "usuarios").count());
+    }
+
+    @Test
+    void testEjecutar_ErrorDelClienteNoSeReintenta() {
+        // Given
+        BalanceadorInstancias balanceador = balanceador(BalanceadorInstancias.Estrategia.ROUND_ROBIN, 3, 3);
+        List<String> probadas = new ArrayList<>();
+
+        // When & Then
+        assertThrows(HttpClientErrorException.class, () -> balanceador.ejecutar(url -> {
+            probadas.add(url);
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+        }, true));
+        assertEquals(1, probadas.size());
+    }
+
+    @Test
+    void testEjecutar_NoIdempotenteSoloReintentaSinConexion() {
+        // Given
+        BalanceadorInstancias balanceador = balanceador(BalanceadorInstancias.Estrategia.ROUND_ROBIN, 3, 3);
+        List<String> probadas = new ArrayList<>();
+
+        // When: la primera instancia no acepta la conexión y la segunda no responde a tiempo
+        assertThrows(ResourceAccessException.class, () -> balanceador.ejecutar(url -> {
+            probadas.add(url);
+            IOException causa = probadas.size() == 1 ? new ConnectException("Connection refused") : new SocketTimeoutException("Read timed out");
+            throw new ResourceAccessException("I/O error", causa);
+        }, false));
+
+        // Then: no se repite en una tercera instancia una llamada que pudo haberse aplicado
+        assertEquals(2, probadas.size());
+    }
+
+    @Test
+    void testExpulsion_TrasFallosConsecutivos() {
+        // Given
+        BalanceadorInstancias balanceador = balanceador(BalanceadorInstancias.Estrategia.ROUND_ROBIN, 2, 1);
+        BalanceadorInstancias.Instancia enferma = balanceador.elegir(Set.of());
+
+        // When
+        balanceador.registrarFallo(enferma);
+        balanceador.registrarFallo(enferma);
+
+        // Then
+        for (int i = 0; i < 30; i++) {
+            assertNotEquals(enferma.getUrl(), balanceador.elegir(Set.of()).getUrl());
+        }
+        assertEquals(2.0, meterRegistry.get("prestamos.remoto.instancias.disponibles").gauge().value());
+        assertEquals(1.0, meterRegistry.counter("prestamos.remoto.expulsiones", "servicio", "usuarios",
+                "instancia", enferma.getUrl()).count());
+    }
+
+    @Test
+    void testExpulsion_TodasExpulsadasSigueEligiendo() {
+        // Given
+        BalanceadorInstancias balanceador = balanceador(BalanceadorInstancias.Estrategia.MENOS_PENDIENTES, 1, 1);
+        for (int i = 0; i < INSTANCIAS.size(); i++) {
+            balanceador.registrarFallo(balanceador.elegir(Set.of()));
+        }
+
+        // When
+        BalanceadorInstancias.Instancia elegida = balanceador.elegir(Set.of());
+
+        // Then
+        assertNotNull(elegida);
+        assertEquals(0.0, meterRegistry.get("prestamos.remoto.instancias.disponibles").gauge().value());
+    }
+
+    private BalanceadorInstancias balanceador(BalanceadorInstancias.Estrategia estrategia, int fallosParaExpulsar, int intentos) {
+        ConfiguracionBalanceo configuracion = new ConfiguracionBalanceo(estrategia, fallosParaExpulsar, Duration.ofMinutes(1), intentos);
+        return new BalanceadorInstancias("usuarios", INSTANCIAS, configuracion, meterRegistry);
+    }
+}
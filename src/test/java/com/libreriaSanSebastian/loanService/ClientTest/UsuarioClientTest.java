@@ -0,0 +1,187 @@
+package com.libreriaSanSebastian.loanService.ClientTest;
+
+import com.libreriaSanSebastian.loanService.client.BalanceadorInstancias;
+import com.libreriaSanSebastian.loanService.client.ConfiguracionAgrupacion;
+import com.libreriaSanSebastian.loanService.client.ConfiguracionBalanceo;
+import com.libreriaSanSebastian.loanService.client.UsuarioClient;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsuarioClientTest {
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    @InjectMocks
+    private UsuarioClient usuarioClient;
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(usuarioClient, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(usuarioClient, "circuitBreakerRegistry", circuitBreakerRegistry);
+        ReflectionTestUtils.setField(usuarioClient, "bulkheadRegistry", BulkheadRegistry.ofDefaults());
+        ReflectionTestUtils.setField(usuarioClient, "validacionRemotaExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(usuarioClient, "instancias", List.of("http://localhost:8081"));
+        ReflectionTestUtils.setField(usuarioClient, "configuracionBalanceo",
+                new ConfiguracionBalanceo(BalanceadorInstancias.Estrategia.ROUND_ROBIN, 3, Duration.ofSeconds(30), 2));
+        ReflectionTestUtils.setField(usuarioClient, "configuracionAgrupacion",
+                new ConfiguracionAgrupacion(false, Duration.ofMillis(2), 64, Duration.ofMinutes(10), 1, Duration.ofSeconds(3)));
+        ReflectionTestUtils.setField(usuarioClient, "maxEntradas", 100L);
+        ReflectionTestUtils.setField(usuarioClient, "ttlPositivo", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(usuarioClient, "ttlNegativo", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(usuarioClient, "refrescoAnticipado", Duration.ofMinutes(5));
+        usuarioClient.inicializar();
+    }
+
+    @Test
+    void testExiste_SegundaConsultaDesdeCache() {
+        // Given
+        when(restTemplate.getForEntity(anyString(), eq(Object.class)))
+                .thenReturn(new ResponseEntity<>(HttpStatus.OK));
+
+        // When
+        boolean primera = usuarioClient.existe(1L);
+        boolean segunda = usuarioClient.existe(1L);
+
+        // Then
+        assertTrue(primera);
+        assertTrue(segunda);
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(Object.class));
+    }
+
+    @Test
+    void testExiste_ResultadoNegativoEnCache() {
+        // Given
+        when(restTemplate.getForEntity(anyString(), eq(Object.class)))
+                .thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        // When
+        boolean primera = usuarioClient.existe(99L);
+        boolean segunda = usuarioClient.existe(99L);
+
+        // Then
+        assertFalse(primera);
+        assertFalse(segunda);
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(Object.class));
+    }
+
+    @Test
+    void testExiste_ErrorTransitorioNoSeGuarda() {
+        // Given
+        when(restTemplate.getForEntity(anyString(), eq(Object.class)))
+                .thenThrow(new ResourceAccessException("Connection refused"))
+                .thenReturn(new ResponseEntity<>(HttpStatus.OK));
+
+        // When
+        boolean primera = usuarioClient.existe(1L);
+        boolean segunda = usuarioClient.existe(1L);
+
+        // Then
+        assertFalse(primera);
+        assertTrue(segunda);
+        verify(restTemplate, times(2)).getForEntity(anyString(), eq(Object.class));
+    }
+
+    @Test
+    void testExiste_ReintentaEnOtraInstancia() {
+        // Given
+        ReflectionTestUtils.setField(usuarioClient, "instancias", List.of("http://usuarios-1:8081", "http://usuarios-2:8081"));
+        usuarioClient.inicializar();
+        when(restTemplate.getForEntity(startsWith("http://usuarios-1:8081"), eq(Object.class)))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+        when(restTemplate.getForEntity(startsWith("http://usuarios-2:8081"), eq(Object.class)))
+                .thenReturn(new ResponseEntity<>(HttpStatus.OK));
+
+        // When
+        boolean primera = usuarioClient.existe(1L);
+        boolean segunda = usuarioClient.existe(2L);
+
+        // Then
+        assertTrue(primera);
+        assertTrue(segunda);
+        verify(restTemplate, times(1)).getForEntity("http://usuarios-2:8081/api/v1/usuarios/1", Object.class);
+        verify(restTemplate, times(1)).getForEntity("http://usuarios-2:8081/api/v1/usuarios/2", Object.class);
+    }
+
+    @Test
+    void testExiste_ConsultaPorLote() {
+        // Given
+        habilitarAgrupacion();
+        doReturn(new ResponseEntity<>(List.of(Map.of("id", 1)), HttpStatus.OK)).when(restTemplate).exchange(
+                eq("http://localhost:8081/api/v1/usuarios?ids=1"), eq(HttpMethod.GET), isNull(), any(ParameterizedTypeReference.class));
+
+        // When
+        boolean existe = usuarioClient.existe(1L);
+
+        // Then
+        assertTrue(existe);
+        verify(restTemplate, never()).getForEntity(anyString(), eq(Object.class));
+    }
+
+    @Test
+    void testExiste_SinConsultaPorLoteConsultaPorId() {
+        // Given
+        habilitarAgrupacion();
+        doThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND)).when(restTemplate).exchange(
+                anyString(), eq(HttpMethod.GET), isNull(), any(ParameterizedTypeReference.class));
+        when(restTemplate.getForEntity(anyString(), eq(Object.class)))
+                .thenReturn(new ResponseEntity<>(HttpStatus.OK));
+
+        // When
+        boolean primera = usuarioClient.existe(1L);
+        boolean segunda = usuarioClient.existe(2L);
+
+        // Then: tras el 404 el segundo ID va directo a la consulta individual
+        assertTrue(primera);
+        assertTrue(segunda);
+        verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.GET), isNull(), any(ParameterizedTypeReference.class));
+        verify(restTemplate, times(2)).getForEntity(anyString(), eq(Object.class));
+    }
+
+    @Test
+    void testExiste_CircuitoAbierto() {
+        // Given
+        circuitBreakerRegistry.circuitBreaker("usuarios").transitionToOpenState();
+
+        // When & Then
+        ServicioNoDisponibleException exception = assertThrows(ServicioNoDisponibleException.class,
+            () -> usuarioClient.existe(1L));
+
+        assertEquals("Servicio de usuarios no disponible temporalmente", exception.getMessage());
+        verify(restTemplate, never()).getForEntity(anyString(), eq(Object.class));
+    }
+
+    private void habilitarAgrupacion() {
+        ReflectionTestUtils.setField(usuarioClient, "configuracionAgrupacion",
+                new ConfiguracionAgrupacion(true, Duration.ofMillis(1), 64, Duration.ofMinutes(10), 1, Duration.ofSeconds(3)));
+        usuarioClient.inicializar();
+    }
+}
@@ -0,0 +1,207 @@
+package com.libreriaSanSebastian.loanService.LoadTest;
+
+import com.libreriaSanSebastian.loanService.client.BalanceadorInstancias;
+import com.libreriaSanSebastian.loanService.client.ConfiguracionBalanceo;
+import com.libreriaSanSebastian.loanService.config.RestTemplateConfig;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Varias réplicas simuladas del servicio de usuarios (servidores HTTP locales con pocos hilos) detrás de
+// BalanceadorInstancias: el rendimiento crece con las réplicas, una réplica que responde 503 no produce errores y una
+// réplica lenta recibe menos llamadas con MENOS_PENDIENTES que con ROUND_ROBIN. Ejecutar con: ./mvnw -Pload test
+@Tag("load")
+class BalanceoInstanciasLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceoInstanciasLoadTest.class);
+
+    private static final int CLIENTES_CONCURRENTES = 48;
+    private static final int SOLICITUDES = 6000;
+    private static final int HILOS_POR_REPLICA = 4;
+    private static final long LATENCIA_REPLICA_MS = 10;
+    private static final long LATENCIA_REPLICA_LENTA_MS = 300;
+
+    private final List<HttpServer> servidores = new ArrayList<>();
+    private final List<ExecutorService> hilosServidores = new ArrayList<>();
+    private PoolingHttpClientConnectionManager pool;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "maxConexiones", 200);
+        ReflectionTestUtils.setField(config, "maxConexionesPorRuta", 64);
+        ReflectionTestUtils.setField(config, "timeoutConexionMs", 1000L);
+        ReflectionTestUtils.setField(config, "timeoutLecturaMs", 5000L);
+        ReflectionTestUtils.setField(config, "timeoutPoolMs", 5000L);
+        ReflectionTestUtils.setField(config, "keepAliveS", 30L);
+        ReflectionTestUtils.setField(config, "inactividadMaximaS", 30L);
+        pool = config.httpConnectionManager();
+        httpClient = config.httpClient(pool);
+        restTemplate = config.restTemplate(httpClient);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        httpClient.close();
+        servidores.forEach(servidor -> servidor.stop(0));
+        hilosServidores.forEach(ExecutorService::shutdownNow);
+    }
+
+    @Test
+    void testRendimientoCreceConLasReplicas() throws Exception {
+        String a = replica(LATENCIA_REPLICA_MS, 200);
+        String b = replica(LATENCIA_REPLICA_MS, 200);
+        String c = replica(LATENCIA_REPLICA_MS, 200);
+
+        medir(balanceador(BalanceadorInstancias.Estrategia.MENOS_PENDIENTES, a), 500);
+        Resultado una = medir(balanceador(BalanceadorInstancias.Estrategia.MENOS_PENDIENTES, a), SOLICITUDES);
+        Resultado tres = medir(balanceador(BalanceadorInstancias.Estrategia.MENOS_PENDIENTES, a, b, c), SOLICITUDES);
+
+        log.info("1 réplica: %.0f req/s, p99 %d ms".formatted(una.rps(), una.p99Ms()));
+        log.info("3 réplicas: %.0f req/s, p99 %d ms (%.2fx)".formatted(tres.rps(), tres.p99Ms(), tres.rps() / una.rps()));
+
+        assertEquals(0, una.errores());
+        assertEquals(0, tres.errores());
+        assertTrue(tres.rps() > una.rps() * 2);
+    }
+
+    @Test
+    void testReplicaConErroresSeExpulsa() throws Exception {
+        String sana1 = replica(LATENCIA_REPLICA_MS, 200);
+        String sana2 = replica(LATENCIA_REPLICA_MS, 200);
+        String enferma = replica(LATENCIA_REPLICA_MS, 503);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BalanceadorInstancias balanceador = new BalanceadorInstancias("usuarios", List.of(sana1, sana2, enferma),
+                new ConfiguracionBalanceo(BalanceadorInstancias.Estrategia.MENOS_PENDIENTES, 3, Duration.ofSeconds(30), 2),
+                meterRegistry);
+
+        Resultado resultado = medir(balanceador, SOLICITUDES);
+        double reintentos = meterRegistry.counter("prestamos.remoto.reintentos", "servicio", "usuarios").count();
+
+        log.info("Con una réplica respondiendo 503: %.0f req/s, p99 %d ms, %d errores, %.0f reintentos, %s".formatted(
+                resultado.rps(), resultado.p99Ms(), resultado.errores(), reintentos, resultado.porReplica()));
+
+        // Cada llamada que cayó en la réplica enferma se completó en otra; después de expulsarla casi no recibe llamadas
+        assertEquals(0, resultado.errores());
+        assertTrue(reintentos < SOLICITUDES / 100.0);
+        assertEquals(2.0, meterRegistry.get("prestamos.remoto.instancias.disponibles").gauge().value());
+    }
+
+    @Test
+    void testReplicaLentaMenosPendientesVsRoundRobin() throws Exception {
+        String rapida1 = replica(LATENCIA_REPLICA_MS, 200);
+        String rapida2 = replica(LATENCIA_REPLICA_MS, 200);
+        String lenta = replica(LATENCIA_REPLICA_LENTA_MS, 200);
+
+        Resultado roundRobin = medir(balanceador(BalanceadorInstancias.Estrategia.ROUND_ROBIN, rapida1, rapida2, lenta), SOLICITUDES);
+        Resultado menosPendientes = medir(balanceador(BalanceadorInstancias.Estrategia.MENOS_PENDIENTES, rapida1, rapida2, lenta), SOLICITUDES);
+
+        log.info("ROUND_ROBIN: %.0f req/s, p99 %d ms, %s".formatted(roundRobin.rps(), roundRobin.p99Ms(), roundRobin.porReplica()));
+        log.info("MENOS_PENDIENTES: %.0f req/s, p99 %d ms, %s".formatted(menosPendientes.rps(), menosPendientes.p99Ms(),
+                menosPendientes.porReplica()));
+
+        int lentaRoundRobin = roundRobin.porReplica().getOrDefault(lenta, 0);
+        int lentaMenosPendientes = menosPendientes.porReplica().getOrDefault(lenta, 0);
+        assertTrue(lentaMenosPendientes < lentaRoundRobin);
+        assertTrue(menosPendientes.rps() > roundRobin.rps());
+    }
+
+    private BalanceadorInstancias balanceador(BalanceadorInstancias.Estrategia estrategia, String... replicas) {
+        return new BalanceadorInstancias("usuarios", Arrays.asList(replicas),
+                new ConfiguracionBalanceo(estrategia, 3, Duration.ofSeconds(30), 2), new SimpleMeterRegistry());
+    }
+
+    private Resultado medir(BalanceadorInstancias balanceador, int solicitudes) throws Exception {
+        ExecutorService clientes = Executors.newFixedThreadPool(CLIENTES_CONCURRENTES);
+        AtomicInteger errores = new AtomicInteger();
+        Map<String, Integer> porReplica = new ConcurrentHashMap<>();
+        long[] latencias = new long[solicitudes];
+        AtomicInteger siguiente = new AtomicInteger();
+        LongAdder completadas = new LongAdder();
+        List<Future<?>> tareas = new ArrayList<>();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < CLIENTES_CONCURRENTES; i++) {
+            tareas.add(clientes.submit(() -> {
+                int n;
+                while ((n = siguiente.getAndIncrement()) < solicitudes) {
+                    long antes = System.nanoTime();
+                    try {
+                        balanceador.ejecutar(url -> {
+                            porReplica.merge(url, 1, Integer::sum);
+                            return restTemplate.getForEntity(url + "/api/v1/usuarios/1", Object.class);
+                        }, true);
+                    } catch (RuntimeException e) {
+                        errores.incrementAndGet();
+                    }
+                    latencias[n] = System.nanoTime() - antes;
+                    completadas.increment();
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(5, TimeUnit.MINUTES);
+        }
+        long duracion = System.nanoTime() - inicio;
+        clientes.shutdown();
+
+        Arrays.sort(latencias);
+        long p99 = TimeUnit.NANOSECONDS.toMillis(latencias[(int) (solicitudes * 0.99) - 1]);
+        return new Resultado(completadas.sum() / (duracion / 1_000_000_000.0), p99, errores.get(), porReplica);
+    }
+
+    // Réplica simulada con HILOS_POR_REPLICA hilos: su capacidad es limitada, como la de una instancia real
+    private String replica(long latenciaMs, int estado) throws Exception {
+        byte[] cuerpo = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS_POR_REPLICA);
+        HttpServer servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        servidor.setExecutor(hilos);
+        servidor.createContext("/api/v1/", exchange -> {
+            try {
+                Thread.sleep(latenciaMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(estado, cuerpo.length);
+            try (OutputStream salida = exchange.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        });
+        servidor.start();
+        servidores.add(servidor);
+        hilosServidores.add(hilos);
+        return "http://127.0.0.1:" + servidor.getAddress().getPort();
+    }
+
+    private record Resultado(double rps, long p99Ms, int errores, Map<String, Integer> porReplica) {
+    }
+}
@@ -0,0 +1,133 @@
+package com.libreriaSanSebastian.loanService.LoadTest;
+
+import com.libreriaSanSebastian.loanService.config.RestTemplateConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Compara cuántas solicitudes concurrentes se atienden con el pool de hilos de plataforma de Tomcat (200 por defecto)
+// y con hilos virtuales, cuando cada solicitud espera dos llamadas remotas de 200 ms como en crearPrestamo.
+// Requiere Java 21. Ejecutar con: ./mvnw -Pjava21,load test
+@Tag("load")
+class HilosVirtualesLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(HilosVirtualesLoadTest.class);
+
+    private static final int HILOS_TOMCAT = 200;
+    private static final int SOLICITUDES = 2000;
+    private static final long LATENCIA_SERVIDOR_MS = 200;
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private String urlUsuario;
+    private String urlLibro;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Los hilos virtuales requieren Java 21");
+        byte[] cuerpo = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        // El servidor simulado no debe ser el cuello de botella: un hilo por conexión
+        hilosServidor = Executors.newCachedThreadPool();
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext("/api/v1/", exchange -> {
+            try {
+                Thread.sleep(LATENCIA_SERVIDOR_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = exchange.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        });
+        servidor.start();
+        String base = "http://127.0.0.1:" + servidor.getAddress().getPort();
+        urlUsuario = base + "/api/v1/usuarios/1";
+        urlLibro = base + "/api/v1/libros/1";
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (servidor != null) {
+            servidor.stop(0);
+            hilosServidor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testConcurrenciaHilosVirtualesVsPlataforma() throws Exception {
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "maxConexiones", 4000);
+        ReflectionTestUtils.setField(config, "maxConexionesPorRuta", 4000);
+        ReflectionTestUtils.setField(config, "timeoutConexionMs", 5000L);
+        ReflectionTestUtils.setField(config, "timeoutLecturaMs", 10000L);
+        ReflectionTestUtils.setField(config, "timeoutPoolMs", 10000L);
+        ReflectionTestUtils.setField(config, "keepAliveS", 30L);
+        ReflectionTestUtils.setField(config, "inactividadMaximaS", 30L);
+
+        PoolingHttpClientConnectionManager pool = config.httpConnectionManager();
+        ExecutorService plataforma = Executors.newFixedThreadPool(HILOS_TOMCAT);
+        SimpleAsyncTaskExecutor virtuales = new SimpleAsyncTaskExecutor("solicitud-");
+        virtuales.setVirtualThreads(true);
+        try (CloseableHttpClient httpClient = config.httpClient(pool)) {
+            RestTemplate restTemplate = config.restTemplate(httpClient);
+
+            // Calentamiento de JIT y conexiones
+            medir(restTemplate, plataforma, HILOS_TOMCAT);
+            medir(restTemplate, virtuales, HILOS_TOMCAT);
+
+            double rpsPlataforma = medir(restTemplate, plataforma, SOLICITUDES);
+            double rpsVirtuales = medir(restTemplate, virtuales, SOLICITUDES);
+
+            log.info("%d hilos de plataforma: %.0f solicitudes/s".formatted(HILOS_TOMCAT, rpsPlataforma));
+            log.info("Hilos virtuales: %.0f solicitudes/s (%.2fx)".formatted(rpsVirtuales, rpsVirtuales / rpsPlataforma));
+            log.info("Pool: {}", pool.getTotalStats());
+
+            // Con 200 hilos el techo es 200 / 0,4 s = 500 solicitudes/s; con hilos virtuales lo fija el pool HTTP
+            assertTrue(rpsPlataforma < HILOS_TOMCAT * 1000.0 / (2 * LATENCIA_SERVIDOR_MS) * 1.1);
+            assertTrue(rpsVirtuales > rpsPlataforma * 2);
+        } finally {
+            plataforma.shutdownNow();
+        }
+    }
+
+    // Cada solicitud hace las dos verificaciones en secuencia, bloqueando su hilo como lo hace un controlador MVC
+    private double medir(RestTemplate restTemplate, Executor executor, int solicitudes) throws Exception {
+        List<CompletableFuture<Void>> tareas = new ArrayList<>(solicitudes);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < solicitudes; i++) {
+            tareas.add(CompletableFuture.runAsync(() -> {
+                restTemplate.getForEntity(urlUsuario, Object.class);
+                restTemplate.getForEntity(urlLibro, Object.class);
+            }, executor));
+        }
+        CompletableFuture.allOf(tareas.toArray(new CompletableFuture[0])).get(5, TimeUnit.MINUTES);
+        long duracion = System.nanoTime() - inicio;
+        return solicitudes / (duracion / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,214 @@
+package com.libreriaSanSebastian.loanService.LoadTest;
+
+import com.libreriaSanSebastian.loanService.LoanServiceApplication;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Compara el perfil prod (pool fijo, sentencias preparadas cacheadas en el servidor, lotes reescritos, sin SQL en
+// consola ni open-in-view) con la configuración actual de dev (pool y Connector/J por defecto, show-sql y format_sql)
+// sobre la misma base MySQL, con una mezcla de lecturas por ID y por usuario y creaciones en lote. Los servicios de
+// usuarios y libros se simulan sin latencia para que la diferencia la marque la base.
+// Requiere MySQL: PRESTAMOS_LOAD_DB_URL, PRESTAMOS_LOAD_DB_USUARIO y PRESTAMOS_LOAD_DB_CLAVE.
+// Ejecutar con: ./mvnw -Pload test
+@Tag("load")
+class PerfilProduccionLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PerfilProduccionLoadTest.class);
+
+    private static final int PRESTAMOS = 20_000;
+    private static final int USUARIOS = 4_000;
+    private static final int CLIENTES_CONCURRENTES = 64;
+    private static final int SOLICITUDES = 20_000;
+    private static final int TAMANO_LOTE = 50;
+
+    private String urlBase;
+    private String usuarioBase;
+    private String claveBase;
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private String urlServicios;
+    private HttpClient cliente;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        urlBase = System.getenv("PRESTAMOS_LOAD_DB_URL");
+        usuarioBase = System.getenv("PRESTAMOS_LOAD_DB_USUARIO");
+        claveBase = System.getenv("PRESTAMOS_LOAD_DB_CLAVE");
+        assumeTrue(urlBase != null, "Se requiere una base MySQL en PRESTAMOS_LOAD_DB_URL");
+
+        byte[] cuerpo = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        hilosServidor = Executors.newCachedThreadPool();
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext("/api/v1/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = exchange.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        });
+        servidor.start();
+        urlServicios = "http://127.0.0.1:" + servidor.getAddress().getPort();
+        cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (servidor != null) {
+            servidor.stop(0);
+            hilosServidor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testPerfilProdVsDev() throws Exception {
+        Resultado dev;
+        try (ConfigurableApplicationContext contexto = iniciar("dev")) {
+            dev = medir(contexto);
+        }
+        Resultado prod;
+        try (ConfigurableApplicationContext contexto = iniciar("prod")) {
+            prod = medir(contexto);
+        }
+
+        log.info("dev:  %.0f solicitudes/s, conexión retenida %.2f ms y espera %.2f ms en promedio".formatted(
+                dev.rps(), dev.usoMedioMs(), dev.esperaMediaMs()));
+        log.info("prod: %.0f solicitudes/s, conexión retenida %.2f ms y espera %.2f ms en promedio (%.2fx)".formatted(
+                prod.rps(), prod.usoMedioMs(), prod.esperaMediaMs(), prod.rps() / dev.rps()));
+
+        // Sin open-in-view la conexión se devuelve al terminar la transacción, no al terminar la petición
+        assertTrue(prod.usoMedioMs() < dev.usoMedioMs());
+        assertTrue(prod.rps() > dev.rps());
+    }
+
+    private Resultado medir(ConfigurableApplicationContext contexto) throws Exception {
+        sembrar(contexto.getBean(JdbcTemplate.class));
+        int puerto = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+        String url = "http://127.0.0.1:" + puerto + "/api/v1/prestamos";
+
+        // Calentamiento: JIT, pool lleno y sentencias preparadas en caché
+        ejecutar(url, SOLICITUDES / 10, new Random(1), new AtomicLong(1_000_000));
+
+        // Métricas del pool (hikaricp.connections.*) solo de la medición: diferencia contra los valores tras el calentamiento
+        MeterRegistry registro = contexto.getBean(MeterRegistry.class);
+        Timer uso = registro.get("hikaricp.connections.usage").timer();
+        Timer espera = registro.get("hikaricp.connections.acquire").timer();
+        long usosPrevios = uso.count();
+        double usoPrevioMs = uso.totalTime(TimeUnit.MILLISECONDS);
+        long esperasPrevias = espera.count();
+        double esperaPreviaMs = espera.totalTime(TimeUnit.MILLISECONDS);
+
+        long inicio = System.nanoTime();
+        ejecutar(url, SOLICITUDES, new Random(42), new AtomicLong(2_000_000));
+        long duracion = System.nanoTime() - inicio;
+
+        return new Resultado(SOLICITUDES / (duracion / 1_000_000_000.0),
+                (uso.totalTime(TimeUnit.MILLISECONDS) - usoPrevioMs) / (uso.count() - usosPrevios),
+                (espera.totalTime(TimeUnit.MILLISECONDS) - esperaPreviaMs) / (espera.count() - esperasPrevias));
+    }
+
+    // 80% lecturas por ID, 15% por usuario y 5% creaciones en lote de TAMANO_LOTE préstamos con usuarios nuevos
+    private void ejecutar(String url, int solicitudes, Random random, AtomicLong siguienteUsuario) throws Exception {
+        List<HttpRequest> pedidos = new ArrayList<>(solicitudes);
+        for (int i = 0; i < solicitudes; i++) {
+            int operacion = random.nextInt(100);
+            if (operacion < 80) {
+                pedidos.add(HttpRequest.newBuilder(URI.create(url + "/" + (1 + random.nextInt(PRESTAMOS)))).GET().build());
+            } else if (operacion < 95) {
+                pedidos.add(HttpRequest.newBuilder(URI.create(url + "/usuario/" + (1 + random.nextInt(USUARIOS)))).GET().build());
+            } else {
+                StringBuilder lote = new StringBuilder("[");
+                for (int j = 0; j < TAMANO_LOTE; j++) {
+                    long usuarioId = siguienteUsuario.getAndIncrement();
+                    lote.append(j == 0 ? "" : ",").append("{\"usuarioId\":").append(usuarioId)
+                            .append(",\"libroId\":").append(usuarioId).append('}');
+                }
+                pedidos.add(HttpRequest.newBuilder(URI.create(url + "/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(lote.append(']').toString()))
+                        .build());
+            }
+        }
+
+        ExecutorService clientes = Executors.newFixedThreadPool(CLIENTES_CONCURRENTES);
+        try {
+            List<Future<Integer>> respuestas = new ArrayList<>(solicitudes);
+            for (HttpRequest pedido : pedidos) {
+                respuestas.add(clientes.submit(() -> cliente.send(pedido, HttpResponse.BodyHandlers.discarding()).statusCode()));
+            }
+            for (Future<Integer> respuesta : respuestas) {
+                int estado = respuesta.get(2, TimeUnit.MINUTES);
+                assertEquals(200, estado);
+            }
+        } finally {
+            clientes.shutdownNow();
+        }
+    }
+
+    private void sembrar(JdbcTemplate jdbcTemplate) {
+        Timestamp fecha = Timestamp.from(Instant.now());
+        List<Object[]> filas = new ArrayList<>(PRESTAMOS);
+        for (long id = 1; id <= PRESTAMOS; id++) {
+            filas.add(new Object[]{id, 1 + id % USUARIOS, id, fecha, "D"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO prestamos (id, usuario_id, libro_id, fecha_prestamo, estado) " +
+                "VALUES (?, ?, ?, ?, ?)", filas);
+        // Los préstamos creados en la prueba toman IDs posteriores a los sembrados
+        jdbcTemplate.update("UPDATE prestamos_seq SET next_val = ?", PRESTAMOS + 1);
+    }
+
+    // La misma base para ambos perfiles, con el esquema recreado en cada corrida. Las cachés de Hibernate se apagan
+    // para que las lecturas lleguen a MySQL
+    private ConfigurableApplicationContext iniciar(String perfil) {
+        return new SpringApplicationBuilder(LoanServiceApplication.class).run(
+                "--spring.profiles.active=" + perfil,
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--spring.devtools.restart.enabled=false",
+                "--spring.datasource.url=" + urlBase,
+                "--spring.datasource.username=" + usuarioBase,
+                "--spring.datasource.password=" + claveBase,
+                "--spring.r2dbc.url=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                "--servicios.usuarios.url=" + urlServicios,
+                "--servicios.libros.url=" + urlServicios);
+    }
+
+    private record Resultado(double rps, double usoMedioMs, double esperaMediaMs) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.libreriaSanSebastian.loanService.LoadTest;
+
+import com.libreriaSanSebastian.loanService.LoanServiceApplication;
+import com.libreriaSanSebastian.loanService.service.PrestamoService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Ejecuta la misma mezcla de operaciones, mayoritariamente lecturas de préstamos por ID y por usuario con unos pocos
+// usuarios muy consultados, con y sin la caché de segundo nivel y de consultas, y compara las sentencias JDBC enviadas
+// a la base (estadísticas de Hibernate). Ejecutar con: ./mvnw -Pload test
+@Tag("load")
+class PrestamoCacheBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PrestamoCacheBenchmarkTest.class);
+
+    private static final int USUARIOS = 2_000;
+    private static final int PRESTAMOS_POR_USUARIO = 5;
+    private static final int OPERACIONES = 20_000;
+    // Porcentajes de la mezcla: el resto son lecturas por usuario
+    private static final int PORCENTAJE_POR_ID = 70;
+    private static final int PORCENTAJE_DEVOLUCIONES = 2;
+
+    @Test
+    void testLecturasConYSinCache() {
+        Resultado sinCache;
+        try (ConfigurableApplicationContext contexto = iniciar(false)) {
+            sinCache = medir(contexto);
+        }
+        Resultado conCache;
+        try (ConfigurableApplicationContext contexto = iniciar(true)) {
+            conCache = medir(contexto);
+        }
+
+        log.info("Sin caché: %d sentencias, %d ms".formatted(sinCache.sentencias(), sinCache.milisegundos()));
+        log.info("Con caché: %d sentencias, %d ms (aciertos: %.0f%% entidades, %.0f%% consultas)".formatted(
+                conCache.sentencias(), conCache.milisegundos(),
+                conCache.aciertosEntidades() * 100, conCache.aciertosConsultas() * 100));
+
+        assertTrue(conCache.sentencias() < sinCache.sentencias());
+        assertTrue(conCache.aciertosEntidades() > 0.5);
+    }
+
+    private Resultado medir(ConfigurableApplicationContext contexto) {
+        sembrar(contexto.getBean(JdbcTemplate.class));
+        PrestamoService prestamoService = contexto.getBean(PrestamoService.class);
+        Statistics estadisticas = contexto.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        // Misma semilla en ambas corridas: la mezcla es idéntica
+        Random random = new Random(42);
+        long siguienteDevolucion = 1;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < OPERACIONES; i++) {
+            // Sesgo hacia los primeros usuarios: pocos usuarios concentran la mayoría de las consultas
+            long usuarioId = 1 + (long) (USUARIOS * Math.pow(random.nextDouble(), 3));
+            int operacion = random.nextInt(100);
+            if (operacion < PORCENTAJE_DEVOLUCIONES) {
+                // Las devoluciones recorren los préstamos en orden para no repetir uno ya devuelto
+                prestamoService.devolverLibro(siguienteDevolucion);
+                siguienteDevolucion += PRESTAMOS_POR_USUARIO;
+            } else if (operacion < PORCENTAJE_DEVOLUCIONES + PORCENTAJE_POR_ID) {
+                long prestamoId = (usuarioId - 1) * PRESTAMOS_POR_USUARIO + 1 + random.nextInt(PRESTAMOS_POR_USUARIO);
+                assertTrue(prestamoService.buscarPorId(prestamoId).isPresent());
+            } else {
+                assertEquals(PRESTAMOS_POR_USUARIO, prestamoService.buscarPorUsuario(usuarioId).size());
+            }
+        }
+        long duracion = System.nanoTime() - inicio;
+
+        return new Resultado(estadisticas.getPrepareStatementCount(), TimeUnit.NANOSECONDS.toMillis(duracion),
+                proporcion(estadisticas.getSecondLevelCacheHitCount(), estadisticas.getSecondLevelCacheMissCount()),
+                proporcion(estadisticas.getQueryCacheHitCount(), estadisticas.getQueryCacheMissCount()));
+    }
+
+    // Préstamos 1..5 del usuario 1, 6..10 del usuario 2, etc., todos activos
+    private void sembrar(JdbcTemplate jdbcTemplate) {
+        Timestamp fecha = Timestamp.from(Instant.now().minus(1, ChronoUnit.DAYS));
+        List<Object[]> filas = new ArrayList<>(USUARIOS * PRESTAMOS_POR_USUARIO);
+        long id = 1;
+        for (long usuarioId = 1; usuarioId <= USUARIOS; usuarioId++) {
+            for (int i = 0; i < PRESTAMOS_POR_USUARIO; i++) {
+                filas.add(new Object[]{id, usuarioId, id, fecha, null, "A"});
+                id++;
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO prestamos (id, usuario_id, libro_id, fecha_prestamo, fecha_devolucion, estado) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", filas);
+    }
+
+    private static double proporcion(long aciertos, long fallos) {
+        return aciertos + fallos == 0 ? 0 : (double) aciertos / (aciertos + fallos);
+    }
+
+    private ConfigurableApplicationContext iniciar(boolean cache) {
+        return new SpringApplicationBuilder(LoanServiceApplication.class).run(
+                "--spring.profiles.active=benchmark",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--spring.devtools.restart.enabled=false",
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=" + cache,
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=" + cache);
+    }
+
+    private record Resultado(long sentencias, long milisegundos, double aciertosEntidades, double aciertosConsultas) {
+    }
+}
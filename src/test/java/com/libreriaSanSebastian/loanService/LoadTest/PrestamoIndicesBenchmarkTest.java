@@ -0,0 +1,138 @@
+package com.libreriaSanSebastian.loanService.LoadTest;
+
+import com.libreriaSanSebastian.loanService.dto.PrestamoResumen;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import net.datafaker.Faker;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Siembra la tabla prestamos con datafaker y compara el plan y la latencia de las consultas por
+// (usuarioId, estado) y (libroId, estado) con y sin los índices de Prestamo. Ejecutar con: ./mvnw -Pload test
+@Tag("load")
+@DataJpaTest
+@ActiveProfiles("benchmark")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PrestamoIndicesBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PrestamoIndicesBenchmarkTest.class);
+
+    private static final int FILAS = 200_000;
+    private static final int USUARIOS = 20_000;
+    private static final int LIBROS = 5_000;
+    private static final int CONSULTAS = 2_000;
+
+    @Autowired
+    private PrestamoRepository prestamoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testConsultasConYSinIndices() {
+        sembrar();
+        Faker faker = new Faker(new Locale("es"), new Random(42));
+        long[] usuarios = new long[CONSULTAS];
+        long[] libros = new long[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            usuarios[i] = faker.number().numberBetween(1, USUARIOS + 1);
+            libros[i] = faker.number().numberBetween(1, LIBROS + 1);
+        }
+
+        String planUsuario = explicar("SELECT id, usuario_id, libro_id, estado FROM prestamos WHERE usuario_id = 1 AND estado = 'A'");
+        String planLibro = explicar("SELECT COUNT(*) FROM prestamos WHERE libro_id = 1 AND estado = 'A'");
+        long conIndiceUsuario = medirPorUsuario(usuarios);
+        long conIndiceLibro = medirPorLibro(libros);
+
+        jdbcTemplate.execute("DROP INDEX idx_prestamos_usuario_estado");
+        jdbcTemplate.execute("DROP INDEX idx_prestamos_libro_estado");
+
+        String planUsuarioSinIndice = explicar("SELECT id, usuario_id, libro_id, estado FROM prestamos WHERE usuario_id = 1 AND estado = 'A'");
+        long sinIndiceUsuario = medirPorUsuario(usuarios);
+        long sinIndiceLibro = medirPorLibro(libros);
+
+        log.info("Plan con índice: {}", planUsuario);
+        log.info("Plan con índice: {}", planLibro);
+        log.info("Plan sin índice: {}", planUsuarioSinIndice);
+        log.info("findByUsuarioIdAndEstado x%d: %d ms con índice, %d ms sin índice".formatted(CONSULTAS,
+                TimeUnit.NANOSECONDS.toMillis(conIndiceUsuario), TimeUnit.NANOSECONDS.toMillis(sinIndiceUsuario)));
+        log.info("countByLibroIdAndEstado x%d: %d ms con índice, %d ms sin índice".formatted(CONSULTAS,
+                TimeUnit.NANOSECONDS.toMillis(conIndiceLibro), TimeUnit.NANOSECONDS.toMillis(sinIndiceLibro)));
+
+        assertTrue(planUsuario.toLowerCase().contains("idx_prestamos_usuario_estado"));
+        assertTrue(planLibro.toLowerCase().contains("idx_prestamos_libro_estado"));
+        assertFalse(planUsuarioSinIndice.toLowerCase().contains("idx_prestamos_usuario_estado"));
+        assertTrue(conIndiceUsuario < sinIndiceUsuario);
+    }
+
+    private void sembrar() {
+        Faker faker = new Faker(new Locale("es"), new Random(7));
+        Instant ahora = Instant.now();
+        List<Object[]> filas = new ArrayList<>(10_000);
+        for (long id = 1; id <= FILAS; id++) {
+            boolean activo = faker.number().numberBetween(0, 10) < 2;
+            Instant fechaPrestamo = ahora.minus(faker.number().numberBetween(0, 365), ChronoUnit.DAYS);
+            filas.add(new Object[]{
+                    id,
+                    (long) faker.number().numberBetween(1, USUARIOS + 1),
+                    (long) faker.number().numberBetween(1, LIBROS + 1),
+                    Timestamp.from(fechaPrestamo),
+                    activo ? null : Timestamp.from(fechaPrestamo.plus(faker.number().numberBetween(1, 30), ChronoUnit.DAYS)),
+                    activo ? "A" : "D"
+            });
+            if (filas.size() == 10_000) {
+                insertar(filas);
+                filas.clear();
+            }
+        }
+        insertar(filas);
+    }
+
+    private void insertar(List<Object[]> filas) {
+        jdbcTemplate.batchUpdate("INSERT INTO prestamos (id, usuario_id, libro_id, fecha_prestamo, fecha_devolucion, estado) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", filas);
+    }
+
+    private String explicar(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    private long medirPorUsuario(long[] usuarios) {
+        long inicio = System.nanoTime();
+        int total = 0;
+        for (long usuarioId : usuarios) {
+            List<PrestamoResumen> activos = prestamoRepository.findByUsuarioIdAndEstado(usuarioId, EstadoPrestamo.ACTIVO);
+            total += activos.size();
+        }
+        assertTrue(total > 0);
+        return System.nanoTime() - inicio;
+    }
+
+    private long medirPorLibro(long[] libros) {
+        long inicio = System.nanoTime();
+        long total = 0;
+        for (long libroId : libros) {
+            total += prestamoRepository.countByLibroIdAndEstado(libroId, EstadoPrestamo.ACTIVO);
+        }
+        assertTrue(total > 0);
+        return System.nanoTime() - inicio;
+    }
+}
@@ -0,0 +1,130 @@
+package com.libreriaSanSebastian.loanService.LoadTest;
+
+import com.libreriaSanSebastian.loanService.config.RestTemplateConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Compara el RestTemplate sin pool (SimpleClientHttpRequestFactory) con el configurado en RestTemplateConfig
+// contra un servidor local que simula el servicio de usuarios. Ejecutar con: ./mvnw -Pload test
+@Tag("load")
+class RestTemplatePoolLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RestTemplatePoolLoadTest.class);
+
+    private static final int CLIENTES_CONCURRENTES = 32;
+    private static final int SOLICITUDES = 5000;
+    private static final long LATENCIA_SERVIDOR_MS = 2;
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private String url;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        byte[] cuerpo = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        hilosServidor = Executors.newFixedThreadPool(64);
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext("/api/v1/usuarios/", exchange -> {
+            try {
+                Thread.sleep(LATENCIA_SERVIDOR_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = exchange.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        });
+        servidor.start();
+        url = "http://127.0.0.1:" + servidor.getAddress().getPort() + "/api/v1/usuarios/1";
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidor.stop(0);
+        hilosServidor.shutdownNow();
+    }
+
+    @Test
+    void testThroughputConPoolVsSinPool() throws Exception {
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "maxConexiones", 200);
+        ReflectionTestUtils.setField(config, "maxConexionesPorRuta", 64);
+        ReflectionTestUtils.setField(config, "timeoutConexionMs", 1000L);
+        ReflectionTestUtils.setField(config, "timeoutLecturaMs", 2000L);
+        ReflectionTestUtils.setField(config, "timeoutPoolMs", 500L);
+        ReflectionTestUtils.setField(config, "keepAliveS", 30L);
+        ReflectionTestUtils.setField(config, "inactividadMaximaS", 30L);
+
+        PoolingHttpClientConnectionManager pool = config.httpConnectionManager();
+        try (CloseableHttpClient httpClient = config.httpClient(pool)) {
+            RestTemplate sinPool = new RestTemplate();
+            RestTemplate conPool = config.restTemplate(httpClient);
+
+            // Calentamiento de JIT y conexiones
+            medir(sinPool, 500);
+            medir(conPool, 500);
+
+            double rpsSinPool = medir(sinPool, SOLICITUDES);
+            double rpsConPool = medir(conPool, SOLICITUDES);
+
+            log.info("RestTemplate sin pool: %.0f req/s".formatted(rpsSinPool));
+            log.info("RestTemplate con pool: %.0f req/s (%.2fx)".formatted(rpsConPool, rpsConPool / rpsSinPool));
+            log.info("Pool: {}", pool.getTotalStats());
+
+            assertEquals(0, pool.getTotalStats().getLeased());
+            assertTrue(pool.getTotalStats().getAvailable() > 0);
+            assertTrue(pool.getTotalStats().getAvailable() <= CLIENTES_CONCURRENTES);
+        }
+    }
+
+    private double medir(RestTemplate restTemplate, int solicitudes) throws Exception {
+        ExecutorService clientes = Executors.newFixedThreadPool(CLIENTES_CONCURRENTES);
+        AtomicInteger errores = new AtomicInteger();
+        List<Future<?>> tareas = new ArrayList<>();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < CLIENTES_CONCURRENTES; i++) {
+            tareas.add(clientes.submit(() -> {
+                for (int j = 0; j < solicitudes / CLIENTES_CONCURRENTES; j++) {
+                    try {
+                        restTemplate.getForEntity(url, Object.class);
+                    } catch (RuntimeException e) {
+                        errores.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(2, TimeUnit.MINUTES);
+        }
+        long duracion = System.nanoTime() - inicio;
+        clientes.shutdown();
+
+        assertEquals(0, errores.get());
+        return solicitudes / (duracion / 1_000_000_000.0);
+    }
+}
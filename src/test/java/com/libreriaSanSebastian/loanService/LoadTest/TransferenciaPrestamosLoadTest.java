@@ -0,0 +1,144 @@
+package com.libreriaSanSebastian.loanService.LoadTest;
+
+import com.libreriaSanSebastian.loanService.LoanServiceApplication;
+import com.libreriaSanSebastian.loanService.service.TransferenciaPrestamosService;
+import net.datafaker.Faker;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Siembra la tabla prestamos con datafaker y mide filas por segundo de la exportación CSV, NDJSON y CSV comprimido, y de
+// la importación del CSV exportado. Ejecutar con: ./mvnw -Pload test
+@Tag("load")
+class TransferenciaPrestamosLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferenciaPrestamosLoadTest.class);
+
+    private static final int FILAS = 200_000;
+    private static final int USUARIOS = 20_000;
+    private static final int LIBROS = 5_000;
+
+    @Test
+    void testExportarEImportar() throws Exception {
+        try (ConfigurableApplicationContext contexto = iniciar()) {
+            JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+            sembrar(jdbcTemplate);
+            TransferenciaPrestamosService transferencia = contexto.getBean(TransferenciaPrestamosService.class);
+
+            Contador planoCsv = new Contador();
+            Medicion csv = exportar(transferencia, TransferenciaPrestamosService.Formato.CSV, planoCsv);
+            Contador planoNdjson = new Contador();
+            Medicion ndjson = exportar(transferencia, TransferenciaPrestamosService.Formato.NDJSON, planoNdjson);
+            Contador comprimido = new Contador();
+            GZIPOutputStream gzip = new GZIPOutputStream(comprimido, 64 * 1024);
+            Medicion csvGzip = exportar(transferencia, TransferenciaPrestamosService.Formato.CSV, gzip);
+            gzip.finish();
+
+            ByteArrayOutputStream exportado = new ByteArrayOutputStream();
+            transferencia.exportar(TransferenciaPrestamosService.Formato.CSV, false, exportado);
+            long inicio = System.nanoTime();
+            long importados = transferencia.importar(TransferenciaPrestamosService.Formato.CSV,
+                    new ByteArrayInputStream(exportado.toByteArray()));
+            long importacion = System.nanoTime() - inicio;
+
+            imprimir("Exportación CSV", csv.filas(), csv.nanos(), planoCsv.bytes);
+            imprimir("Exportación NDJSON", ndjson.filas(), ndjson.nanos(), planoNdjson.bytes);
+            imprimir("Exportación CSV gzip", csvGzip.filas(), csvGzip.nanos(), comprimido.bytes);
+            imprimir("Importación CSV", importados, importacion, exportado.size());
+
+            assertEquals(FILAS, csv.filas());
+            assertEquals(FILAS, ndjson.filas());
+            assertEquals(FILAS, importados);
+            assertEquals(2L * FILAS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM prestamos", Long.class));
+            assertTrue(comprimido.bytes < planoCsv.bytes);
+        }
+    }
+
+    private static Medicion exportar(TransferenciaPrestamosService transferencia, TransferenciaPrestamosService.Formato formato,
+                                     OutputStream salida) throws Exception {
+        long inicio = System.nanoTime();
+        long filas = transferencia.exportar(formato, false, salida);
+        return new Medicion(filas, System.nanoTime() - inicio);
+    }
+
+    private static void imprimir(String nombre, long filas, long nanos, long bytes) {
+        log.info("%s: %d filas en %d ms (%.0f filas/s, %.1f MB)".formatted(nombre, filas,
+                TimeUnit.NANOSECONDS.toMillis(nanos), filas * 1e9 / nanos, bytes / 1e6));
+    }
+
+    private void sembrar(JdbcTemplate jdbcTemplate) {
+        Faker faker = new Faker(new Locale("es"), new Random(7));
+        Instant ahora = Instant.now();
+        List<Object[]> filas = new ArrayList<>(10_000);
+        for (long id = 1; id <= FILAS; id++) {
+            boolean activo = faker.number().numberBetween(0, 10) < 2;
+            Instant fechaPrestamo = ahora.minus(faker.number().numberBetween(0, 365), ChronoUnit.DAYS);
+            filas.add(new Object[]{
+                    id,
+                    (long) faker.number().numberBetween(1, USUARIOS + 1),
+                    (long) faker.number().numberBetween(1, LIBROS + 1),
+                    Timestamp.from(fechaPrestamo),
+                    activo ? null : Timestamp.from(fechaPrestamo.plus(faker.number().numberBetween(1, 30), ChronoUnit.DAYS)),
+                    activo ? "A" : "D"
+            });
+            if (filas.size() == 10_000) {
+                jdbcTemplate.batchUpdate("INSERT INTO prestamos (id, usuario_id, libro_id, fecha_prestamo, fecha_devolucion, estado) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)", filas);
+                filas.clear();
+            }
+        }
+        if (!filas.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO prestamos (id, usuario_id, libro_id, fecha_prestamo, fecha_devolucion, estado) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)", filas);
+        }
+        // Los IDs que asigna la importación siguen a los sembrados: con el optimizador pooled (bloques de 50) el valor de
+        // la secuencia es el límite superior del bloque
+        jdbcTemplate.execute("ALTER SEQUENCE prestamos_seq RESTART WITH " + (FILAS + 100));
+    }
+
+    private ConfigurableApplicationContext iniciar() {
+        return new SpringApplicationBuilder(LoanServiceApplication.class).run(
+                "--spring.profiles.active=benchmark",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--spring.devtools.restart.enabled=false");
+    }
+
+    private record Medicion(long filas, long nanos) {
+    }
+
+    // Descarta lo escrito y solo cuenta los bytes, para medir la exportación sin el costo de guardar el resultado
+    private static class Contador extends OutputStream {
+
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
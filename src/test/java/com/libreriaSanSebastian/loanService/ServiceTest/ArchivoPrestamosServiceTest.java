@@ -0,0 +1,118 @@
+package com.libreriaSanSebastian.loanService.ServiceTest;
+
+import com.libreriaSanSebastian.loanService.dto.PrestamoCursor;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import com.libreriaSanSebastian.loanService.service.ArchivoPrestamosService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArchivoPrestamosServiceTest {
+
+    @Mock
+    private PrestamoRepository prestamoRepository;
+
+    @Mock
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private ArchivoPrestamosService archivo;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final Instant fecha = Instant.parse("2023-01-01T00:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(archivo, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(archivo, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(archivo, "edad", Duration.ofDays(365));
+        ReflectionTestUtils.setField(archivo, "tamanoBloque", 3);
+    }
+
+    private PrestamoCursor cursor(Long id) {
+        PrestamoCursor cursor = mock(PrestamoCursor.class);
+        when(cursor.getId()).thenReturn(id);
+        lenient().when(cursor.getFechaPrestamo()).thenReturn(fecha);
+        return cursor;
+    }
+
+    @Test
+    void testArchivar_PorBloques() {
+        // Given: dos bloques de devueltos con más de un año
+        List<PrestamoCursor> primero = List.of(cursor(1L), cursor(2L), cursor(3L));
+        List<PrestamoCursor> segundo = List.of(cursor(5L));
+        when(prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(eq(EstadoPrestamo.DEVUELTO), any(Instant.class),
+                eq(Instant.EPOCH), eq(0L), any(Limit.class)))
+                .thenReturn(primero);
+        when(prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(eq(EstadoPrestamo.DEVUELTO), any(Instant.class),
+                eq(fecha), eq(3L), any(Limit.class)))
+                .thenReturn(segundo);
+        when(prestamoArchivadoRepository.copiarDesdePrestamos(List.of(1L, 2L, 3L), EstadoPrestamo.DEVUELTO)).thenReturn(3);
+        when(prestamoRepository.eliminarTodos(List.of(1L, 2L, 3L), EstadoPrestamo.DEVUELTO)).thenReturn(3);
+        when(prestamoArchivadoRepository.copiarDesdePrestamos(List.of(5L), EstadoPrestamo.DEVUELTO)).thenReturn(1);
+        when(prestamoRepository.eliminarTodos(List.of(5L), EstadoPrestamo.DEVUELTO)).thenReturn(1);
+
+        // When
+        long archivados = archivo.archivar();
+
+        // Then
+        assertEquals(4, archivados);
+        assertEquals(4.0, meterRegistry.counter("prestamos.archivados").count());
+        ArgumentCaptor<Instant> limite = ArgumentCaptor.forClass(Instant.class);
+        verify(prestamoRepository, times(3)).findCursorByEstadoAndFechaPrestamoBefore(eq(EstadoPrestamo.DEVUELTO),
+                limite.capture(), any(Instant.class), anyLong(), any(Limit.class));
+        assertTrue(limite.getValue().isBefore(Instant.now().minus(Duration.ofDays(364))));
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void testArchivar_BloqueInconsistente_SeDeshaceYSigue() {
+        // Given: el préstamo 2 se eliminó entre la copia y el borrado
+        List<PrestamoCursor> primero = List.of(cursor(1L), cursor(2L), cursor(3L));
+        List<PrestamoCursor> segundo = List.of(cursor(4L));
+        when(prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(eq(EstadoPrestamo.DEVUELTO), any(Instant.class),
+                eq(Instant.EPOCH), eq(0L), any(Limit.class)))
+                .thenReturn(primero);
+        when(prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(eq(EstadoPrestamo.DEVUELTO), any(Instant.class),
+                eq(fecha), eq(3L), any(Limit.class)))
+                .thenReturn(segundo);
+        when(prestamoArchivadoRepository.copiarDesdePrestamos(List.of(1L, 2L, 3L), EstadoPrestamo.DEVUELTO)).thenReturn(3);
+        when(prestamoRepository.eliminarTodos(List.of(1L, 2L, 3L), EstadoPrestamo.DEVUELTO)).thenReturn(2);
+        when(prestamoArchivadoRepository.copiarDesdePrestamos(List.of(4L), EstadoPrestamo.DEVUELTO)).thenReturn(1);
+        when(prestamoRepository.eliminarTodos(List.of(4L), EstadoPrestamo.DEVUELTO)).thenReturn(1);
+
+        // When
+        long archivados = archivo.archivar();
+
+        // Then
+        assertEquals(1, archivados);
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+        assertEquals(1.0, meterRegistry.counter("prestamos.archivo.bloques-omitidos").count());
+    }
+}
@@ -0,0 +1,328 @@
+package com.libreriaSanSebastian.loanService.ServiceTest;
+
+import com.libreriaSanSebastian.loanService.client.LibroClient;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.EventoStock;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.repository.EventoStockRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import com.libreriaSanSebastian.loanService.service.DespachoStockService;
+import com.libreriaSanSebastian.loanService.service.EstadisticasPrestamosService;
+import com.libreriaSanSebastian.loanService.service.IdempotenciaService;
+import com.libreriaSanSebastian.loanService.service.LimitePrestamosService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DespachoStockServiceTest {
+
+    @Mock
+    private EventoStockRepository eventoStockRepository;
+
+    @Mock
+    private PrestamoRepository prestamoRepository;
+
+    @Mock
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @Mock
+    private LibroClient libroClient;
+
+    @Mock
+    private LimitePrestamosService limitePrestamos;
+
+    @Mock
+    private EstadisticasPrestamosService estadisticas;
+
+    @Mock
+    private IdempotenciaService idempotencia;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private org.hibernate.Cache cacheHibernate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private DespachoStockService despachoStockService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(despachoStockService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(despachoStockService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(despachoStockService, "tamanoLote", 500);
+        ReflectionTestUtils.setField(despachoStockService, "reintentoInicial", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(despachoStockService, "reintentoMaximo", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(despachoStockService, "reserva", Duration.ofMinutes(5));
+        lenient().when(entityManagerFactory.getCache()).thenReturn(cache);
+        lenient().when(cache.unwrap(org.hibernate.Cache.class)).thenReturn(cacheHibernate);
+    }
+
+    private EventoStock evento(long id, long libroId, int cantidad) {
+        Instant ahora = Instant.now();
+        return new EventoStock(id, libroId, cantidad, id, ahora, 0, ahora, false, null, null);
+    }
+
+    private void pendientes(EventoStock... eventos) {
+        when(eventoStockRepository.findByFallidoFalseAndProximoIntentoLessThanEqualOrderByIdAsc(any(Instant.class), any(Limit.class)))
+                .thenReturn(List.of(eventos));
+        // La segunda transacción vuelve a leer los eventos que no se enviaron
+        lenient().when(eventoStockRepository.findAllById(anyIterable())).thenAnswer(invocacion -> {
+            Collection<?> ids = (Collection<?>) invocacion.getArgument(0);
+            return List.of(eventos).stream().filter(evento -> ids.contains(evento.getId())).toList();
+        });
+    }
+
+    @Test
+    void testDespachar_AgrupaPorLibroYSentido() {
+        // Given: tres préstamos y una devolución del libro 1, y un préstamo y su devolución del libro 2
+        EventoStock[] eventos = {
+                evento(1, 1, -1), evento(2, 1, -1), evento(3, 2, -1),
+                evento(4, 1, -1), evento(5, 2, 1), evento(6, 1, 1)
+        };
+        pendientes(eventos);
+
+        // When
+        despachoStockService.despachar();
+
+        // Then: descuentos y reposiciones van en llamadas distintas; la clave es el menor y el mayor ID del grupo
+        verify(libroClient, times(1)).ajustarStock(1L, -3, "prestamos-stock-1-4");
+        verify(libroClient, times(1)).ajustarStock(2L, -1, "prestamos-stock-3-3");
+        verify(libroClient, times(1)).ajustarStock(2L, 1, "prestamos-stock-5-5");
+        verify(libroClient, times(1)).ajustarStock(1L, 1, "prestamos-stock-6-6");
+        verify(eventoStockRepository, times(1)).deleteAllByIdInBatch(List.of(1L, 2L, 4L, 3L, 5L, 6L));
+        assertEquals(4L, eventos[0].getLote());
+        assertEquals(6L, eventos[5].getLote());
+    }
+
+    @Test
+    void testDespachar_LlamadasFueraDeLaTransaccion() {
+        // Given
+        EventoStock evento = evento(1, 1, -1);
+        pendientes(evento);
+        doAnswer(invocacion -> {
+            // Then: la transacción que aparta los eventos ya terminó y quedan reservados
+            verify(transactionManager, times(1)).commit(any());
+            assertTrue(evento.getProximoIntento().isAfter(Instant.now().plus(Duration.ofMinutes(4))));
+            return null;
+        }).when(libroClient).ajustarStock(1L, -1, "prestamos-stock-1-1");
+
+        // When
+        despachoStockService.despachar();
+
+        // Then: una transacción para apartarlos y otra para borrar los enviados
+        verify(libroClient, times(1)).ajustarStock(1L, -1, "prestamos-stock-1-1");
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void testDespachar_ReenvioConservaLaClave() {
+        // Given: eventos de una ronda anterior que no llegó a confirmar el envío
+        EventoStock primero = evento(7, 1, -1);
+        EventoStock segundo = evento(9, 1, -1);
+        primero.setLote(9L);
+        segundo.setLote(9L);
+        EventoStock nuevo = evento(12, 1, -1);
+        pendientes(primero, segundo, nuevo);
+
+        // When
+        despachoStockService.despachar();
+
+        // Then: el grupo anterior se repite igual y el evento nuevo va en otro
+        verify(libroClient, times(1)).ajustarStock(1L, -2, "prestamos-stock-7-9");
+        verify(libroClient, times(1)).ajustarStock(1L, -1, "prestamos-stock-12-12");
+    }
+
+    @Test
+    void testDespachar_ErrorTransitorioReprograma() {
+        // Given
+        EventoStock evento = evento(1, 1, -1);
+        pendientes(evento);
+        doThrow(new ServicioNoDisponibleException("Servicio de libros no disponible temporalmente", null))
+                .when(libroClient).ajustarStock(1L, -1, "prestamos-stock-1-1");
+
+        // When
+        despachoStockService.despachar();
+
+        // Then
+        assertEquals(1, evento.getIntentos());
+        assertFalse(evento.isFallido());
+        assertTrue(evento.getProximoIntento().isAfter(Instant.now()));
+        assertTrue(evento.getProximoIntento().isBefore(Instant.now().plus(Duration.ofMinutes(1))));
+        assertTrue(evento.getUltimoError().contains("no disponible"));
+        assertEquals(1L, evento.getLote());
+        verify(eventoStockRepository, times(1)).deleteAllByIdInBatch(List.of());
+    }
+
+    @Test
+    void testDespachar_DescuentoRechazadoAnulaElPrestamo() {
+        // Given: el servicio rechaza el descuento del préstamo 1, que sigue activo
+        EventoStock evento = evento(1, 1, -1);
+        pendientes(evento);
+        Prestamo prestamo = new Prestamo(1L, 10L, 1L, Instant.now(), null, EstadoPrestamo.ACTIVO);
+        doThrow(new HttpClientErrorException(HttpStatus.CONFLICT))
+                .when(libroClient).ajustarStock(1L, -1, "prestamos-stock-1-1");
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.of(prestamo));
+        when(prestamoRepository.anular(1L)).thenReturn(1);
+
+        // When
+        despachoStockService.despachar();
+
+        // Then
+        assertTrue(evento.isFallido());
+        assertEquals(1, evento.getIntentos());
+        verify(limitePrestamos, times(1)).liberar(10L);
+        verify(estadisticas, times(1)).registrarEliminacion(prestamo);
+        verify(cache, times(1)).evict(Prestamo.class, 1L);
+        verify(idempotencia, times(1)).olvidarPrestamo(1L);
+        verify(cacheHibernate, times(1)).evictQueryRegion("prestamos-por-usuario");
+        assertEquals(1.0, meterRegistry.counter("prestamos.outbox.anulados").count());
+    }
+
+    @Test
+    void testDespachar_DescuentoRechazadoDePrestamoDevuelto() {
+        // Given: el préstamo ya fue devuelto y su reposición sigue en el outbox
+        EventoStock evento = evento(1, 1, -1);
+        pendientes(evento);
+        doThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND))
+                .when(libroClient).ajustarStock(1L, -1, "prestamos-stock-1-1");
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.of(
+                new Prestamo(1L, 10L, 1L, Instant.now(), Instant.now(), EstadoPrestamo.DEVUELTO)));
+        when(prestamoRepository.anular(1L)).thenReturn(0);
+        when(eventoStockRepository.eliminarReposiciones(1L)).thenReturn(1);
+
+        // When
+        despachoStockService.despachar();
+
+        // Then: se descarta la reposición y el préstamo queda
+        assertTrue(evento.isFallido());
+        verify(eventoStockRepository, times(1)).eliminarReposiciones(1L);
+        verifyNoInteractions(limitePrestamos, estadisticas);
+        assertEquals(0.0, meterRegistry.counter("prestamos.outbox.sin-compensar").count());
+    }
+
+    @Test
+    void testDespachar_DescuentoRechazadoDePrestamoArchivado() {
+        // Given: el préstamo se archivó y su reposición ya se envió
+        EventoStock evento = evento(1, 1, -1);
+        pendientes(evento);
+        doThrow(new HttpClientErrorException(HttpStatus.CONFLICT))
+                .when(libroClient).ajustarStock(1L, -1, "prestamos-stock-1-1");
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.empty());
+        when(eventoStockRepository.eliminarReposiciones(1L)).thenReturn(0);
+        when(prestamoArchivadoRepository.existsById(1L)).thenReturn(true);
+
+        // When
+        despachoStockService.despachar();
+
+        // Then: queda para revisión manual
+        assertTrue(evento.isFallido());
+        verify(prestamoRepository, never()).anular(anyLong());
+        assertEquals(1.0, meterRegistry.counter("prestamos.outbox.sin-compensar").count());
+        assertEquals(0.0, meterRegistry.counter("prestamos.outbox.sin-prestamo").count());
+    }
+
+    @Test
+    void testDespachar_DescuentoRechazadoDePrestamoEliminado() {
+        // Given: el préstamo ya no está ni en prestamos ni en el archivo
+        EventoStock evento = evento(1, 1, -1);
+        pendientes(evento);
+        doThrow(new HttpClientErrorException(HttpStatus.CONFLICT))
+                .when(libroClient).ajustarStock(1L, -1, "prestamos-stock-1-1");
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.empty());
+        when(eventoStockRepository.eliminarReposiciones(1L)).thenReturn(0);
+        when(prestamoArchivadoRepository.existsById(1L)).thenReturn(false);
+
+        // When
+        despachoStockService.despachar();
+
+        // Then
+        assertTrue(evento.isFallido());
+        assertEquals(1.0, meterRegistry.counter("prestamos.outbox.sin-prestamo").count());
+        assertEquals(0.0, meterRegistry.counter("prestamos.outbox.sin-compensar").count());
+    }
+
+    @Test
+    void testDespachar_DescuentoRechazadoDeVariosSeSepara() {
+        // Given
+        EventoStock primero = evento(1, 1, -1);
+        EventoStock segundo = evento(2, 1, -1);
+        pendientes(primero, segundo);
+        doThrow(new HttpClientErrorException(HttpStatus.CONFLICT))
+                .when(libroClient).ajustarStock(1L, -2, "prestamos-stock-1-2");
+
+        // When
+        despachoStockService.despachar();
+
+        // Then: cada préstamo queda en su propio grupo para la próxima ronda, sin anular nada todavía
+        assertFalse(primero.isFallido());
+        assertEquals(1L, primero.getLote());
+        assertEquals(2L, segundo.getLote());
+        assertFalse(primero.getProximoIntento().isAfter(Instant.now()));
+        verifyNoInteractions(prestamoRepository);
+    }
+
+    @Test
+    void testDespachar_ReposicionRechazadaMarcaFallido() {
+        // Given
+        EventoStock evento = evento(1, 1, 1);
+        pendientes(evento);
+        doThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND))
+                .when(libroClient).ajustarStock(1L, 1, "prestamos-stock-1-1");
+
+        // When
+        despachoStockService.despachar();
+
+        // Then
+        assertTrue(evento.isFallido());
+        verifyNoInteractions(prestamoRepository);
+    }
+
+    @Test
+    void testDespachar_SinPendientes() {
+        // Given
+        pendientes();
+
+        // When
+        despachoStockService.despachar();
+
+        // Then
+        verifyNoInteractions(libroClient);
+        verify(eventoStockRepository, never()).deleteAllByIdInBatch(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+}
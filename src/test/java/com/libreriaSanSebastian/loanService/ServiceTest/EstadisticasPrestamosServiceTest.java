@@ -0,0 +1,164 @@
+package com.libreriaSanSebastian.loanService.ServiceTest;
+
+import com.libreriaSanSebastian.loanService.dto.EstadisticasPrestamos;
+import com.libreriaSanSebastian.loanService.dto.PrestamoConFechas;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.modelo.PrestamoArchivado;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import com.libreriaSanSebastian.loanService.service.EstadisticasPrestamosService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EstadisticasPrestamosServiceTest {
+
+    @Mock
+    private PrestamoRepository prestamoRepository;
+
+    @Mock
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @InjectMocks
+    private EstadisticasPrestamosService estadisticas;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private Instant ahora;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(estadisticas, "meterRegistry", meterRegistry);
+        ahora = Instant.now();
+    }
+
+    private PrestamoConFechas fila(Long usuarioId, Long libroId, EstadoPrestamo estado, Instant fechaPrestamo,
+                                   Instant fechaDevolucion) {
+        PrestamoConFechas fila = mock(PrestamoConFechas.class);
+        when(fila.getUsuarioId()).thenReturn(usuarioId);
+        when(fila.getLibroId()).thenReturn(libroId);
+        when(fila.getEstado()).thenReturn(estado);
+        when(fila.getFechaPrestamo()).thenReturn(fechaPrestamo);
+        when(fila.getFechaDevolucion()).thenReturn(fechaDevolucion);
+        return fila;
+    }
+
+    private Prestamo prestamo(Long usuarioId, Long libroId) {
+        Prestamo prestamo = new Prestamo();
+        prestamo.setUsuarioId(usuarioId);
+        prestamo.setLibroId(libroId);
+        prestamo.setFechaPrestamo(ahora);
+        prestamo.setEstado(EstadoPrestamo.ACTIVO);
+        return prestamo;
+    }
+
+    @Test
+    void testInicializar_UnSoloRecorrido() {
+        // Given: dos préstamos sin devolver del libro 10 y uno devuelto tras 2 días
+        PrestamoConFechas activo = fila(1L, 10L, EstadoPrestamo.ACTIVO, ahora, null);
+        PrestamoConFechas vencido = fila(1L, 10L, EstadoPrestamo.VENCIDO, ahora.minus(Duration.ofDays(20)), null);
+        PrestamoConFechas devuelto = fila(2L, 20L, EstadoPrestamo.DEVUELTO,
+                ahora.minus(Duration.ofDays(3)), ahora.minus(Duration.ofDays(1)));
+        when(devuelto.getId()).thenReturn(3L);
+        when(prestamoRepository.findConFechasDespuesDe(eq(0L), any(Limit.class))).thenReturn(List.of(activo, vencido, devuelto));
+
+        // When
+        estadisticas.inicializar();
+        EstadisticasPrestamos resultado = estadisticas.consultar(30, 10);
+
+        // Then
+        assertEquals(3, resultado.getTotal());
+        assertEquals(2, resultado.getSinDevolver());
+        assertEquals(2.0, meterRegistry.get("prestamos.sin-devolver").gauge().value());
+        assertEquals(1, resultado.getDevueltos());
+        assertEquals(48.0, resultado.getDuracionPromedioHoras(), 0.001);
+        assertEquals(1L, resultado.getDuracionDevueltos().get("1-3"));
+        assertEquals(List.of(new EstadisticasPrestamos.Conteo(10L, 2)), resultado.getLibrosConMasActivos());
+        assertEquals(List.of(new EstadisticasPrestamos.Conteo(1L, 2), new EstadisticasPrestamos.Conteo(2L, 1)),
+                resultado.getUsuariosConMasPrestamos());
+        assertEquals(30, resultado.getPorDia().size());
+        assertEquals(LocalDate.ofInstant(ahora, ZoneOffset.UTC), resultado.getPorDia().get(0).getFecha());
+        // El recorrido sigue desde el último ID hasta un bloque vacío
+        verify(prestamoRepository, times(1)).findConFechasDespuesDe(eq(3L), any(Limit.class));
+    }
+
+    @Test
+    void testCrearYDevolver_SinLeerLaBase() {
+        // Given: tabla vacía
+        estadisticas.inicializar();
+        Prestamo prestamo = prestamo(1L, 10L);
+
+        // When
+        estadisticas.registrarCreacion(prestamo);
+        estadisticas.registrarDevolucion(10L, prestamo.getFechaPrestamo(), prestamo.getFechaPrestamo().plus(Duration.ofHours(5)));
+        EstadisticasPrestamos resultado = estadisticas.consultar(1, 10);
+
+        // Then
+        assertEquals(1, resultado.getTotal());
+        assertEquals(0, resultado.getSinDevolver());
+        assertEquals(1, resultado.getDevueltos());
+        assertEquals(5.0, resultado.getDuracionPromedioHoras(), 0.001);
+        assertEquals(1L, resultado.getDuracionDevueltos().get("0-1"));
+        assertTrue(resultado.getLibrosConMasActivos().isEmpty());
+        assertEquals(1, resultado.getPorDia().get(0).getPrestados());
+        verify(prestamoRepository, times(1)).findConFechasDespuesDe(eq(0L), any(Limit.class));
+        verifyNoMoreInteractions(prestamoRepository);
+    }
+
+    @Test
+    void testEliminar_RestaLoQueAportaba() {
+        // Given: tabla vacía
+        estadisticas.inicializar();
+        Prestamo prestamo = prestamo(1L, 10L);
+        estadisticas.registrarCreacion(prestamo);
+        estadisticas.registrarCreacion(prestamo(2L, 10L));
+
+        // When
+        estadisticas.registrarEliminacion(prestamo);
+        EstadisticasPrestamos resultado = estadisticas.consultar(1, 10);
+
+        // Then
+        assertEquals(1, resultado.getTotal());
+        assertEquals(1, resultado.getSinDevolver());
+        assertEquals(List.of(new EstadisticasPrestamos.Conteo(10L, 1)), resultado.getLibrosConMasActivos());
+        assertEquals(List.of(new EstadisticasPrestamos.Conteo(2L, 1)), resultado.getUsuariosConMasPrestamos());
+        assertEquals(1, resultado.getPorDia().get(0).getPrestados());
+    }
+
+    @Test
+    void testConsultar_TopConEmpatesPorIdMenor() {
+        // Given: libro 30 con 3 préstamos, libros 10 y 20 con 2 cada uno
+        estadisticas.inicializar();
+        long usuarioId = 1;
+        for (long libroId : new long[]{20, 30, 10, 30, 20, 30, 10}) {
+            estadisticas.registrarCreacion(prestamo(usuarioId++, libroId));
+        }
+
+        // When
+        EstadisticasPrestamos resultado = estadisticas.consultar(1, 2);
+
+        // Then
+        assertEquals(List.of(new EstadisticasPrestamos.Conteo(30L, 3), new EstadisticasPrestamos.Conteo(10L, 2)),
+                resultado.getLibrosConMasActivos());
+        assertEquals(2, resultado.getUsuariosConMasPrestamos().size());
+    }
+}
@@ -0,0 +1,219 @@
+package com.libreriaSanSebastian.loanService.ServiceTest;
+
+import com.libreriaSanSebastian.loanService.dto.PrestamoIdempotente;
+import com.libreriaSanSebastian.loanService.exception.ClaveIdempotenciaEnUsoException;
+import com.libreriaSanSebastian.loanService.exception.ClaveIdempotenciaReutilizadaException;
+import com.libreriaSanSebastian.loanService.exception.PrestamoEliminadoException;
+import com.libreriaSanSebastian.loanService.modelo.ClaveIdempotencia;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.modelo.PrestamoArchivado;
+import com.libreriaSanSebastian.loanService.repository.ClaveIdempotenciaRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import com.libreriaSanSebastian.loanService.service.IdempotenciaService;
+import com.libreriaSanSebastian.loanService.service.PrestamoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotenciaServiceTest {
+
+    @Mock
+    private PrestamoService prestamoService;
+
+    @Mock
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+
+    @Mock
+    private PrestamoRepository prestamoRepository;
+
+    @Mock
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @InjectMocks
+    private IdempotenciaService idempotenciaService;
+
+    private Prestamo creado;
+
+    @BeforeEach
+    void setUp() {
+        creado = new Prestamo(10L, 1L, 1L, Instant.now(), null, EstadoPrestamo.ACTIVO);
+
+        ReflectionTestUtils.setField(idempotenciaService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(idempotenciaService, "ttl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(idempotenciaService, "maxEntradas", 100L);
+        ReflectionTestUtils.setField(idempotenciaService, "reservaMaxima", Duration.ofMinutes(5));
+        idempotenciaService.inicializar();
+    }
+
+    // Simula la creación: invoca alGuardar como lo haría PrestamoService dentro de su transacción
+    private void crearDevuelve(Prestamo prestamo) {
+        when(prestamoService.crearPrestamo(any(Prestamo.class), any())).thenAnswer(invocacion -> {
+            Consumer<Prestamo> alGuardar = invocacion.getArgument(1);
+            alGuardar.accept(prestamo);
+            return prestamo;
+        });
+    }
+
+    private Prestamo solicitud(Long usuarioId, Long libroId) {
+        Prestamo prestamo = new Prestamo();
+        prestamo.setUsuarioId(usuarioId);
+        prestamo.setLibroId(libroId);
+        return prestamo;
+    }
+
+    @Test
+    void testCrearPrestamo_ReintentoDesdeCache() {
+        // Given
+        crearDevuelve(creado);
+
+        // When
+        PrestamoIdempotente primero = idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L));
+        PrestamoIdempotente reintento = idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L));
+
+        // Then
+        assertFalse(primero.isRepetido());
+        assertTrue(reintento.isRepetido());
+        assertEquals(10L, reintento.getPrestamo().getId());
+        verify(prestamoService, times(1)).crearPrestamo(any(Prestamo.class), any());
+        verify(claveIdempotenciaRepository, times(1)).reservar(eq("clave-1"), eq(1L), eq(1L), any(Instant.class));
+        verify(claveIdempotenciaRepository, times(1)).asignarPrestamo("clave-1", 10L);
+    }
+
+    @Test
+    void testCrearPrestamo_ClaveResueltaEnOtraInstancia() {
+        // Given
+        doThrow(new DataIntegrityViolationException("duplicada"))
+                .when(claveIdempotenciaRepository).reservar(eq("clave-1"), anyLong(), anyLong(), any(Instant.class));
+        when(claveIdempotenciaRepository.findById("clave-1"))
+                .thenReturn(Optional.of(new ClaveIdempotencia("clave-1", 1L, 1L, 10L, Instant.now())));
+        when(prestamoRepository.findById(10L)).thenReturn(Optional.of(creado));
+
+        // When
+        PrestamoIdempotente resultado = idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L));
+
+        // Then
+        assertTrue(resultado.isRepetido());
+        assertEquals(10L, resultado.getPrestamo().getId());
+        verify(prestamoService, never()).crearPrestamo(any(), any());
+    }
+
+    @Test
+    void testCrearPrestamo_ReintentoTrasAnularElPrestamo() {
+        // Given: el préstamo de la clave se creó y después se anuló porque el servicio de libros rechazó el descuento
+        crearDevuelve(creado);
+        idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L));
+        idempotenciaService.olvidarPrestamo(10L);
+        doThrow(new DataIntegrityViolationException("duplicada"))
+                .when(claveIdempotenciaRepository).reservar(eq("clave-1"), anyLong(), anyLong(), any(Instant.class));
+        when(claveIdempotenciaRepository.findById("clave-1"))
+                .thenReturn(Optional.of(new ClaveIdempotencia("clave-1", 1L, 1L, 10L, Instant.now())));
+        when(prestamoRepository.findById(10L)).thenReturn(Optional.empty());
+        when(prestamoArchivadoRepository.findById(10L)).thenReturn(Optional.empty());
+
+        // When
+        PrestamoEliminadoException error = assertThrows(PrestamoEliminadoException.class,
+            () -> idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L)));
+
+        // Then: se informa el préstamo original y no se crea otro
+        assertEquals(10L, error.getPrestamoId());
+        verify(prestamoService, times(1)).crearPrestamo(any(Prestamo.class), any());
+    }
+
+    @Test
+    void testCrearPrestamo_ReintentoDePrestamoArchivado() {
+        // Given
+        doThrow(new DataIntegrityViolationException("duplicada"))
+                .when(claveIdempotenciaRepository).reservar(eq("clave-1"), anyLong(), anyLong(), any(Instant.class));
+        when(claveIdempotenciaRepository.findById("clave-1"))
+                .thenReturn(Optional.of(new ClaveIdempotencia("clave-1", 1L, 1L, 10L, Instant.now())));
+        when(prestamoRepository.findById(10L)).thenReturn(Optional.empty());
+        when(prestamoArchivadoRepository.findById(10L))
+                .thenReturn(Optional.of(new PrestamoArchivado(10L, 1L, 1L, Instant.now(), Instant.now())));
+
+        // When
+        PrestamoIdempotente resultado = idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L));
+
+        // Then
+        assertTrue(resultado.isRepetido());
+        assertEquals(10L, resultado.getPrestamo().getId());
+        assertEquals(EstadoPrestamo.DEVUELTO, resultado.getPrestamo().getEstado());
+    }
+
+    @Test
+    void testCrearPrestamo_ClaveEnCurso() {
+        // Given
+        doThrow(new DataIntegrityViolationException("duplicada"))
+                .when(claveIdempotenciaRepository).reservar(eq("clave-1"), anyLong(), anyLong(), any(Instant.class));
+        when(claveIdempotenciaRepository.findById("clave-1"))
+                .thenReturn(Optional.of(new ClaveIdempotencia("clave-1", 1L, 1L, null, Instant.now())));
+
+        // When & Then
+        assertThrows(ClaveIdempotenciaEnUsoException.class,
+            () -> idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L)));
+        verify(prestamoService, never()).crearPrestamo(any(), any());
+    }
+
+    @Test
+    void testCrearPrestamo_ClaveReutilizadaConOtroLibro() {
+        // Given
+        crearDevuelve(creado);
+        idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L));
+
+        // When & Then
+        assertThrows(ClaveIdempotenciaReutilizadaException.class,
+            () -> idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 2L)));
+        verify(prestamoService, times(1)).crearPrestamo(any(Prestamo.class), any());
+    }
+
+    @Test
+    void testCrearPrestamo_FalloLiberaLaClave() {
+        // Given
+        when(prestamoService.crearPrestamo(any(Prestamo.class), any()))
+                .thenThrow(new RuntimeException("Libro no disponible o no encontrado con ID: 1"));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L)));
+
+        assertEquals("Libro no disponible o no encontrado con ID: 1", exception.getMessage());
+        verify(claveIdempotenciaRepository, times(1)).eliminarReserva("clave-1");
+        verify(claveIdempotenciaRepository, never()).asignarPrestamo(anyString(), anyLong());
+    }
+
+    @Test
+    void testCrearPrestamo_ClaveResueltaAntesDelFalloPosterior() {
+        // Given: el préstamo y la clave se confirmaron y después falló algo fuera de la transacción
+        when(prestamoService.crearPrestamo(any(Prestamo.class), any())).thenAnswer(invocacion -> {
+            Consumer<Prestamo> alGuardar = invocacion.getArgument(1);
+            alGuardar.accept(creado);
+            throw new IllegalStateException("fallo después del commit");
+        });
+
+        // When & Then
+        assertThrows(IllegalStateException.class,
+            () -> idempotenciaService.crearPrestamo("clave-1", solicitud(1L, 1L)));
+
+        // La clave quedó asignada en la transacción del préstamo; la liberación condicional no la borra
+        verify(claveIdempotenciaRepository, times(1)).asignarPrestamo("clave-1", 10L);
+        verify(claveIdempotenciaRepository, times(1)).eliminarReserva("clave-1");
+        verify(claveIdempotenciaRepository, never()).deleteById(anyString());
+    }
+}
@@ -0,0 +1,130 @@
+package com.libreriaSanSebastian.loanService.ServiceTest;
+
+import com.libreriaSanSebastian.loanService.dto.ConteoPrestamosUsuario;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import com.libreriaSanSebastian.loanService.service.LimitePrestamosService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LimitePrestamosServiceTest {
+
+    @Mock
+    private PrestamoRepository prestamoRepository;
+
+    @InjectMocks
+    private LimitePrestamosService limitePrestamos;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(limitePrestamos, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(limitePrestamos, "maximoPorUsuario", 3);
+    }
+
+    private ConteoPrestamosUsuario conteo(Long usuarioId, long cantidad) {
+        ConteoPrestamosUsuario conteo = mock(ConteoPrestamosUsuario.class);
+        when(conteo.getUsuarioId()).thenReturn(usuarioId);
+        when(conteo.getCantidad()).thenReturn(cantidad);
+        return conteo;
+    }
+
+    @Test
+    void testReservar_HastaElMaximo() {
+        // Given: el usuario 1 ya tiene 2 préstamos sin devolver
+        ConteoPrestamosUsuario usuario = conteo(1L, 2);
+        when(prestamoRepository.contarPorUsuario(anyCollection())).thenReturn(List.of(usuario));
+        limitePrestamos.inicializar();
+
+        // When / Then
+        assertTrue(limitePrestamos.reservar(1L));
+        assertFalse(limitePrestamos.reservar(1L));
+        assertEquals(3, limitePrestamos.sinDevolver(1L));
+        // Un usuario sin préstamos empieza en cero
+        assertTrue(limitePrestamos.reservar(2L));
+        assertEquals(1, limitePrestamos.sinDevolver(2L));
+        verify(prestamoRepository, times(1)).contarPorUsuario(anyCollection());
+    }
+
+    @Test
+    void testLiberar() {
+        // Given
+        ConteoPrestamosUsuario usuario = conteo(1L, 3);
+        when(prestamoRepository.contarPorUsuario(anyCollection())).thenReturn(List.of(usuario));
+        limitePrestamos.inicializar();
+
+        // When
+        limitePrestamos.liberar(1L);
+
+        // Then
+        assertTrue(limitePrestamos.reservar(1L));
+        limitePrestamos.liberar(1L, 10);
+        assertEquals(0, limitePrestamos.sinDevolver(1L));
+    }
+
+    @Test
+    void testReservar_ConcurrenteNoSuperaElMaximo() throws Exception {
+        // Given
+        when(prestamoRepository.contarPorUsuario(anyCollection())).thenReturn(List.of());
+        limitePrestamos.inicializar();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger concedidas = new AtomicInteger();
+
+        // When
+        try {
+            List<CompletableFuture<Void>> tareas = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                tareas.add(CompletableFuture.runAsync(() -> {
+                    if (limitePrestamos.reservar(1L)) {
+                        concedidas.incrementAndGet();
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(tareas.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        assertEquals(3, concedidas.get());
+        assertEquals(3, limitePrestamos.sinDevolver(1L));
+    }
+
+    @Test
+    void testReconciliar() {
+        // Given: en memoria el usuario 1 tiene 1 y el 2 tiene 2; en la base el 1 tiene 3 y el 2 ninguno
+        List<ConteoPrestamosUsuario> enMemoria = List.of(conteo(1L, 1), conteo(2L, 2));
+        List<ConteoPrestamosUsuario> enBase = List.of(conteo(1L, 3));
+        when(prestamoRepository.contarPorUsuario(anyCollection())).thenReturn(enMemoria).thenReturn(enBase);
+        limitePrestamos.inicializar();
+
+        // When
+        limitePrestamos.reconciliar();
+
+        // Then
+        assertEquals(3, limitePrestamos.sinDevolver(1L));
+        assertEquals(0, limitePrestamos.sinDevolver(2L));
+        assertFalse(limitePrestamos.reservar(1L));
+        assertEquals(2.0, meterRegistry.counter("prestamos.limite.correcciones").count());
+    }
+}
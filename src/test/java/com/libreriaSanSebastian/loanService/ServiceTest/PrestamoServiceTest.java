@@ -1,22 +1,51 @@
 package com.libreriaSanSebastian.loanService.ServiceTest;
 
+import com.libreriaSanSebastian.loanService.client.LibroClient;
+import com.libreriaSanSebastian.loanService.client.UsuarioClient;
+import com.libreriaSanSebastian.loanService.dto.ConsultaPrestamos;
+import com.libreriaSanSebastian.loanService.dto.PrestamoConFechas;
+import com.libreriaSanSebastian.loanService.dto.PrestamoCursor;
+import com.libreriaSanSebastian.loanService.dto.ResultadoActualizacionLote;
+import com.libreriaSanSebastian.loanService.dto.ResultadoPrestamoLote;
+import com.libreriaSanSebastian.loanService.exception.ServicioNoDisponibleException;
+import com.libreriaSanSebastian.loanService.service.EstadisticasPrestamosService;
+import com.libreriaSanSebastian.loanService.service.LimitePrestamosService;
 import com.libreriaSanSebastian.loanService.service.PrestamoService;
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.EventoStock;
 import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.modelo.PrestamoArchivado;
+import com.libreriaSanSebastian.loanService.repository.EventoStockRepository;
+import com.libreriaSanSebastian.loanService.repository.PrestamoArchivadoRepository;
 import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
-
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -29,37 +58,188 @@ class PrestamoServiceTest {
     private PrestamoRepository prestamoRepository;
 
     @Mock
-    private RestTemplate restTemplate;
+    private PrestamoArchivadoRepository prestamoArchivadoRepository;
+
+    @Mock
+    private EventoStockRepository eventoStockRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private LimitePrestamosService limitePrestamos;
+
+    @Mock
+    private EstadisticasPrestamosService estadisticas;
+
+    @Mock
+    private UsuarioClient usuarioClient;
+
+    @Mock
+    private LibroClient libroClient;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private Cache cache;
 
     @InjectMocks
     private PrestamoService prestamoService;
 
     private Prestamo prestamo;
 
+    private SimpleMeterRegistry meterRegistry;
+
     @BeforeEach
     void setUp() {
         prestamo = new Prestamo();
         prestamo.setId(1L);
         prestamo.setUsuarioId(1L);
         prestamo.setLibroId(1L);
-        prestamo.setFechaPrestamo(new Date());
-        prestamo.setEstado("ACTIVO");
+        prestamo.setFechaPrestamo(Instant.now());
+        prestamo.setEstado(EstadoPrestamo.ACTIVO);
+
+        // Las verificaciones remotas se ejecutan en el mismo hilo del test
+        ReflectionTestUtils.setField(prestamoService, "validacionRemotaExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(prestamoService, "timeoutLlamadaMs", 2000L);
+        ReflectionTestUtils.setField(prestamoService, "timeoutTotalMs", 3000L);
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(prestamoService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(prestamoService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(prestamoService, "plazoPrestamo", Duration.ofDays(14));
+        lenient().when(limitePrestamos.reservar(anyLong())).thenReturn(true);
+        lenient().when(entityManagerFactory.getCache()).thenReturn(cache);
     }
 
     @Test
-    void testListarTodos() {
+    void testListarPagina_PrimeraPagina() {
         // Given
         List<Prestamo> prestamos = Arrays.asList(prestamo);
-        when(prestamoRepository.findAll()).thenReturn(prestamos);
+        when(prestamoRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(prestamos);
 
         // When
-        List<Prestamo> resultado = prestamoService.listarTodos();
+        List<Prestamo> resultado = prestamoService.listarPagina(null, 20);
+
+        // Then
+        assertEquals(1, resultado.size());
+        verify(prestamoRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class));
+    }
+
+    @Test
+    void testListarPagina_DesdeCursor() {
+        // Given
+        when(prestamoRepository.findByIdGreaterThanOrderByIdAsc(eq(100L), any(Limit.class))).thenReturn(List.of());
+
+        // When
+        List<Prestamo> resultado = prestamoService.listarPagina(100L, 20);
+
+        // Then
+        assertTrue(resultado.isEmpty());
+        verify(prestamoRepository, never()).findAll();
+    }
+
+    @Test
+    void testBuscar_SinFiltrosUsaCursorPorId() {
+        // Given
+        when(prestamoRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(List.of(prestamo));
+
+        // When
+        List<Prestamo> resultado = prestamoService.buscar(new ConsultaPrestamos(), null, 20);
+
+        // Then
+        assertEquals(1, resultado.size());
+        verify(prestamoRepository, never()).findBy(any(Specification.class), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBuscar_ConFiltros() {
+        // Given
+        ConsultaPrestamos consulta = new ConsultaPrestamos();
+        consulta.setEstado(EstadoPrestamo.ACTIVO);
+        consulta.setLibroId(1L);
+        when(prestamoRepository.findBy(any(Specification.class), any())).thenReturn(List.of(prestamo));
+
+        // When
+        List<Prestamo> resultado = prestamoService.buscar(consulta, null, 20);
+
+        // Then
+        assertEquals(1, resultado.size());
+        verify(prestamoRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBuscar_OrdenPorFechaDesdeCursor() {
+        // Given
+        ConsultaPrestamos consulta = new ConsultaPrestamos();
+        consulta.setSort("fechaPrestamo,desc");
+        when(prestamoRepository.findFechaPrestamoById(100L)).thenReturn(Optional.of(Instant.now()));
+        when(prestamoRepository.findBy(any(Specification.class), any())).thenReturn(List.of());
+
+        // When
+        List<Prestamo> resultado = prestamoService.buscar(consulta, 100L, 20);
+
+        // Then
+        assertTrue(resultado.isEmpty());
+        verify(prestamoRepository, times(1)).findFechaPrestamoById(100L);
+    }
+
+    @Test
+    void testBuscar_CursorNoValido() {
+        // Given
+        ConsultaPrestamos consulta = new ConsultaPrestamos();
+        consulta.setSort("fechaPrestamo");
+        when(prestamoRepository.findFechaPrestamoById(99L)).thenReturn(Optional.empty());
+
+        // When & Then
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> prestamoService.buscar(consulta, 99L, 20));
+        assertEquals("Cursor no válido: 99", exception.getMessage());
+    }
+
+    @Test
+    void testBuscar_OrdenNoValido() {
+        // Given
+        ConsultaPrestamos consulta = new ConsultaPrestamos();
+        consulta.setSort("usuarioId,asc");
+
+        // When & Then
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> prestamoService.buscar(consulta, null, 20));
+        assertEquals("No se puede ordenar por: usuarioId", exception.getMessage());
+        verifyNoInteractions(prestamoRepository);
+    }
+
+    @Test
+    void testBuscarCampos() {
+        // Given
+        ConsultaPrestamos consulta = new ConsultaPrestamos();
+        consulta.setFields(List.of("libroId", "estado"));
+        Map<String, Object> fila = Map.of("id", 1L, "libroId", 1L, "estado", EstadoPrestamo.ACTIVO);
+        when(prestamoRepository.buscarCampos(any(), any(Sort.class), eq(List.of("id", "libroId", "estado")), eq(20)))
+                .thenReturn(List.of(fila));
+
+        // When
+        List<Map<String, Object>> resultado = prestamoService.buscarCampos(consulta, null, 20);
 
         // Then
-        assertNotNull(resultado);
         assertEquals(1, resultado.size());
-        assertEquals(prestamo.getId(), resultado.get(0).getId());
-        verify(prestamoRepository, times(1)).findAll();
+        assertEquals(EstadoPrestamo.ACTIVO, resultado.get(0).get("estado"));
+    }
+
+    @Test
+    void testBuscarCampos_CampoDesconocido() {
+        // Given
+        ConsultaPrestamos consulta = new ConsultaPrestamos();
+        consulta.setFields(List.of("libroId", "titulo"));
+
+        // When & Then
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> prestamoService.buscarCampos(consulta, null, 20));
+        assertEquals("Campo desconocido: titulo", exception.getMessage());
+        verifyNoInteractions(prestamoRepository);
     }
 
     @Test
@@ -103,6 +283,45 @@ class PrestamoServiceTest {
         assertEquals(1, resultado.size());
         assertEquals(prestamo.getUsuarioId(), resultado.get(0).getUsuarioId());
         verify(prestamoRepository, times(1)).findByUsuarioId(1L);
+        verifyNoInteractions(prestamoArchivadoRepository);
+    }
+
+    @Test
+    void testBuscarPorUsuario_ConHistorial() {
+        // Given
+        Instant fecha = Instant.parse("2023-01-10T00:00:00Z");
+        PrestamoArchivado archivado = new PrestamoArchivado(7L, 1L, 3L, fecha, fecha.plus(Duration.ofDays(5)));
+        when(prestamoRepository.findByUsuarioId(1L)).thenReturn(List.of(prestamo));
+        when(prestamoArchivadoRepository.findByUsuarioId(1L)).thenReturn(List.of(archivado));
+
+        // When
+        List<Prestamo> resultado = prestamoService.buscarPorUsuario(1L, true);
+
+        // Then: primero los de la tabla principal, después los archivados
+        assertEquals(2, resultado.size());
+        assertSame(prestamo, resultado.get(0));
+        assertEquals(new Prestamo(7L, 1L, 3L, fecha, fecha.plus(Duration.ofDays(5)), EstadoPrestamo.DEVUELTO), resultado.get(1));
+    }
+
+    @Test
+    void testBuscarPorId_ConHistorial_SoloSiNoEstaEnLaTablaPrincipal() {
+        // Given
+        Instant fecha = Instant.parse("2023-01-10T00:00:00Z");
+        when(prestamoRepository.findById(1L)).thenReturn(Optional.of(prestamo));
+        when(prestamoRepository.findById(7L)).thenReturn(Optional.empty());
+        when(prestamoArchivadoRepository.findById(7L))
+                .thenReturn(Optional.of(new PrestamoArchivado(7L, 1L, 3L, fecha, fecha.plus(Duration.ofDays(5)))));
+
+        // When
+        Optional<Prestamo> principal = prestamoService.buscarPorId(1L, true);
+        Optional<Prestamo> archivado = prestamoService.buscarPorId(7L, true);
+        Optional<Prestamo> sinHistorial = prestamoService.buscarPorId(7L, false);
+
+        // Then
+        assertSame(prestamo, principal.orElseThrow());
+        assertEquals(EstadoPrestamo.DEVUELTO, archivado.orElseThrow().getEstado());
+        assertTrue(sinHistorial.isEmpty());
+        verify(prestamoArchivadoRepository, times(1)).findById(7L);
     }
 
     @Test
@@ -112,13 +331,9 @@ class PrestamoServiceTest {
         nuevoPrestamo.setUsuarioId(1L);
         nuevoPrestamo.setLibroId(1L);
 
-        // Mock para verificar usuario existe
-        when(restTemplate.getForEntity(anyString(), eq(Object.class)))
-                .thenReturn(new ResponseEntity<>(HttpStatus.OK));
-
-        // Mock para decrementar stock
-        when(restTemplate.exchange(anyString(), any(), any(), eq(Void.class)))
-                .thenReturn(new ResponseEntity<>(HttpStatus.OK));
+        // Mock para verificar usuario y libro
+        when(usuarioClient.existe(1L)).thenReturn(true);
+        when(libroClient.estaDisponible(1L)).thenReturn(true);
 
         when(prestamoRepository.save(any(Prestamo.class))).thenReturn(prestamo);
 
@@ -129,6 +344,173 @@ class PrestamoServiceTest {
         assertNotNull(resultado);
         assertEquals(prestamo.getId(), resultado.getId());
         verify(prestamoRepository, times(1)).save(any(Prestamo.class));
+        // El descuento de stock queda en el outbox, en la misma transacción que el préstamo
+        verify(eventoStockRepository, times(1)).save(argThat(evento ->
+                evento.getLibroId().equals(1L) && evento.getCantidad() == -1 && evento.getPrestamoId().equals(1L)));
+        verify(transactionManager, times(1)).commit(any());
+        verify(libroClient, never()).ajustarStock(anyLong(), anyInt(), anyString());
+        verify(estadisticas, times(1)).registrarCreacion(prestamo);
+        assertEquals(1.0, meterRegistry.counter("prestamos.creados").count());
+    }
+
+    @Test
+    void testCrearPrestamo_AlGuardarEnLaMismaTransaccion() {
+        // Given
+        Prestamo nuevoPrestamo = new Prestamo();
+        nuevoPrestamo.setUsuarioId(1L);
+        nuevoPrestamo.setLibroId(1L);
+        when(usuarioClient.existe(1L)).thenReturn(true);
+        when(libroClient.estaDisponible(1L)).thenReturn(true);
+        when(prestamoRepository.save(any(Prestamo.class))).thenReturn(prestamo);
+        List<Long> guardados = new ArrayList<>();
+
+        // When
+        prestamoService.crearPrestamo(nuevoPrestamo, nuevo -> {
+            // Then: corre antes del commit
+            verify(transactionManager, never()).commit(any());
+            guardados.add(nuevo.getId());
+        });
+
+        // Then
+        assertEquals(List.of(1L), guardados);
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void testCrearPrestamo_FalloDespuesDelCommitNoLiberaElLimite() {
+        // Given: el préstamo se guardó y falla la actualización de las estadísticas
+        Prestamo nuevoPrestamo = new Prestamo();
+        nuevoPrestamo.setUsuarioId(1L);
+        nuevoPrestamo.setLibroId(1L);
+        when(usuarioClient.existe(1L)).thenReturn(true);
+        when(libroClient.estaDisponible(1L)).thenReturn(true);
+        when(prestamoRepository.save(any(Prestamo.class))).thenReturn(prestamo);
+        doThrow(new IllegalStateException("fallo")).when(estadisticas).registrarCreacion(prestamo);
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> prestamoService.crearPrestamo(nuevoPrestamo));
+        verify(transactionManager, times(1)).commit(any());
+        verify(limitePrestamos, never()).liberar(anyLong());
+    }
+
+    @Test
+    void testCrearPrestamo_UsuarioNoEncontrado() {
+        // Given
+        Prestamo nuevoPrestamo = new Prestamo();
+        nuevoPrestamo.setUsuarioId(99L);
+        nuevoPrestamo.setLibroId(1L);
+
+        when(usuarioClient.existe(99L)).thenReturn(false);
+        when(libroClient.estaDisponible(1L)).thenReturn(true);
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> prestamoService.crearPrestamo(nuevoPrestamo));
+
+        assertEquals("Usuario no encontrado con ID: 99", exception.getMessage());
+        verify(eventoStockRepository, never()).save(any());
+        verify(prestamoRepository, never()).save(any());
+        // El lugar reservado para el usuario se libera al rechazar
+        verify(limitePrestamos, times(1)).liberar(99L);
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "usuario-no-encontrado").count());
+        assertEquals(0.0, meterRegistry.counter("prestamos.creados").count());
+    }
+
+    @Test
+    void testCrearPrestamo_LimiteAlcanzado() {
+        // Given
+        Prestamo nuevoPrestamo = new Prestamo();
+        nuevoPrestamo.setUsuarioId(1L);
+        nuevoPrestamo.setLibroId(1L);
+        when(limitePrestamos.reservar(1L)).thenReturn(false);
+        when(limitePrestamos.getMaximoPorUsuario()).thenReturn(5);
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> prestamoService.crearPrestamo(nuevoPrestamo));
+
+        assertEquals("El usuario con ID: 1 alcanzó el máximo de 5 préstamos sin devolver", exception.getMessage());
+        // Se rechaza antes de cualquier llamada remota o consulta
+        verifyNoInteractions(usuarioClient, libroClient, prestamoRepository);
+        verify(limitePrestamos, never()).liberar(anyLong());
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "limite-prestamos").count());
+    }
+
+    @Test
+    void testCrearPrestamo_TiempoAgotado() {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(prestamoService, "validacionRemotaExecutor", executor);
+        ReflectionTestUtils.setField(prestamoService, "timeoutLlamadaMs", 50L);
+
+        Prestamo nuevoPrestamo = new Prestamo();
+        nuevoPrestamo.setUsuarioId(1L);
+        nuevoPrestamo.setLibroId(1L);
+
+        when(usuarioClient.existe(1L)).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return true;
+        });
+
+        // When & Then
+        try {
+            RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> prestamoService.crearPrestamo(nuevoPrestamo));
+
+            assertEquals("Tiempo de espera agotado al verificar el usuario con ID: 1", exception.getMessage());
+            verify(prestamoRepository, never()).save(any());
+            assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "timeout").count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCrearPrestamo_ServicioNoDisponible() {
+        // Given
+        Prestamo nuevoPrestamo = new Prestamo();
+        nuevoPrestamo.setUsuarioId(1L);
+        nuevoPrestamo.setLibroId(1L);
+
+        when(usuarioClient.existe(1L)).thenReturn(true);
+        when(libroClient.estaDisponible(1L)).thenThrow(
+                new ServicioNoDisponibleException("Servicio de libros no disponible temporalmente", null));
+
+        // When & Then
+        ServicioNoDisponibleException exception = assertThrows(ServicioNoDisponibleException.class,
+            () -> prestamoService.crearPrestamo(nuevoPrestamo));
+
+        assertEquals("Servicio de libros no disponible temporalmente", exception.getMessage());
+        verify(eventoStockRepository, never()).save(any());
+        verify(prestamoRepository, never()).save(any());
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "servicio-no-disponible").count());
+    }
+
+    @Test
+    void testCrearPrestamo_Saturado() {
+        // Given: el executor acepta la verificación del usuario y rechaza la del libro
+        AtomicInteger tareas = new AtomicInteger();
+        ReflectionTestUtils.setField(prestamoService, "validacionRemotaExecutor", (Executor) tarea -> {
+            if (tareas.incrementAndGet() > 1) {
+                throw new RejectedExecutionException("cola llena");
+            }
+            tarea.run();
+        });
+        Prestamo nuevoPrestamo = new Prestamo();
+        nuevoPrestamo.setUsuarioId(1L);
+        nuevoPrestamo.setLibroId(1L);
+
+        when(usuarioClient.existe(1L)).thenReturn(true);
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> prestamoService.crearPrestamo(nuevoPrestamo));
+
+        assertEquals("Servicio de préstamos saturado, intente nuevamente", exception.getMessage());
+        verify(libroClient, never()).estaDisponible(anyLong());
+        verify(prestamoRepository, never()).save(any());
+        verify(limitePrestamos, times(1)).liberar(1L);
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "saturado").count());
     }
 
     @Test
@@ -159,27 +541,136 @@ class PrestamoServiceTest {
         verify(prestamoRepository, never()).save(any());
     }
 
+    @Test
+    void testCrearPrestamosEnLote() {
+        // Given
+        Prestamo primero = new Prestamo();
+        primero.setUsuarioId(1L);
+        primero.setLibroId(1L);
+        Prestamo segundo = new Prestamo();
+        segundo.setUsuarioId(1L);
+        segundo.setLibroId(1L);
+        Prestamo usuarioInexistente = new Prestamo();
+        usuarioInexistente.setUsuarioId(2L);
+        usuarioInexistente.setLibroId(1L);
+        Prestamo incompleto = new Prestamo();
+        incompleto.setUsuarioId(1L);
+
+        when(usuarioClient.existe(1L)).thenReturn(true);
+        when(usuarioClient.existe(2L)).thenReturn(false);
+        when(libroClient.estaDisponible(1L)).thenReturn(true);
+        when(prestamoRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<ResultadoPrestamoLote> resultados = prestamoService.crearPrestamosEnLote(
+                List.of(primero, segundo, usuarioInexistente, incompleto));
+
+        // Then
+        assertEquals(4, resultados.size());
+        assertTrue(resultados.get(0).isExitoso());
+        assertTrue(resultados.get(1).isExitoso());
+        assertEquals("Usuario no encontrado con ID: 2", resultados.get(2).getError());
+        assertEquals("Usuario ID y Libro ID son requeridos", resultados.get(3).getError());
+        // Cada usuario y libro distinto se verifica una sola vez
+        verify(usuarioClient, times(1)).existe(1L);
+        verify(libroClient, times(1)).estaDisponible(1L);
+        verify(prestamoRepository, times(1)).saveAll(List.of(primero, segundo));
+        // Un descuento por préstamo en el outbox; DespachoStockService los agrupa por libro al enviarlos
+        verify(eventoStockRepository, times(1)).saveAll(argThat((List<EventoStock> eventos) -> eventos.size() == 2
+                && eventos.stream().allMatch(evento -> evento.getLibroId().equals(1L) && evento.getCantidad() == -1)));
+        verify(libroClient, never()).ajustarStock(anyLong(), anyInt(), anyString());
+        assertEquals(2.0, meterRegistry.counter("prestamos.creados").count());
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "usuario-no-encontrado").count());
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "datos-invalidos").count());
+        verify(limitePrestamos, times(1)).liberar(2L);
+    }
+
+    @Test
+    void testCrearPrestamosEnLote_LimiteAlcanzado() {
+        // Given: al usuario 1 le queda un solo lugar
+        Prestamo primero = new Prestamo();
+        primero.setUsuarioId(1L);
+        primero.setLibroId(1L);
+        Prestamo segundo = new Prestamo();
+        segundo.setUsuarioId(1L);
+        segundo.setLibroId(2L);
+
+        when(limitePrestamos.reservar(1L)).thenReturn(true, false);
+        when(limitePrestamos.getMaximoPorUsuario()).thenReturn(5);
+        when(usuarioClient.existe(1L)).thenReturn(true);
+        when(libroClient.estaDisponible(1L)).thenReturn(true);
+        when(prestamoRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<ResultadoPrestamoLote> resultados = prestamoService.crearPrestamosEnLote(List.of(primero, segundo));
+
+        // Then
+        assertTrue(resultados.get(0).isExitoso());
+        assertEquals("El usuario con ID: 1 alcanzó el máximo de 5 préstamos sin devolver", resultados.get(1).getError());
+        verify(libroClient, never()).estaDisponible(2L);
+        verify(prestamoRepository, times(1)).saveAll(List.of(primero));
+    }
+
+    @Test
+    void testCrearPrestamosEnLote_Saturado() {
+        // Given: el executor rechaza la verificación del usuario 2; el préstamo del usuario 1 sigue
+        AtomicInteger tareas = new AtomicInteger();
+        ReflectionTestUtils.setField(prestamoService, "validacionRemotaExecutor", (Executor) tarea -> {
+            if (tareas.incrementAndGet() == 3) {
+                throw new RejectedExecutionException("cola llena");
+            }
+            tarea.run();
+        });
+        Prestamo primero = new Prestamo();
+        primero.setUsuarioId(1L);
+        primero.setLibroId(1L);
+        Prestamo segundo = new Prestamo();
+        segundo.setUsuarioId(2L);
+        segundo.setLibroId(2L);
+
+        when(usuarioClient.existe(1L)).thenReturn(true);
+        when(libroClient.estaDisponible(1L)).thenReturn(true);
+        when(prestamoRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<ResultadoPrestamoLote> resultados = prestamoService.crearPrestamosEnLote(List.of(primero, segundo));
+
+        // Then
+        assertTrue(resultados.get(0).isExitoso());
+        assertEquals("Servicio de préstamos saturado, intente nuevamente", resultados.get(1).getError());
+        verify(prestamoRepository, times(1)).saveAll(List.of(primero));
+        verify(limitePrestamos, times(1)).liberar(2L);
+        verify(limitePrestamos, never()).liberar(1L);
+        assertEquals(1.0, meterRegistry.counter("prestamos.rechazados", "motivo", "saturado").count());
+    }
+
     @Test
     void testDevolverLibro_Exitoso() {
         // Given
-        when(prestamoRepository.findById(1L)).thenReturn(Optional.of(prestamo));
-        when(prestamoRepository.save(any(Prestamo.class))).thenReturn(prestamo);
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.of(prestamo));
+        when(prestamoRepository.devolver(eq(1L), any(Instant.class))).thenReturn(1);
 
         // When
         Prestamo resultado = prestamoService.devolverLibro(1L);
 
         // Then
         assertNotNull(resultado);
-        assertEquals("DEVUELTO", resultado.getEstado());
+        assertEquals(EstadoPrestamo.DEVUELTO, resultado.getEstado());
         assertNotNull(resultado.getFechaDevolucion());
-        verify(prestamoRepository, times(1)).save(prestamo);
+        verify(prestamoRepository, never()).save(any());
+        verify(eventoStockRepository, times(1)).save(argThat(evento ->
+                evento.getLibroId().equals(1L) && evento.getCantidad() == 1));
+        verify(cache, times(1)).evict(Prestamo.class, 1L);
+        verify(limitePrestamos, times(1)).liberar(1L);
+        verify(estadisticas, times(1)).registrarDevolucion(1L, prestamo.getFechaPrestamo(), resultado.getFechaDevolucion());
+        assertEquals(1.0, meterRegistry.counter("prestamos.devueltos").count());
     }
 
     @Test
     void testDevolverLibro_YaDevuelto() {
         // Given
-        prestamo.setEstado("DEVUELTO");
-        when(prestamoRepository.findById(1L)).thenReturn(Optional.of(prestamo));
+        prestamo.setEstado(EstadoPrestamo.DEVUELTO);
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.of(prestamo));
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, 
@@ -189,10 +680,28 @@ class PrestamoServiceTest {
         verify(prestamoRepository, never()).save(any());
     }
 
+    @Test
+    void testDevolverLibro_DevueltoPorOtraSolicitud() {
+        // Given: la lectura todavía ve ACTIVO, pero otra devolución ya cambió la fila
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.of(prestamo));
+        when(prestamoRepository.devolver(eq(1L), any(Instant.class))).thenReturn(0);
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> prestamoService.devolverLibro(1L));
+
+        assertEquals("El libro ya fue devuelto", exception.getMessage());
+        verify(eventoStockRepository, never()).save(any());
+        verify(limitePrestamos, never()).liberar(anyLong());
+        verify(estadisticas, never()).registrarDevolucion(any(), any(), any());
+        verify(cache, times(1)).evict(Prestamo.class, 1L);
+        assertEquals(0.0, meterRegistry.counter("prestamos.devueltos").count());
+    }
+
     @Test
     void testDevolverLibro_NoEncontrado() {
         // Given
-        when(prestamoRepository.findById(1L)).thenReturn(Optional.empty());
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.empty());
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, 
@@ -202,15 +711,120 @@ class PrestamoServiceTest {
         verify(prestamoRepository, never()).save(any());
     }
 
+    private PrestamoCursor cursor(Long id, Instant fechaPrestamo) {
+        PrestamoCursor cursor = mock(PrestamoCursor.class);
+        when(cursor.getId()).thenReturn(id);
+        lenient().when(cursor.getFechaPrestamo()).thenReturn(fechaPrestamo);
+        return cursor;
+    }
+
+    private PrestamoConFechas resumen(Long id, Long libroId) {
+        PrestamoConFechas resumen = mock(PrestamoConFechas.class);
+        when(resumen.getId()).thenReturn(id);
+        when(resumen.getUsuarioId()).thenReturn(1L);
+        when(resumen.getLibroId()).thenReturn(libroId);
+        return resumen;
+    }
+
+    @Test
+    void testDevolverEnLote() {
+        // Given: 1 y 2 activos, 3 ya devuelto o inexistente; IDs repetidos y nulos se ignoran
+        PrestamoConFechas primero = resumen(1L, 10L);
+        PrestamoConFechas segundo = resumen(2L, 20L);
+        when(prestamoRepository.devolverTodos(eq(List.of(1L, 2L, 3L)), anyCollection(), eq(EstadoPrestamo.DEVUELTO), any(Instant.class)))
+                .thenReturn(2);
+        when(prestamoRepository.findByIdInAndEstadoAndFechaDevolucion(eq(List.of(1L, 2L, 3L)), eq(EstadoPrestamo.DEVUELTO), any(Instant.class)))
+                .thenReturn(List.of(primero, segundo));
+
+        // When
+        ResultadoActualizacionLote resultado = prestamoService.devolverEnLote(Arrays.asList(1L, 2L, 3L, 2L, null));
+
+        // Then
+        assertEquals(List.of(1L, 2L), resultado.getActualizados());
+        assertEquals(List.of(3L), resultado.getOmitidos());
+        verify(prestamoRepository, never()).findById(anyLong());
+        verify(prestamoRepository, never()).save(any());
+        verify(eventoStockRepository, times(1)).saveAll(argThat((List<EventoStock> eventos) -> eventos.size() == 2
+                && eventos.stream().allMatch(evento -> evento.getCantidad() == 1)));
+        // Un solo ajuste del contador por usuario y bloque
+        verify(limitePrestamos, times(1)).liberar(1L, 2);
+        assertEquals(2.0, meterRegistry.counter("prestamos.devueltos").count());
+    }
+
+    @Test
+    void testDevolverEnLote_PorBloques() {
+        // Given
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 1200; id++) {
+            ids.add(id);
+        }
+        when(prestamoRepository.devolverTodos(anyCollection(), anyCollection(), eq(EstadoPrestamo.DEVUELTO), any(Instant.class)))
+                .thenReturn(0);
+
+        // When
+        ResultadoActualizacionLote resultado = prestamoService.devolverEnLote(ids);
+
+        // Then
+        verify(prestamoRepository, times(3)).devolverTodos(anyCollection(), anyCollection(), eq(EstadoPrestamo.DEVUELTO), any(Instant.class));
+        assertTrue(resultado.getActualizados().isEmpty());
+        assertEquals(1200, resultado.getOmitidos().size());
+    }
+
+    @Test
+    void testMarcarVencidos() {
+        // Given: dos bloques; el préstamo 3 se devolvió durante el barrido
+        Instant dia1 = Instant.parse("2024-01-01T00:00:00Z");
+        Instant dia2 = Instant.parse("2024-01-02T00:00:00Z");
+        List<PrestamoCursor> primero = List.of(cursor(1L, dia1), cursor(2L, dia1), cursor(3L, dia2));
+        List<PrestamoCursor> segundo = List.of(cursor(4L, dia2));
+        when(prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(eq(EstadoPrestamo.ACTIVO), any(Instant.class),
+                eq(Instant.EPOCH), eq(0L), any(Limit.class)))
+                .thenReturn(primero);
+        when(prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(eq(EstadoPrestamo.ACTIVO), any(Instant.class),
+                eq(dia2), eq(3L), any(Limit.class)))
+                .thenReturn(segundo);
+        when(prestamoRepository.findCursorByEstadoAndFechaPrestamoBefore(eq(EstadoPrestamo.ACTIVO), any(Instant.class),
+                eq(dia2), eq(4L), any(Limit.class)))
+                .thenReturn(List.of());
+        when(prestamoRepository.findIdsByIdInAndEstado(List.of(1L, 2L, 3L), EstadoPrestamo.VENCIDO)).thenReturn(List.of(1L, 2L));
+        when(prestamoRepository.findIdsByIdInAndEstado(List.of(4L), EstadoPrestamo.VENCIDO)).thenReturn(List.of(4L));
+
+        // When
+        ResultadoActualizacionLote resultado = prestamoService.marcarVencidos();
+
+        // Then
+        assertEquals(List.of(1L, 2L, 4L), resultado.getActualizados());
+        assertEquals(List.of(3L), resultado.getOmitidos());
+        verify(prestamoRepository, times(1)).cambiarEstado(List.of(1L, 2L, 3L), EstadoPrestamo.ACTIVO, EstadoPrestamo.VENCIDO);
+        verify(prestamoRepository, times(1)).cambiarEstado(List.of(4L), EstadoPrestamo.ACTIVO, EstadoPrestamo.VENCIDO);
+        assertEquals(3.0, meterRegistry.counter("prestamos.vencidos").count());
+    }
+
     @Test
     void testEliminar() {
         // Given
-        doNothing().when(prestamoRepository).deleteById(1L);
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.of(prestamo));
+
+        // When
+        prestamoService.eliminar(1L);
+
+        // Then
+        verify(prestamoRepository, times(1)).delete(prestamo);
+        verify(limitePrestamos, times(1)).liberar(1L);
+        verify(estadisticas, times(1)).registrarEliminacion(prestamo);
+    }
+
+    @Test
+    void testEliminar_Devuelto() {
+        // Given
+        prestamo.setEstado(EstadoPrestamo.DEVUELTO);
+        when(prestamoRepository.buscarSinCache(1L)).thenReturn(Optional.of(prestamo));
 
         // When
         prestamoService.eliminar(1L);
 
         // Then
-        verify(prestamoRepository, times(1)).deleteById(1L);
+        verify(prestamoRepository, times(1)).delete(prestamo);
+        verify(limitePrestamos, never()).liberar(anyLong());
     }
 }
\ No newline at end of file
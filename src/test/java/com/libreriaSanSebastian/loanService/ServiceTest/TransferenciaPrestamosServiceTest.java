@@ -0,0 +1,201 @@
+package com.libreriaSanSebastian.loanService.ServiceTest;
+
+import com.libreriaSanSebastian.loanService.modelo.EstadoPrestamo;
+import com.libreriaSanSebastian.loanService.modelo.Prestamo;
+import com.libreriaSanSebastian.loanService.repository.PrestamoRepository;
+import com.libreriaSanSebastian.loanService.service.EstadisticasPrestamosService;
+import com.libreriaSanSebastian.loanService.service.LimitePrestamosService;
+import com.libreriaSanSebastian.loanService.service.TransferenciaPrestamosService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransferenciaPrestamosServiceTest {
+
+    @Mock
+    private PrestamoRepository prestamoRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private LimitePrestamosService limitePrestamos;
+
+    @Mock
+    private EstadisticasPrestamosService estadisticas;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private Cache cache;
+
+    @Mock
+    private org.hibernate.Cache cacheHibernate;
+
+    @InjectMocks
+    private TransferenciaPrestamosService transferencia;
+
+    private final Instant fecha = Instant.parse("2024-03-01T10:15:30Z");
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(transferencia, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(transferencia, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(transferencia, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(transferencia, "tamanoFetch", 1000);
+        ReflectionTestUtils.setField(transferencia, "tamanoLote", 2);
+        lenient().when(entityManagerFactory.getCache()).thenReturn(cache);
+        lenient().when(cache.unwrap(org.hibernate.Cache.class)).thenReturn(cacheHibernate);
+    }
+
+    private void tablaCon(Prestamo... prestamos) {
+        doAnswer(invocacion -> {
+            Consumer<Prestamo> consumidor = invocacion.getArgument(1);
+            for (Prestamo prestamo : prestamos) {
+                consumidor.accept(prestamo);
+            }
+            return null;
+        }).when(prestamoRepository).recorrerFilas(eq(1000), any());
+    }
+
+    @Test
+    void testExportar_Csv() throws Exception {
+        // Given
+        tablaCon(new Prestamo(1L, 10L, 100L, fecha, null, EstadoPrestamo.ACTIVO),
+                new Prestamo(2L, 20L, 200L, fecha, fecha.plusSeconds(3600), EstadoPrestamo.DEVUELTO));
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        // When
+        long exportados = transferencia.exportar(TransferenciaPrestamosService.Formato.CSV, false, salida);
+
+        // Then
+        assertEquals(2, exportados);
+        assertEquals("id,usuarioId,libroId,fechaPrestamo,fechaDevolucion,estado\n" +
+                        "1,10,100,2024-03-01T10:15:30Z,,ACTIVO\n" +
+                        "2,20,200,2024-03-01T10:15:30Z,2024-03-01T11:15:30Z,DEVUELTO\n",
+                salida.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportarEImportar_Ndjson() throws Exception {
+        // Given
+        tablaCon(new Prestamo(1L, 10L, 100L, fecha, null, EstadoPrestamo.VENCIDO),
+                new Prestamo(2L, 20L, 200L, fecha, fecha.plusSeconds(3600), EstadoPrestamo.DEVUELTO));
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        transferencia.exportar(TransferenciaPrestamosService.Formato.NDJSON, false, salida);
+
+        // When
+        long importados = transferencia.importar(TransferenciaPrestamosService.Formato.NDJSON,
+                new ByteArrayInputStream(salida.toByteArray()));
+
+        // Then: los mismos datos, con IDs nuevos
+        assertEquals(2, salida.toString(StandardCharsets.UTF_8).lines().count());
+        assertEquals(2, importados);
+        ArgumentCaptor<List<Prestamo>> lote = ArgumentCaptor.forClass(List.class);
+        verify(prestamoRepository).insertarTodos(lote.capture());
+        assertEquals(List.of(new Prestamo(null, 10L, 100L, fecha, null, EstadoPrestamo.VENCIDO),
+                new Prestamo(null, 20L, 200L, fecha, fecha.plusSeconds(3600), EstadoPrestamo.DEVUELTO)), lote.getValue());
+        verify(cacheHibernate).evictQueryRegion("prestamos-por-usuario");
+        verify(estadisticas, times(2)).registrarCreacion(any(Prestamo.class));
+        verify(limitePrestamos, times(1)).reconciliar();
+    }
+
+    @Test
+    void testImportar_CsvPorLotes() throws Exception {
+        // Given: columnas en otro orden y sin id
+        String csv = "estado,usuarioId,libroId,fechaPrestamo,fechaDevolucion\n" +
+                "ACTIVO,1,10,2024-03-01T10:15:30Z,\n" +
+                "ACTIVO,2,10,2024-03-01T10:15:30Z,\n" +
+                "\n" +
+                "DEVUELTO,3,20,2024-03-01T10:15:30Z,2024-03-02T10:15:30Z\n";
+
+        // When
+        long importados = transferencia.importar(TransferenciaPrestamosService.Formato.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        // Then: un lote de 2 y otro de 1
+        assertEquals(3, importados);
+        ArgumentCaptor<List<Prestamo>> lotes = ArgumentCaptor.forClass(List.class);
+        verify(prestamoRepository, times(2)).insertarTodos(lotes.capture());
+        assertEquals(2, lotes.getAllValues().get(0).size());
+        assertEquals(new Prestamo(null, 3L, 20L, fecha, Instant.parse("2024-03-02T10:15:30Z"), EstadoPrestamo.DEVUELTO),
+                lotes.getAllValues().get(1).get(0));
+    }
+
+    @Test
+    void testImportar_FilaInvalida_DetieneYCuenta() {
+        // Given: la tercera fila es DEVUELTO sin fecha de devolución
+        String csv = "id,usuarioId,libroId,fechaPrestamo,fechaDevolucion,estado\n" +
+                "1,1,10,2024-03-01T10:15:30Z,,ACTIVO\n" +
+                "2,2,10,2024-03-01T10:15:30Z,,ACTIVO\n" +
+                "3,3,20,2024-03-01T10:15:30Z,,DEVUELTO\n" +
+                "4,4,20,2024-03-01T10:15:30Z,,ACTIVO\n";
+
+        // When & Then
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> transferencia.importar(TransferenciaPrestamosService.Formato.CSV,
+                        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals("Fila 3: Solo los préstamos DEVUELTO tienen fecha de devolución. Se importaron 2 préstamos " +
+                "antes del error", exception.getMessage());
+        verify(prestamoRepository, times(1)).insertarTodos(anyList());
+        verify(limitePrestamos, times(1)).reconciliar();
+    }
+
+    @Test
+    void testImportar_FechaMalEscrita() {
+        // Given
+        String csv = "usuarioId,libroId,fechaPrestamo,fechaDevolucion,estado\n" +
+                "1,10,01/03/2024,,ACTIVO\n";
+
+        // When & Then
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> transferencia.importar(TransferenciaPrestamosService.Formato.CSV,
+                        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+
+        assertTrue(exception.getMessage().startsWith("Fila 1: "));
+        verify(prestamoRepository, never()).insertarTodos(anyList());
+    }
+
+    @Test
+    void testImportar_FalloDeLaBaseSePropaga() {
+        // Given
+        String csv = "usuarioId,libroId,fechaPrestamo,fechaDevolucion,estado\n" +
+                "1,10,2024-03-01T10:15:30Z,,ACTIVO\n";
+        DataAccessResourceFailureException falla = new DataAccessResourceFailureException("Sin conexión");
+        doThrow(falla).when(prestamoRepository).insertarTodos(anyList());
+
+        // When & Then: no se presenta como una fila inválida
+        DataAccessResourceFailureException exception = assertThrows(DataAccessResourceFailureException.class,
+                () -> transferencia.importar(TransferenciaPrestamosService.Formato.CSV,
+                        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+
+        assertSame(falla, exception);
+        verify(limitePrestamos, never()).reconciliar();
+    }
+}